@@ -1,11 +1,17 @@
 package com.example.n8nintegration;
 
+import com.example.n8nintegration.config.ClusterRequestFactory;
+import com.example.n8nintegration.config.TracingInterceptor;
+import com.example.n8nintegration.service.Tracer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
+@EnableScheduling
 public class N8nIntegrationApplication {
 
 	public static void main(String[] args) {
@@ -13,7 +19,11 @@ public class N8nIntegrationApplication {
 	}
 
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(Tracer tracer,
+									 @Value("${chat.cluster.connect-timeout-ms:2000}") int connectTimeoutMillis,
+									 @Value("${chat.cluster.read-timeout-ms:125000}") int readTimeoutMillis) {
+		RestTemplate restTemplate = new RestTemplate(new ClusterRequestFactory(connectTimeoutMillis, readTimeoutMillis));
+		restTemplate.getInterceptors().add(new TracingInterceptor(tracer, "cluster.call"));
+		return restTemplate;
 	}
 }
@@ -0,0 +1,174 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.service.ApiKeyRegistry;
+import com.example.n8nintegration.service.SessionClusterService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Validates the X-API-Key header once per request, before any controller runs.
+ * Health and connection-test endpoints stay open; everything else under /api/n8n needs a key
+ * with the scope that matches the endpoint, and paths without a known scope need the admin scope.
+ * Scopes are decided on the decoded path without ;parameters, the same path Spring routes on. Requests from other cluster nodes
+ * authenticate with the cluster secret instead. The WebSocket chat handshake is checked once per
+ * connection, with the key in the same header; keys in query strings end up in access logs.
+ * Without any configured key, chat, history and trigger stay open, but admin and search endpoints
+ * are refused unless n8n.api.open-operator-endpoints is set.
+ */
+@Component
+public class ApiKeyFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiKeyFilter.class);
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+    public static final String API_KEY_ATTRIBUTE = "n8n.apiKey";
+    public static final String WEBSOCKET_CHAT_PATH = "/ws/chat";
+
+    // Internal endpoints that only cluster peers may call
+    private static final String CLUSTER_SCOPE = "cluster";
+
+    private static final Set<String> OPEN_PATHS = Set.of(
+        "/api/n8n/health", "/api/n8n/test", "/api/n8n/chat/health", "/api/n8n/chat/test");
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    static {
+        PATH_HELPER.setUrlDecode(true);
+        PATH_HELPER.setRemoveSemicolonContent(true);
+    }
+
+    @Autowired
+    private ApiKeyRegistry apiKeyRegistry;
+
+    @Autowired
+    private SessionClusterService sessionCluster;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Diagnostics and cross-user search expose every tenant's data; opt in to serve them without keys
+    @Value("${n8n.api.open-operator-endpoints:false}")
+    private boolean openOperatorEndpoints;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return "OPTIONS".equals(request.getMethod()) || requiredScope(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String scope = requiredScope(request);
+
+        if (sessionCluster.isTrustedPeer(request.getHeader(SessionClusterService.CLUSTER_TOKEN_HEADER))) {
+            request.setAttribute(SessionClusterService.CLUSTER_PEER_ATTRIBUTE, Boolean.TRUE);
+            chain.doFilter(request, response);
+            return;
+        }
+        if (CLUSTER_SCOPE.equals(scope)) {
+            logger.warn("Rejected cluster request without valid token - Path: {}", request.getRequestURI());
+            reject(response, HttpStatus.FORBIDDEN, "Cluster endpoints are only available to peer nodes");
+            return;
+        }
+
+        if (!apiKeyRegistry.isEnabled()) {
+            if (!openOperatorEndpoints
+                    && (ApiKeyRegistry.SCOPE_ADMIN.equals(scope) || ApiKeyRegistry.SCOPE_SEARCH.equals(scope))) {
+                logger.warn("Rejected operator request without configured API keys - Path: {}", request.getRequestURI());
+                reject(response, HttpStatus.FORBIDDEN,
+                    "Configure an API key with the " + scope + " scope to use this endpoint");
+                return;
+            }
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ApiKeyRegistry.ApiKey apiKey = apiKeyRegistry.authenticate(request.getHeader(API_KEY_HEADER));
+
+        if (apiKey == null) {
+            logger.warn("Invalid or missing API key - Path: {}", request.getRequestURI());
+            reject(response, HttpStatus.UNAUTHORIZED, "Invalid or missing API key");
+            return;
+        }
+        if (!apiKey.hasScope(scope)) {
+            logger.warn("API key not permitted for scope - KeyID: {}, Scope: {}", apiKey.getId(), scope);
+            reject(response, HttpStatus.FORBIDDEN, "API key is not permitted to access this endpoint");
+            return;
+        }
+        if (!apiKey.tryAcquire()) {
+            logger.warn("API key quota exceeded - KeyID: {}", apiKey.getId());
+            response.setHeader("Retry-After", "60");
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, "API key quota exceeded");
+            return;
+        }
+
+        request.setAttribute(API_KEY_ATTRIBUTE, apiKey);
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Map a request to the scope it needs, or null for open endpoints
+     */
+    static String requiredScope(HttpServletRequest request) {
+        String path = normalizedPath(request);
+
+        if (OPEN_PATHS.contains(path)) {
+            return null;
+        }
+        if (path.equals("/api/n8n/cluster/sessions") || path.equals("/api/n8n/cluster/analytics")) {
+            return CLUSTER_SCOPE;
+        }
+        // Statistics expose pool, lane, cluster, session and key internals
+        if (path.startsWith("/api/n8n/admin/") || path.equals("/api/n8n/stats")) {
+            return ApiKeyRegistry.SCOPE_ADMIN;
+        }
+        if (path.equals("/api/n8n/trigger")) {
+            return ApiKeyRegistry.SCOPE_TRIGGER;
+        }
+        if (path.equals("/api/n8n/chat/search")) {
+            return ApiKeyRegistry.SCOPE_SEARCH;
+        }
+        if (path.startsWith("/api/n8n/chat/history/")) {
+            return ApiKeyRegistry.SCOPE_HISTORY;
+        }
+        if (path.equals("/api/n8n/chat") || path.equals("/api/n8n/chat/new") || path.equals("/api/n8n/chat/batch")
+                || path.equals(WEBSOCKET_CHAT_PATH)) {
+            return ApiKeyRegistry.SCOPE_CHAT;
+        }
+        // Deny by default: anything else under the API is for administrators
+        if (path.startsWith("/api/")) {
+            return ApiKeyRegistry.SCOPE_ADMIN;
+        }
+        return null;
+    }
+
+    /**
+     * Path within the application, decoded, without ;parameters and with duplicate slashes removed
+     */
+    static String normalizedPath(HttpServletRequest request) {
+        return PATH_HELPER.getPathWithinApplication(request);
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ApiResponse(false, message));
+    }
+}
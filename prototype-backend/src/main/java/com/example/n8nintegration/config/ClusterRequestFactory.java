@@ -0,0 +1,34 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.RequestDeadline;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Request factory for calls between cluster nodes. Every call has a connect and a read timeout,
+ * and the read timeout is cut to what is left of the caller's deadline when the call is sent, so
+ * an unresponsive node cannot hold a request thread longer than the client is willing to wait.
+ */
+public class ClusterRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private final int readTimeoutMillis;
+
+    public ClusterRequestFactory(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+        setConnectTimeout(connectTimeoutMillis);
+        setReadTimeout(readTimeoutMillis);
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        long remaining = RequestDeadline.remainingMillis();
+        if (remaining < readTimeoutMillis) {
+            // 0 would mean no timeout at all
+            connection.setReadTimeout((int) Math.max(1, remaining));
+            connection.setConnectTimeout((int) Math.max(1, Math.min(connection.getConnectTimeout(), remaining)));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.service.RequestDeadline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Reads the caller's deadline from X-Request-Timeout-Ms (milliseconds from now) or
+ * X-Request-Deadline (epoch milliseconds), whichever ends first, and holds it in RequestDeadline
+ * for the rest of the request. A request whose deadline has already passed is answered with 504
+ * before any work is done. Runs just inside RequestStatsFilter so the clock starts early.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.deadline.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled || !path.startsWith("/api/")
+            || (request.getHeader(RequestDeadline.TIMEOUT_HEADER) == null && request.getHeader(DEADLINE_HEADER) == null);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        long timeoutMillis;
+        try {
+            timeoutMillis = timeoutMillis(request);
+        } catch (NumberFormatException e) {
+            reject(response, HttpStatus.BAD_REQUEST,
+                RequestDeadline.TIMEOUT_HEADER + " and " + DEADLINE_HEADER + " must be whole milliseconds");
+            return;
+        }
+        if (timeoutMillis <= 0) {
+            RequestDeadline.recordExpiredOnArrival();
+            logger.info("Dropping request past its deadline - RequestID: {}, Path: {}, OverdueMs: {}",
+                       RequestIdFilter.currentRequestId(), request.getRequestURI(), -timeoutMillis);
+            reject(response, HttpStatus.GATEWAY_TIMEOUT, "Request deadline has already passed");
+            return;
+        }
+
+        RequestDeadline.start(timeoutMillis);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private static long timeoutMillis(HttpServletRequest request) {
+        long timeout = Long.MAX_VALUE;
+        String relative = request.getHeader(RequestDeadline.TIMEOUT_HEADER);
+        if (relative != null) {
+            timeout = Long.parseLong(relative.trim());
+        }
+        String absolute = request.getHeader(DEADLINE_HEADER);
+        if (absolute != null) {
+            timeout = Math.min(timeout, Long.parseLong(absolute.trim()) - System.currentTimeMillis());
+        }
+        return timeout;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+            new ApiResponse(false, message, null, RequestIdFilter.currentRequestId()));
+    }
+}
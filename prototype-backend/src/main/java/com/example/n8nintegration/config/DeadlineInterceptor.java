@@ -0,0 +1,27 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.RequestDeadline;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Tells the callee how long the caller is still willing to wait, as X-Request-Timeout-Ms computed
+ * when the call is sent, so n8n workflows can skip work nobody is waiting for. Calls made outside
+ * a request with a deadline are sent unchanged.
+ */
+public class DeadlineInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        if (RequestDeadline.isSet()) {
+            request.getHeaders().set(RequestDeadline.TIMEOUT_HEADER, String.valueOf(RequestDeadline.remainingMillis()));
+        }
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.IdGenerator;
+import com.example.n8nintegration.service.UlidIdGenerator;
+import com.example.n8nintegration.service.UuidIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the ID generator: "ulid" (default, time-ordered) or "uuid" (random UUIDs)
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public IdGenerator idGenerator(@Value("${app.id.generator:ulid}") String type) {
+        switch (type.trim().toLowerCase()) {
+            case "ulid":
+                return new UlidIdGenerator();
+            case "uuid":
+                return new UuidIdGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown app.id.generator: " + type);
+        }
+    }
+}
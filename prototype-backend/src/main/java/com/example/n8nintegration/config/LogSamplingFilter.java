@@ -0,0 +1,44 @@
+package com.example.n8nintegration.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Keeps the INFO and lower log lines of one request in every keepOneIn requests.
+ *
+ * The decision is made from the request ID, so a sampled request keeps all of its lines and
+ * a dropped one loses all of them. Warnings, errors and lines logged outside a request are
+ * always kept. Runs on the logging thread before the event is queued, so dropped events cost
+ * almost nothing.
+ */
+public class LogSamplingFilter extends Filter<ILoggingEvent> {
+
+    private int keepOneIn = 1;
+
+    public void setKeepOneIn(int keepOneIn) {
+        this.keepOneIn = Math.max(1, keepOneIn);
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (keepOneIn == 1 || event.getLevel().isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        String requestId = event.getMDCPropertyMap().get(RequestIdFilter.MDC_REQUEST_ID);
+        if (requestId == null) {
+            return FilterReply.NEUTRAL;
+        }
+        return Math.floorMod(mix(requestId.hashCode()), keepOneIn) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    // Spread the bits so that IDs sharing a prefix still sample evenly
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+}
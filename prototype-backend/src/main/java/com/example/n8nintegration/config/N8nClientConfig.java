@@ -0,0 +1,48 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.Tracer;
+import com.example.n8nintegration.service.TrafficLanes;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * One client per traffic lane, each on its own connection pool. The cluster client stays
+ * separate because only n8n accepts gzip-encoded request bodies. Lane clients send the caller's
+ * remaining deadline along.
+ */
+@Configuration
+public class N8nClientConfig {
+
+    @Bean
+    public RestTemplate n8nChatRestTemplate(TrafficLanes lanes, Tracer tracer,
+                                            OutboundCompressionInterceptor compressionInterceptor) {
+        return laneRestTemplate(lanes, TrafficLanes.CHAT, new TracingInterceptor(tracer, "n8n.webhook"),
+            compressionInterceptor);
+    }
+
+    @Bean
+    public RestTemplate n8nBulkRestTemplate(TrafficLanes lanes, Tracer tracer,
+                                            OutboundCompressionInterceptor compressionInterceptor) {
+        return laneRestTemplate(lanes, TrafficLanes.BULK, new TracingInterceptor(tracer, "n8n.webhook"),
+            compressionInterceptor);
+    }
+
+    @Bean
+    public RestTemplate n8nProbeRestTemplate(TrafficLanes lanes, Tracer tracer) {
+        return laneRestTemplate(lanes, TrafficLanes.PROBE, new TracingInterceptor(tracer, "n8n.probe"), null);
+    }
+
+    private static RestTemplate laneRestTemplate(TrafficLanes lanes, String lane, TracingInterceptor tracing,
+                                                 OutboundCompressionInterceptor compressionInterceptor) {
+        RestTemplate restTemplate = new RestTemplate(lanes.requestFactory(lane));
+        restTemplate.getInterceptors().add(tracing);
+        restTemplate.getInterceptors().add(new DeadlineInterceptor());
+        // Ahead of compression, so it sees the decoded body
+        restTemplate.getInterceptors().add(new ResponseBytesInterceptor());
+        if (compressionInterceptor != null) {
+            restTemplate.getInterceptors().add(compressionInterceptor);
+        }
+        return restTemplate;
+    }
+}
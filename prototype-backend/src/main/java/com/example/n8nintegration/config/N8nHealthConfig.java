@@ -0,0 +1,83 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.ChatService;
+import com.example.n8nintegration.service.N8nEndpointPool;
+import com.example.n8nintegration.service.N8nService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator health for every n8n endpoint, shown under "n8n" in /actuator/health as
+ * chat-0, chat-1, webhook-0 and so on.
+ *
+ * Indicators only read the result of the latest background probe, so a health request is
+ * constant time and never contacts n8n. A result older than n8n.health.ttl-ms is reported
+ * as UNKNOWN rather than trusted. A failing endpoint whose pool still has a healthy one is
+ * DEGRADED, so losing one of several workers does not take the whole application DOWN.
+ */
+@Configuration
+public class N8nHealthConfig {
+
+    public static final Status DEGRADED = new Status("DEGRADED");
+
+    @Value("${n8n.health.ttl-ms:60000}")
+    private long healthTtlMillis;
+
+    @Bean
+    public CompositeHealthContributor n8nHealthContributor(ChatService chatService, N8nService n8nService) {
+        Map<String, HealthIndicator> indicators = new LinkedHashMap<>();
+        addIndicators(indicators, chatService.getChatEndpointPool());
+        addIndicators(indicators, n8nService.getWebhookEndpointPool());
+        return CompositeHealthContributor.fromMap(indicators);
+    }
+
+    private void addIndicators(Map<String, HealthIndicator> indicators, N8nEndpointPool pool) {
+        for (int i = 0; i < pool.size(); i++) {
+            int index = i;
+            indicators.put(pool.getName() + "-" + i, () -> endpointHealth(pool, index));
+        }
+    }
+
+    private Health endpointHealth(N8nEndpointPool pool, int index) {
+        N8nEndpointPool.ProbeResult probe = pool.getLastProbe(index);
+        long now = System.currentTimeMillis();
+
+        Health.Builder health;
+        if (pool.isEjected(index)) {
+            health = failed(pool, now).withDetail("reason", "ejected from pool");
+        } else if (probe == null) {
+            health = Health.unknown().withDetail("reason", "not probed yet");
+        } else if (now - probe.getProbedAt() > healthTtlMillis) {
+            health = Health.unknown().withDetail("reason", "last probe is older than " + healthTtlMillis + "ms");
+        } else {
+            health = probe.isHealthy() ? Health.up() : failed(pool, now);
+        }
+
+        health.withDetail("url", pool.getUrl(index));
+        if (probe != null) {
+            health.withDetail("lastProbeHealthy", probe.isHealthy())
+                .withDetail("lastProbeLatencyMs", Math.round(probe.getLatencyMs() * 10) / 10.0)
+                .withDetail("lastProbeAgeMs", now - probe.getProbedAt());
+        }
+        return health.build();
+    }
+
+    private Health.Builder failed(N8nEndpointPool pool, long now) {
+        for (int i = 0; i < pool.size(); i++) {
+            N8nEndpointPool.ProbeResult probe = pool.getLastProbe(i);
+            if (!pool.isEjected(i) && probe != null && probe.isHealthy()
+                    && now - probe.getProbedAt() <= healthTtlMillis) {
+                return Health.status(DEGRADED);
+            }
+        }
+        return Health.down();
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.n8nintegration.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Gzip-compresses outbound request bodies above a size threshold and transparently
+ * decompresses gzip responses from n8n.
+ *
+ * Deflaters and scratch buffers are pooled and reused, so compressing a payload does not allocate
+ * native zlib state on every call. Deflaters that do not fit back into the pool, and all pooled ones
+ * at shutdown, are ended so their native memory is freed at once. Byte counters record how much
+ * was saved.
+ */
+@Component
+public class OutboundCompressionInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // Scratch space above this is dropped after use instead of being kept for the next payload
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+
+    @Value("${n8n.outbound.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${n8n.outbound.compression.min-bytes:1024}")
+    private int minBytes;
+
+    // Idle deflaters kept for reuse; extra ones made under load are ended after use
+    @Value("${n8n.outbound.compression.pool-size:16}")
+    private int poolSize;
+
+    // Idle deflaters; one is borrowed per compressed request
+    private BlockingQueue<GzipBuffers> pool;
+
+    private final LongAdder requestBytesRaw = new LongAdder();
+    private final LongAdder requestBytesSent = new LongAdder();
+    private final LongAdder requestsCompressed = new LongAdder();
+    private final LongAdder responseBytesReceived = new LongAdder();
+    private final LongAdder responseBytesDecoded = new LongAdder();
+    private final LongAdder responsesDecompressed = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        byte[] sent = body;
+        if (compressionEnabled && body.length >= minBytes
+                && !request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            sent = gzip(body);
+            request.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            request.getHeaders().setContentLength(sent.length);
+            requestsCompressed.increment();
+        }
+        requestBytesRaw.add(body.length);
+        requestBytesSent.add(sent.length);
+
+        request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ClientHttpResponse response = execution.execute(request, sent);
+
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding != null && encoding.trim().equalsIgnoreCase("gzip")) {
+            responsesDecompressed.increment();
+            return new DecompressingResponse(response);
+        }
+        return response;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        GzipBuffers idle;
+        while ((idle = pool.poll()) != null) {
+            idle.end();
+        }
+    }
+
+    private byte[] gzip(byte[] body) {
+        GzipBuffers gzip = pool.poll();
+        if (gzip == null) {
+            gzip = new GzipBuffers();
+        }
+        try {
+            return gzip.gzip(body);
+        } finally {
+            if (!pool.offer(gzip)) {
+                gzip.end();
+            }
+        }
+    }
+
+    /**
+     * Byte counters since startup
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", compressionEnabled);
+        stats.put("requestsCompressed", requestsCompressed.sum());
+        stats.put("requestBytesRaw", requestBytesRaw.sum());
+        stats.put("requestBytesSent", requestBytesSent.sum());
+        stats.put("responsesDecompressed", responsesDecompressed.sum());
+        stats.put("responseBytesReceived", responseBytesReceived.sum());
+        stats.put("responseBytesDecoded", responseBytesDecoded.sum());
+        return stats;
+    }
+
+    // Deflater and scratch space for one payload at a time, reset between payloads
+    private static final class GzipBuffers {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] chunk = new byte[8192];
+        private ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+
+        byte[] gzip(byte[] data) {
+            crc.reset();
+            out.reset();
+
+            out.writeBytes(GZIP_HEADER);
+            crc.update(data, 0, data.length);
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                out.write(chunk, 0, length);
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE(data.length);
+
+            byte[] result = out.toByteArray();
+            // reset() keeps the grown array, so replace it after one huge payload
+            if (result.length > MAX_RETAINED_BYTES) {
+                out = new ByteArrayOutputStream(8192);
+            }
+            // Also drops the reference to the input
+            deflater.reset();
+            return result;
+        }
+
+        void end() {
+            deflater.end();
+        }
+
+        private void writeIntLE(int value) {
+            out.write(value & 0xff);
+            out.write((value >>> 8) & 0xff);
+            out.write((value >>> 16) & 0xff);
+            out.write((value >>> 24) & 0xff);
+        }
+    }
+
+    // Counts bytes read through it into one of the adders
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LongAdder counter;
+
+        CountingInputStream(InputStream in, LongAdder counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.add(n);
+            }
+            return n;
+        }
+    }
+
+    // Response wrapper that inflates the body and hides the Content-Encoding header
+    private final class DecompressingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        DecompressingResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+            this.headers = new HttpHeaders();
+            this.headers.putAll(delegate.getHeaders());
+            this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+            this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream wire = new CountingInputStream(delegate.getBody(), responseBytesReceived);
+                body = new CountingInputStream(new GZIPInputStream(wire), responseBytesDecoded);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
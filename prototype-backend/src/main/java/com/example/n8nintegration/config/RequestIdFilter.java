@@ -0,0 +1,83 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.IdGenerator;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Assigns each request its ID and puts it, and the conversation ID when the path names one,
+ * into the logging MDC so every log line of the request carries them. An X-Request-ID sent
+ * by the caller (for example a forwarding cluster node) is reused so logs correlate across hops.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-ID";
+    public static final String MDC_REQUEST_ID = "requestId";
+    public static final String MDC_CONVERSATION_ID = "conversationId";
+
+    private static final String HISTORY_PATH = "/api/n8n/chat/history/";
+
+    // Caller-supplied IDs end up in logs and JSON responses, so only plain tokens are accepted
+    private static final Pattern SAFE_REQUEST_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || !SAFE_REQUEST_ID.matcher(requestId).matches()) {
+            requestId = idGenerator.nextId();
+        }
+        MDC.put(MDC_REQUEST_ID, requestId);
+        setConversationId(conversationIdFromPath(request));
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_REQUEST_ID);
+            MDC.remove(MDC_CONVERSATION_ID);
+        }
+    }
+
+    /**
+     * ID of the request being handled on this thread
+     */
+    public static String currentRequestId() {
+        return MDC.get(MDC_REQUEST_ID);
+    }
+
+    /**
+     * Tag the remaining log lines of this request with a conversation ID
+     */
+    public static void setConversationId(String conversationId) {
+        if (conversationId != null) {
+            MDC.put(MDC_CONVERSATION_ID, conversationId);
+        }
+    }
+
+    private static String conversationIdFromPath(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(HISTORY_PATH)) {
+            return null;
+        }
+        int end = path.indexOf('/', HISTORY_PATH.length());
+        return path.substring(HISTORY_PATH.length(), end < 0 ? path.length() : end);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.RequestStatistics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Times every request and records it in RequestStatistics under its endpoint category.
+ * Runs just inside RequestIdFilter so rejected requests (401, 429) are counted too.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RequestStatsFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private RequestStatistics statistics;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            statistics.record(category(request), status, System.nanoTime() - start);
+        }
+    }
+
+    private static String category(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/n8n/chat")) {
+            return RequestStatistics.CATEGORY_CHAT;
+        }
+        if (path.startsWith("/api/n8n/chat/history/")) {
+            return RequestStatistics.CATEGORY_HISTORY;
+        }
+        if (path.equals("/api/n8n/trigger")) {
+            return RequestStatistics.CATEGORY_TRIGGER;
+        }
+        return RequestStatistics.CATEGORY_OTHER;
+    }
+}
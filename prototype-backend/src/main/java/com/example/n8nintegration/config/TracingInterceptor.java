@@ -0,0 +1,48 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.Tracer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Records a client span around each outgoing HTTP call and sends its W3C traceparent header,
+ * so the callee (n8n or another backend node) can join the trace.
+ */
+public class TracingInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Tracer tracer;
+    private final String spanName;
+
+    public TracingInterceptor(Tracer tracer, String spanName) {
+        this.tracer = tracer;
+        this.spanName = spanName;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        try (Tracer.Span span = tracer.startSpan(spanName)) {
+            span.tag("http.method", request.getMethod().name())
+                .tag("http.url", request.getURI().toString())
+                .tag("http.request_bytes", body.length);
+
+            String traceparent = tracer.currentTraceparent();
+            if (traceparent != null) {
+                request.getHeaders().set(Tracer.TRACEPARENT_HEADER, traceparent);
+            }
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                span.tag("http.status", response.getStatusCode().value());
+                return response;
+            } catch (IOException | RuntimeException e) {
+                span.error(e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.controller.ChatWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Registers the WebSocket chat endpoint. ApiKeyFilter has already authenticated the handshake;
+ * the key it found is handed to the connection so scopes and quotas apply to every frame.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    @Value("${cors.allowed.origins}")
+    private String allowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, ApiKeyFilter.WEBSOCKET_CHAT_PATH)
+            .addInterceptors(new ApiKeyHandshakeInterceptor())
+            .setAllowedOriginPatterns(allowedOrigins.split(","));
+    }
+
+    private static final class ApiKeyHandshakeInterceptor implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                Object apiKey = servletRequest.getServletRequest().getAttribute(ApiKeyFilter.API_KEY_ATTRIBUTE);
+                if (apiKey != null) {
+                    attributes.put(ApiKeyFilter.API_KEY_ATTRIBUTE, apiKey);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
+    }
+}
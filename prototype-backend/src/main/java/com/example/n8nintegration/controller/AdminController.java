@@ -0,0 +1,164 @@
+package com.example.n8nintegration.controller;
+
+import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.service.FlightRecordingService;
+import com.example.n8nintegration.service.Tracer;
+import com.example.n8nintegration.service.UsageAnalytics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diagnostics for operators; requires an API key with the admin scope
+ */
+@RestController
+@RequestMapping("/api/n8n/admin")
+public class AdminController {
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private UsageAnalytics usageAnalytics;
+
+    @Autowired
+    private FlightRecordingService flightRecording;
+
+    /**
+     * Most recent traces held in memory, newest first
+     * GET /api/n8n/admin/traces
+     */
+    @GetMapping("/traces")
+    public ResponseEntity<ApiResponse> recentTraces(
+            @RequestParam(value = "limit", required = false, defaultValue = "50") int limit) {
+        return ResponseEntity.ok(
+            new ApiResponse(true, "Recent traces", tracer.getRecentTraces(Math.max(1, Math.min(500, limit))), null));
+    }
+
+    /**
+     * All spans of one trace
+     * GET /api/n8n/admin/traces/{traceId}
+     */
+    @GetMapping("/traces/{traceId}")
+    public ResponseEntity<ApiResponse> trace(@PathVariable String traceId) {
+        List<Tracer.SpanData> spans = tracer.getTrace(traceId);
+        if (spans.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ApiResponse(false, "Trace not found or no longer in memory", null, null));
+        }
+        return ResponseEntity.ok(new ApiResponse(true, "Trace " + traceId, spans, null));
+    }
+
+    /**
+     * Distinct users, top prompts and volume per user and key over the last minutes, from
+     * fixed-size sketches; cluster=true merges in the same window from every other node
+     * GET /api/n8n/admin/analytics
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<ApiResponse> usageAnalytics(
+            @RequestParam(value = "minutes", required = false, defaultValue = "60") int minutes,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "keyId", required = false) String keyId,
+            @RequestParam(value = "cluster", required = false, defaultValue = "false") boolean cluster) {
+        if (!usageAnalytics.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ApiResponse(false, "Usage analytics is disabled", null, null));
+        }
+        return ResponseEntity.ok(
+            new ApiResponse(true, "Usage analytics", usageAnalytics.summary(minutes, userId, keyId, cluster), null));
+    }
+
+    /**
+     * Flight recording state and the recording files kept on disk
+     * GET /api/n8n/admin/profiling
+     */
+    @GetMapping("/profiling")
+    public ResponseEntity<ApiResponse> profilingStatus() throws IOException {
+        return ResponseEntity.ok(new ApiResponse(true, "Flight recording status", flightRecording.getStatus(), null));
+    }
+
+    /**
+     * Start a bounded flight recording
+     * POST /api/n8n/admin/profiling/start?settings=default&durationSeconds=120
+     */
+    @PostMapping("/profiling/start")
+    public ResponseEntity<ApiResponse> startProfiling(
+            @RequestParam(value = "settings", required = false, defaultValue = "default") String settings,
+            @RequestParam(value = "durationSeconds", required = false, defaultValue = "0") long durationSeconds)
+            throws IOException, ParseException {
+        if (!flightRecording.isEnabled()) {
+            return profilingUnavailable();
+        }
+        try {
+            return ResponseEntity.ok(
+                new ApiResponse(true, "Flight recording started", flightRecording.start(settings, durationSeconds), null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage(), null, null));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(false, e.getMessage(), null, null));
+        }
+    }
+
+    /**
+     * Stop the running recording and write it to disk
+     * POST /api/n8n/admin/profiling/stop
+     */
+    @PostMapping("/profiling/stop")
+    public ResponseEntity<ApiResponse> stopProfiling() {
+        Map<String, Object> file = flightRecording.stop();
+        if (file == null) {
+            return noRecording();
+        }
+        return ResponseEntity.ok(new ApiResponse(true, "Flight recording stopped", file, null));
+    }
+
+    /**
+     * Write the data recorded so far to disk, leaving the recording running
+     * POST /api/n8n/admin/profiling/dump
+     */
+    @PostMapping("/profiling/dump")
+    public ResponseEntity<ApiResponse> dumpProfiling() throws IOException {
+        Map<String, Object> file = flightRecording.dump();
+        if (file == null) {
+            return noRecording();
+        }
+        return ResponseEntity.ok(new ApiResponse(true, "Flight recording dumped", file, null));
+    }
+
+    /**
+     * Download a recording file
+     * GET /api/n8n/admin/profiling/files/{name}
+     */
+    @GetMapping("/profiling/files/{name}")
+    public ResponseEntity<Resource> downloadRecording(@PathVariable String name) throws IOException {
+        Path file = flightRecording.resolveFile(name);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+            .body(new FileSystemResource(file));
+    }
+
+    private static ResponseEntity<ApiResponse> profilingUnavailable() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+            .body(new ApiResponse(false, "Flight recording is disabled or not supported by this JVM", null, null));
+    }
+
+    private static ResponseEntity<ApiResponse> noRecording() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .body(new ApiResponse(false, "No flight recording is running", null, null));
+    }
+}
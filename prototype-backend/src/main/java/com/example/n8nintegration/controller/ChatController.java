@@ -1,20 +1,44 @@
 package com.example.n8nintegration.controller;
 
+import com.example.n8nintegration.config.ApiKeyFilter;
+import com.example.n8nintegration.config.RequestIdFilter;
 import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.dto.BatchChatItem;
 import com.example.n8nintegration.dto.ChatRequest;
 import com.example.n8nintegration.dto.ChatResponse;
+import com.example.n8nintegration.dto.HistoryPageRequest;
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import com.example.n8nintegration.service.ApiKeyRegistry;
+import com.example.n8nintegration.service.BatchChatService;
 import com.example.n8nintegration.service.ChatService;
-import com.example.n8nintegration.service.N8nService;
+import com.example.n8nintegration.service.ConversationSearchIndex;
+import com.example.n8nintegration.service.HistoryResponseCache;
+import com.example.n8nintegration.service.IdempotencyStore;
+import com.example.n8nintegration.service.SessionClusterService;
+import com.example.n8nintegration.service.Tracer;
+import com.example.n8nintegration.service.UsageAnalytics;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/n8n/chat")
@@ -27,7 +51,22 @@ public class ChatController {
     private ChatService chatService;
 
     @Autowired
-    private N8nService n8nService;
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private ConversationSearchIndex searchIndex;
+
+    @Autowired
+    private UsageAnalytics usageAnalytics;
+
+    @Autowired
+    private BatchChatService batchChat;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
 
     /**
      * Send a chat message to the AI
@@ -36,25 +75,36 @@ public class ChatController {
     @PostMapping
     public ResponseEntity<ChatResponse> sendMessage(
             @Valid @RequestBody ChatRequest request,
-            @RequestHeader(value = "X-API-Key", required = false) String apiKey) {
-        
-        String requestId = UUID.randomUUID().toString();
+            @RequestAttribute(value = SessionClusterService.CLUSTER_PEER_ATTRIBUTE, required = false) Boolean clusterPeer,
+            @RequestAttribute(value = ApiKeyFilter.API_KEY_ATTRIBUTE, required = false) ApiKeyRegistry.ApiKey apiKey,
+            @RequestHeader(value = Tracer.TRACEPARENT_HEADER, required = false) String traceparent,
+            @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         
-        logger.info("Received chat message - RequestID: {}, ConversationID: {}, Message: {}", 
-                   requestId, request.getConversationId(), 
-                   request.getMessage().length() > 100 ? 
-                   request.getMessage().substring(0, 100) + "..." : request.getMessage());
+        String requestId = RequestIdFilter.currentRequestId();
+        RequestIdFilter.setConversationId(request.getConversationId());
 
-        try {
-            // Validate API key if configured (reuse existing validation from N8nService)
-            if (!n8nService.isValidApiKey(apiKey)) {
-                logger.warn("Invalid or missing API key for chat request - RequestID: {}", requestId);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ChatResponse.error("Invalid or missing API key"));
-            }
+        logger.info("Received chat message - RequestID: {}, ConversationID: {}, MessageLength: {}",
+                   requestId, request.getConversationId(), request.getMessage().length());
+
+        // Forwarded turns were deduplicated and counted by the node the client called
+        if (Boolean.TRUE.equals(clusterPeer)) {
+            return processChat(request, requestId, true, traceparent);
+        }
+        String scope = "chat:" + (apiKey != null ? apiKey.getId() : "-");
+        return idempotencyStore.execute(scope, idempotencyKey, request, () -> {
+            usageAnalytics.recordChat(apiKey != null ? apiKey.getId() : null, request.getUserId(), request.getMessage());
+            return processChat(request, requestId, false, traceparent);
+        }, ChatResponse::error);
+    }
+
+    private ResponseEntity<ChatResponse> processChat(ChatRequest request, String requestId,
+                                                     boolean clusterPeer, String traceparent) {
+        try (Tracer.Span span = tracer.startServerSpan("POST /api/n8n/chat", traceparent)) {
+            span.tag("requestId", requestId);
 
             // Process the chat message
-            ChatResponse response = chatService.sendChatMessage(request, requestId);
+            ChatResponse response = chatService.sendChatMessage(request, requestId, clusterPeer);
+            span.tag("conversationId", response.getConversationId()).tag("success", response.isSuccess());
             
             if (response.isSuccess()) {
                 logger.info("Successfully processed chat message - RequestID: {}, ConversationID: {}", 
@@ -66,6 +116,12 @@ public class ChatController {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
             }
 
+        } catch (LaneSaturatedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ChatResponse.error(e.getMessage()));
+        } catch (DeadlineExceededException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ChatResponse.error(e.getMessage()));
         } catch (Exception e) {
             logger.error("Error processing chat message - RequestID: {}, Error: {}", 
                         requestId, e.getMessage(), e);
@@ -81,20 +137,12 @@ public class ChatController {
      */
     @PostMapping("/new")
     public ResponseEntity<ApiResponse> startNewConversation(
-            @RequestParam(value = "userId", required = false, defaultValue = "anonymous") String userId,
-            @RequestHeader(value = "X-API-Key", required = false) String apiKey) {
+            @RequestParam(value = "userId", required = false, defaultValue = "anonymous") String userId) {
         
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         logger.info("Starting new conversation - RequestID: {}, UserID: {}", requestId, userId);
 
         try {
-            // Validate API key if configured
-            if (!n8nService.isValidApiKey(apiKey)) {
-                logger.warn("Invalid or missing API key for new conversation - RequestID: {}", requestId);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new ApiResponse(false, "Invalid or missing API key", null, requestId));
-            }
-
             // Generate conversation ID
             String conversationId = chatService.startNewConversation(userId);
             
@@ -121,28 +169,43 @@ public class ChatController {
     }
 
     /**
-     * Get conversation history
+     * Get conversation history, or one page of it when before/after/limit are given
      * GET /api/n8n/chat/history/{conversationId}
      */
     @GetMapping("/history/{conversationId}")
-    public ResponseEntity<ApiResponse> getChatHistory(
+    public ResponseEntity<?> getChatHistory(
             @PathVariable String conversationId,
-            @RequestHeader(value = "X-API-Key", required = false) String apiKey) {
+            @RequestAttribute(value = SessionClusterService.CLUSTER_PEER_ATTRIBUTE, required = false) Boolean clusterPeer,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(value = "before", required = false) Long before,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         
-        String requestId = UUID.randomUUID().toString();
+        HistoryPageRequest page = HistoryPageRequest.of(before, after, limit);
+        String requestId = RequestIdFilter.currentRequestId();
         logger.info("Retrieving chat history - RequestID: {}, ConversationID: {}", 
                    requestId, conversationId);
 
         try {
-            // Validate API key if configured
-            if (!n8nService.isValidApiKey(apiKey)) {
-                logger.warn("Invalid or missing API key for chat history - RequestID: {}", requestId);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new ApiResponse(false, "Invalid or missing API key", null, requestId));
+            // Serve unchanged history from the near-cache, or just confirm the client's copy is current.
+            // The cache holds JSON, so binary (CBOR) clients go through normal serialization.
+            boolean binaryClient = accept != null && accept.contains("application/cbor");
+            HistoryResponseCache.CachedHistory cached = binaryClient ? null :
+                chatService.getCachedHistory(conversationId, page, Boolean.TRUE.equals(clusterPeer));
+            if (cached != null) {
+                if (cached.matches(ifNoneMatch)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cached.getEtag()).build();
+                }
+                return ResponseEntity.ok()
+                    .eTag(cached.getEtag())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(cached.toResponseBody("Conversation history retrieved", requestId));
             }
 
             // Get conversation history
-            Map<String, Object> historyData = chatService.getConversationHistory(conversationId);
+            Map<String, Object> historyData =
+                chatService.getConversationHistory(conversationId, page, Boolean.TRUE.equals(clusterPeer));
             
             boolean success = (Boolean) historyData.get("success");
             String message = (String) historyData.get("message");
@@ -171,16 +234,130 @@ public class ChatController {
     }
 
     /**
-     * Test chat functionality and N8n connection
+     * Export the full conversation history as a JSON stream
+     * GET /api/n8n/chat/history/{conversationId}/export
+     */
+    @GetMapping("/history/{conversationId}/export")
+    public ResponseEntity<StreamingResponseBody> exportChatHistory(
+            @PathVariable String conversationId,
+            @RequestAttribute(value = SessionClusterService.CLUSTER_PEER_ATTRIBUTE, required = false) Boolean clusterPeer) {
+
+        String requestId = RequestIdFilter.currentRequestId();
+        logger.info("Exporting chat history - RequestID: {}, ConversationID: {}", requestId, conversationId);
+
+        boolean peerRequest = Boolean.TRUE.equals(clusterPeer);
+        if (!chatService.conversationExists(conversationId, peerRequest)) {
+            logger.warn("Chat history not found for export - RequestID: {}, ConversationID: {}",
+                       requestId, conversationId);
+            ApiResponse notFound = new ApiResponse(false, "Conversation not found", null, requestId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, notFound));
+        }
+
+        StreamingResponseBody body = out -> chatService.exportConversationHistory(conversationId, peerRequest, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + conversationId + ".json\"")
+            .body(body);
+    }
+
+    /**
+     * Find conversations on this node whose messages contain all words and quoted phrases of q
+     * GET /api/n8n/chat/search?q=...&userId=...&from=...&to=...&limit=20
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ApiResponse> searchConversations(
+            @RequestParam("q") String query,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "limit", required = false, defaultValue = "20") int limit) {
+
+        String requestId = RequestIdFilter.currentRequestId();
+        if (!searchIndex.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ApiResponse(false, "Conversation search is disabled", null, requestId));
+        }
+
+        try {
+            Map<String, Object> results = searchIndex.search(query, userId, parseTime(from), parseTime(to),
+                Math.max(1, Math.min(200, limit)));
+            logger.info("Conversation search - RequestID: {}, QueryLength: {}, Matches: {}, Took: {}ms",
+                       requestId, query.length(), results.get("totalConversations"), results.get("tookMs"));
+            return ResponseEntity.ok(new ApiResponse(true, "Search results", results, requestId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage(), null, requestId));
+        }
+    }
+
+    // Epoch milliseconds, an ISO instant or a local ISO date-time
+    private static Long parseTime(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(value);
+            }
+            if (value.endsWith("Z") || value.contains("+")) {
+                return Instant.parse(value).toEpochMilli();
+            }
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + value);
+        }
+    }
+
+    /**
+     * Run many prompts through the chat pipeline. The body is a JSON array or NDJSON stream of
+     * items; results stream back as NDJSON lines as they complete, then a summary line.
+     * POST /api/n8n/chat/batch?parallelism=4
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void batchChat(
+            @RequestParam(value = "parallelism", required = false) Integer parallelism,
+            @RequestAttribute(value = ApiKeyFilter.API_KEY_ATTRIBUTE, required = false) ApiKeyRegistry.ApiKey apiKey,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        String requestId = RequestIdFilter.currentRequestId();
+        if (!batchChat.tryBeginBatch()) {
+            logger.warn("Too many batch chats running, rejecting - RequestID: {}", requestId);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                new ApiResponse(false, "Too many batches are running, please retry later", null, requestId));
+            return;
+        }
+
+        try {
+            int effectiveParallelism = batchChat.parallelism(parallelism);
+            logger.info("Received batch chat - RequestID: {}, Parallelism: {}", requestId, effectiveParallelism);
+            MappingIterator<BatchChatItem> items = objectMapper.readerFor(BatchChatItem.class)
+                .readValues(request.getInputStream());
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            // Written from this request thread rather than an async dispatch, so long batches are not cut off by its timeout
+            batchChat.run(items, effectiveParallelism, apiKey, requestId, response.getOutputStream());
+        } finally {
+            batchChat.endBatch();
+        }
+    }
+
+    /**
+     * Test chat functionality and N8n connection, from cached probe results unless live=true
      * GET /api/n8n/chat/test
      */
     @GetMapping("/test")
-    public ResponseEntity<ApiResponse> testChatConnection() {
-        String requestId = UUID.randomUUID().toString();
+    public ResponseEntity<ApiResponse> testChatConnection(
+            @RequestParam(value = "live", required = false, defaultValue = "false") boolean live) {
+        String requestId = RequestIdFilter.currentRequestId();
         logger.info("Chat connection test requested - RequestID: {}", requestId);
         
         try {
-            boolean isConnected = chatService.testChatConnection();
+            boolean isConnected = chatService.testChatConnection(live);
             String message = isConnected ? 
                 "Chat service and N8N connection test successful" : 
                 "Chat service or N8N connection test failed";
@@ -211,7 +388,7 @@ public class ChatController {
      */
     @GetMapping("/health")
     public ResponseEntity<ApiResponse> chatHealthCheck() {
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         logger.debug("Chat health check requested - RequestID: {}", requestId);
         
         try {
@@ -0,0 +1,482 @@
+package com.example.n8nintegration.controller;
+
+import com.example.n8nintegration.config.ApiKeyFilter;
+import com.example.n8nintegration.config.RequestIdFilter;
+import com.example.n8nintegration.dto.ChatRequest;
+import com.example.n8nintegration.dto.ChatResponse;
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import com.example.n8nintegration.service.ApiKeyRegistry;
+import com.example.n8nintegration.service.ChatService;
+import com.example.n8nintegration.service.ChatTurnEvent;
+import com.example.n8nintegration.service.IdGenerator;
+import com.example.n8nintegration.service.MdcContext;
+import com.example.n8nintegration.service.RequestDeadline;
+import com.example.n8nintegration.service.RequestStatistics;
+import com.example.n8nintegration.service.SessionClusterService;
+import com.example.n8nintegration.service.Tracer;
+import com.example.n8nintegration.service.UsageAnalytics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chat over one WebSocket connection per client: ws://host/ws/chat
+ *
+ * The API key is checked once, by ApiKeyFilter, on the handshake. After that the client sends
+ * JSON frames for any number of conversations, each with its own "id" for matching replies:
+ * chat, new, history, subscribe, unsubscribe and ping. Turns run on a small worker pool, so one
+ * slow n8n call does not hold up the other conversations on the connection. Turns completed on
+ * a conversation the connection follows are pushed to it, so clients do not need to poll history.
+ * Turn events are not relayed between cluster nodes, so a connection can only follow conversations
+ * owned by the node it is connected to; subscribing to any other conversation is refused.
+ *
+ * Every outgoing frame goes through a send buffer limited in size and send time. A client that
+ * cannot keep up is disconnected instead of letting queued frames grow on the heap.
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+
+    private static final String CONNECTION_ATTRIBUTE = "n8n.wsConnection";
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private RequestStatistics requestStatistics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UsageAnalytics usageAnalytics;
+
+    @Autowired
+    private SessionClusterService sessionCluster;
+
+    @Value("${chat.ws.workers:16}")
+    private int workers;
+
+    @Value("${chat.ws.max-in-flight-per-connection:4}")
+    private int maxInFlightPerConnection;
+
+    @Value("${chat.ws.max-subscriptions-per-connection:32}")
+    private int maxSubscriptionsPerConnection;
+
+    @Value("${chat.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${chat.ws.send-buffer-bytes:524288}")
+    private int sendBufferBytes;
+
+    @Value("${chat.ws.max-frame-bytes:16384}")
+    private int maxFrameBytes;
+
+    @Value("${chat.ws.idle-timeout-ms:300000}")
+    private long idleTimeoutMillis;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder turns = new LongAdder();
+    private final LongAdder rejectedTurns = new LongAdder();
+    private final LongAdder abandonedTurns = new LongAdder();
+    private final LongAdder pushedTurns = new LongAdder();
+    private final LongAdder droppedPushes = new LongAdder();
+    private final LongAdder slowClientsClosed = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(workers * 16), runnable -> {
+                Thread thread = new Thread(runnable, "ws-chat-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        session.setTextMessageSizeLimit(maxFrameBytes);
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session container = nativeSession.getNativeSession(Session.class);
+            if (container != null) {
+                container.setMaxIdleTimeout(idleTimeoutMillis);
+            }
+        }
+        ApiKeyRegistry.ApiKey apiKey = (ApiKeyRegistry.ApiKey) session.getAttributes().get(ApiKeyFilter.API_KEY_ATTRIBUTE);
+        Connection connection = new Connection(
+            new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferBytes), apiKey);
+        session.getAttributes().put(CONNECTION_ATTRIBUTE, connection);
+        connections.add(connection);
+        logger.info("WebSocket chat connected - SessionID: {}, KeyID: {}",
+                   session.getId(), apiKey != null ? apiKey.getId() : null);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection connection = (Connection) session.getAttributes().get(CONNECTION_ATTRIBUTE);
+        if (connection == null) {
+            return;
+        }
+        connections.remove(connection);
+        for (String conversationId : connection.conversations) {
+            unsubscribe(connection, conversationId);
+        }
+        logger.info("WebSocket chat closed - SessionID: {}, Status: {}", session.getId(), status.getCode());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Connection connection = (Connection) session.getAttributes().get(CONNECTION_ATTRIBUTE);
+        JsonNode frame;
+        try {
+            frame = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            send(connection, error(null, "Frames must be JSON objects"));
+            return;
+        }
+        String id = frame.path("id").asText(null);
+        String type = frame.path("type").asText("");
+
+        switch (type) {
+            case "chat":
+                submitTurn(connection, id, frame);
+                break;
+            case "new":
+                startConversation(connection, id, frame.path("userId").asText("anonymous"));
+                break;
+            case "history":
+                sendHistory(connection, id, frame.path("conversationId").asText(null));
+                break;
+            case "subscribe":
+                subscribeFrame(connection, id, frame.path("conversationId").asText(null));
+                break;
+            case "unsubscribe":
+                unsubscribe(connection, frame.path("conversationId").asText(null));
+                send(connection, frame(type, id));
+                break;
+            case "ping":
+                send(connection, frame("pong", id));
+                break;
+            default:
+                send(connection, error(id, "Unknown frame type: " + type));
+        }
+    }
+
+    private void submitTurn(Connection connection, String id, JsonNode frame) {
+        if (!connection.permits(ApiKeyRegistry.SCOPE_CHAT)) {
+            send(connection, error(id, "API key is not permitted to chat"));
+            return;
+        }
+        ChatRequest request = new ChatRequest(frame.path("message").asText(""),
+            frame.path("conversationId").asText(null), frame.path("userId").asText(null));
+        if (request.getMessage().isBlank() || request.getMessage().length() > 4000) {
+            send(connection, error(id, "Message must be between 1 and 4000 characters"));
+            return;
+        }
+        if (connection.apiKey != null && !connection.apiKey.tryAcquire()) {
+            send(connection, error(id, "API key quota exceeded"));
+            return;
+        }
+        if (connection.inFlight.incrementAndGet() > maxInFlightPerConnection) {
+            connection.inFlight.decrementAndGet();
+            rejectedTurns.increment();
+            send(connection, error(id, "Too many turns in flight on this connection"));
+            return;
+        }
+        usageAnalytics.recordChat(connection.apiKey != null ? connection.apiKey.getId() : null,
+            request.getUserId(), request.getMessage());
+        // Optional per-turn deadline, counted from when the frame arrived
+        long timeoutMillis = frame.path("timeoutMs").asLong(0);
+        long receivedAt = System.nanoTime();
+        try {
+            executor.execute(() -> runTurn(connection, id, request, timeoutMillis, receivedAt));
+        } catch (RejectedExecutionException e) {
+            connection.inFlight.decrementAndGet();
+            rejectedTurns.increment();
+            send(connection, error(id, "Chat service is busy, please retry shortly"));
+        }
+    }
+
+    private void runTurn(Connection connection, String id, ChatRequest request, long timeoutMillis, long receivedAt) {
+        String requestId = idGenerator.nextId();
+        MDC.put(RequestIdFilter.MDC_REQUEST_ID, requestId);
+        RequestIdFilter.setConversationId(request.getConversationId());
+        connection.requestIds.add(requestId);
+        long startTime = System.nanoTime();
+        int status = 200;
+        try (Tracer.Span span = tracer.startServerSpan("WS /ws/chat", null)) {
+            span.tag("requestId", requestId);
+            // Nobody is left to read the reply of a turn whose client went away while it was queued
+            if (!connection.session.isOpen()) {
+                status = 499;
+                abandonedTurns.increment();
+                return;
+            }
+            if (timeoutMillis > 0) {
+                long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedAt);
+                if (remaining <= 0) {
+                    RequestDeadline.recordExpiredOnArrival();
+                    throw new DeadlineExceededException("Turn deadline passed while it was queued");
+                }
+                RequestDeadline.start(remaining);
+            }
+            ChatResponse response = chatService.sendChatMessage(request, requestId, false);
+            span.tag("conversationId", response.getConversationId()).tag("success", response.isSuccess());
+            if (!response.isSuccess()) {
+                status = 500;
+            } else if (response.getConversationId() != null) {
+                subscribe(connection, response.getConversationId());
+            }
+            Map<String, Object> reply = frame("reply", id);
+            reply.put("requestId", requestId);
+            reply.put("result", response);
+            send(connection, reply);
+        } catch (LaneSaturatedException e) {
+            status = 503;
+            send(connection, error(id, e.getMessage()));
+        } catch (DeadlineExceededException e) {
+            status = 504;
+            send(connection, error(id, e.getMessage()));
+        } catch (Exception e) {
+            status = 500;
+            logger.error("Error processing WebSocket chat turn - RequestID: {}, Error: {}",
+                        requestId, e.getMessage(), e);
+            send(connection, error(id, "Failed to process chat message"));
+        } finally {
+            turns.increment();
+            requestStatistics.record(RequestStatistics.CATEGORY_CHAT, status, System.nanoTime() - startTime);
+            connection.requestIds.remove(requestId);
+            connection.inFlight.decrementAndGet();
+            RequestDeadline.clear();
+            MDC.remove(RequestIdFilter.MDC_REQUEST_ID);
+            MDC.remove(RequestIdFilter.MDC_CONVERSATION_ID);
+        }
+    }
+
+    private void startConversation(Connection connection, String id, String userId) {
+        if (!connection.permits(ApiKeyRegistry.SCOPE_CHAT)) {
+            send(connection, error(id, "API key is not permitted to chat"));
+            return;
+        }
+        String conversationId = chatService.startNewConversation(userId);
+        subscribe(connection, conversationId);
+        Map<String, Object> reply = frame("conversation", id);
+        reply.put("conversationId", conversationId);
+        send(connection, reply);
+    }
+
+    private void sendHistory(Connection connection, String id, String conversationId) {
+        if (!connection.permits(ApiKeyRegistry.SCOPE_HISTORY)) {
+            send(connection, error(id, "API key is not permitted to read history"));
+            return;
+        }
+        if (conversationId == null) {
+            send(connection, error(id, "conversationId is required"));
+            return;
+        }
+        Map<String, Object> reply = frame("history", id);
+        reply.put("result", chatService.getConversationHistory(conversationId));
+        send(connection, reply);
+    }
+
+    private void subscribeFrame(Connection connection, String id, String conversationId) {
+        if (!connection.permits(ApiKeyRegistry.SCOPE_HISTORY)) {
+            send(connection, error(id, "API key is not permitted to follow conversations"));
+            return;
+        }
+        if (conversationId == null) {
+            send(connection, error(id, "conversationId is required"));
+            return;
+        }
+        if (!sessionCluster.isLocal(conversationId)) {
+            send(connection, error(id, "Conversation is owned by another cluster node; its turns cannot be followed here"));
+            return;
+        }
+        if (!subscribe(connection, conversationId)) {
+            send(connection, error(id, "Too many conversations on this connection"));
+            return;
+        }
+        send(connection, frame("subscribe", id));
+    }
+
+    private boolean subscribe(Connection connection, String conversationId) {
+        if (!sessionCluster.isLocal(conversationId)) {
+            // No events for it would ever arrive on this node
+            return false;
+        }
+        if (!connection.conversations.contains(conversationId)
+                && connection.conversations.size() >= maxSubscriptionsPerConnection) {
+            return false;
+        }
+        connection.conversations.add(conversationId);
+        subscribers.computeIfAbsent(conversationId, key -> ConcurrentHashMap.newKeySet()).add(connection);
+        return true;
+    }
+
+    private void unsubscribe(Connection connection, String conversationId) {
+        if (conversationId == null) {
+            return;
+        }
+        connection.conversations.remove(conversationId);
+        subscribers.computeIfPresent(conversationId, (key, followers) -> {
+            followers.remove(connection);
+            return followers.isEmpty() ? null : followers;
+        });
+    }
+
+    /**
+     * Push a finished turn to every connection following the conversation, except the one that sent it
+     */
+    @EventListener
+    public void onChatTurn(ChatTurnEvent event) {
+        Set<Connection> followers = subscribers.get(event.getConversationId());
+        if (followers == null || followers.isEmpty()) {
+            return;
+        }
+        Map<String, Object> push = frame("turn", null);
+        push.put("conversationId", event.getConversationId());
+        push.put("requestId", event.getRequestId());
+        push.put("message", event.getUserMessage());
+        push.put("response", event.getResponse());
+        push.put("timestamp", event.getTimestamp());
+        // Recipients are chosen now, while the sender still lists the turn as its own
+        List<Connection> recipients = new ArrayList<>(followers.size());
+        for (Connection connection : followers) {
+            if (!connection.requestIds.contains(event.getRequestId())) {
+                recipients.add(connection);
+            }
+        }
+        if (recipients.isEmpty()) {
+            return;
+        }
+        try {
+            // Sent from a worker so the thread that finished the turn never writes to a slow socket
+            executor.execute(MdcContext.wrap(() -> {
+                for (Connection connection : recipients) {
+                    pushedTurns.increment();
+                    send(connection, push);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            droppedPushes.increment();
+        }
+    }
+
+    private void send(Connection connection, Map<String, Object> frame) {
+        try {
+            connection.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+        } catch (SessionLimitExceededException e) {
+            // The client fell too far behind: drop it rather than buffer more frames for it
+            slowClientsClosed.increment();
+            logger.warn("Closing slow WebSocket client - SessionID: {}, Reason: {}",
+                       connection.session.getId(), e.getMessage());
+            try {
+                connection.session.getDelegate().close(e.getStatus());
+            } catch (IOException ignored) {
+                // Already closing
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("WebSocket send failed - SessionID: {}, Error: {}", connection.session.getId(), e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> frame(String type, String id) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", type);
+        if (id != null) {
+            frame.put("id", id);
+        }
+        return frame;
+    }
+
+    private static Map<String, Object> error(String id, String message) {
+        Map<String, Object> frame = frame("error", id);
+        frame.put("message", message);
+        return frame;
+    }
+
+    /**
+     * Connection and turn counters for the stats endpoint
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("connections", connections.size());
+        statistics.put("followedConversations", subscribers.size());
+        statistics.put("busyWorkers", executor.getActiveCount());
+        statistics.put("queuedTasks", executor.getQueue().size());
+        statistics.put("turns", turns.sum());
+        statistics.put("rejectedTurns", rejectedTurns.sum());
+        statistics.put("abandonedTurns", abandonedTurns.sum());
+        statistics.put("pushedTurns", pushedTurns.sum());
+        statistics.put("droppedPushes", droppedPushes.sum());
+        statistics.put("slowClientsClosed", slowClientsClosed.sum());
+        return statistics;
+    }
+
+    private static final class Connection {
+        final ConcurrentWebSocketSessionDecorator session;
+        final ApiKeyRegistry.ApiKey apiKey;
+        final Set<String> conversations = ConcurrentHashMap.newKeySet();
+        // Turns this connection is waiting on; their pushes are skipped because the reply covers them
+        final Set<String> requestIds = ConcurrentHashMap.newKeySet();
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Connection(ConcurrentWebSocketSessionDecorator session, ApiKeyRegistry.ApiKey apiKey) {
+            this.session = session;
+            this.apiKey = apiKey;
+        }
+
+        boolean permits(String scope) {
+            // No key means API keys are disabled
+            return apiKey == null || apiKey.hasScope(scope);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.n8nintegration.controller;
+
+import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.dto.SessionSnapshot;
+import com.example.n8nintegration.service.SessionClusterService;
+import com.example.n8nintegration.service.UsageAnalytics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Endpoints used between backend nodes when session clustering is enabled
+ */
+@RestController
+@RequestMapping("/api/n8n/cluster")
+public class ClusterController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterController.class);
+
+    @Autowired
+    private SessionClusterService sessionCluster;
+
+    @Autowired
+    private UsageAnalytics usageAnalytics;
+
+    /**
+     * Receive a replica of a hot session from its owner
+     * POST /api/n8n/cluster/sessions
+     */
+    @PostMapping("/sessions")
+    public ResponseEntity<Void> storeReplica(@RequestBody SessionSnapshot snapshot) {
+        logger.debug("Received session replica - ConversationID: {}", snapshot.getConversationId());
+        sessionCluster.storeReplica(snapshot);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * This node's usage sketches, merged by the node answering an analytics query
+     * GET /api/n8n/cluster/analytics
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<byte[]> usageSketch(
+            @RequestParam(value = "minutes", required = false, defaultValue = "60") int minutes) throws IOException {
+        if (!usageAnalytics.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(usageAnalytics.exportSketch(minutes));
+    }
+
+    /**
+     * Cluster membership as seen by this node
+     * GET /api/n8n/cluster/status
+     */
+    @GetMapping("/status")
+    public ResponseEntity<ApiResponse> clusterStatus() {
+        return ResponseEntity.ok(
+            new ApiResponse(true, "Cluster status", sessionCluster.getStatus(), null));
+    }
+}
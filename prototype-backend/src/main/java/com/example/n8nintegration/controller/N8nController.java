@@ -1,18 +1,35 @@
 package com.example.n8nintegration.controller;
 
+import com.example.n8nintegration.config.ApiKeyFilter;
+import com.example.n8nintegration.config.OutboundCompressionInterceptor;
+import com.example.n8nintegration.config.RequestIdFilter;
+import com.example.n8nintegration.service.ApiKeyRegistry;
+import com.example.n8nintegration.service.BatchChatService;
 import com.example.n8nintegration.service.N8nService;
 import com.example.n8nintegration.service.ChatService;
+import com.example.n8nintegration.service.ConversationSessionStore;
+import com.example.n8nintegration.service.ConversationSearchIndex;
+import com.example.n8nintegration.service.HistoryResponseCache;
+import com.example.n8nintegration.service.IdempotencyStore;
+import com.example.n8nintegration.service.RequestDeadline;
+import com.example.n8nintegration.service.RequestStatistics;
+import com.example.n8nintegration.service.SemanticResponseCache;
+import com.example.n8nintegration.service.Tracer;
+import com.example.n8nintegration.service.TrafficLanes;
+import com.example.n8nintegration.service.UsageAnalytics;
 import com.example.n8nintegration.dto.WebhookRequest;
 import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/n8n")
@@ -27,33 +44,81 @@ public class N8nController {
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private ConversationSessionStore sessionStore;
+
+    @Autowired
+    private OutboundCompressionInterceptor outboundCompression;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private RequestStatistics requestStatistics;
+
+    @Autowired
+    private HistoryResponseCache historyCache;
+
+    @Autowired
+    private TrafficLanes trafficLanes;
+
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    @Autowired
+    private SemanticResponseCache semanticCache;
+
+    @Autowired
+    private ConversationSearchIndex searchIndex;
+
+    @Autowired
+    private UsageAnalytics usageAnalytics;
+
+    @Autowired
+    private BatchChatService batchChat;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @PostMapping("/trigger")
     public ResponseEntity<ApiResponse> triggerWebhook(
             @Valid @RequestBody WebhookRequest request,
-            @RequestHeader(value = "X-API-Key", required = false) String apiKey) {
+            @RequestAttribute(value = ApiKeyFilter.API_KEY_ATTRIBUTE, required = false) ApiKeyRegistry.ApiKey apiKey,
+            @RequestHeader(value = Tracer.TRACEPARENT_HEADER, required = false) String traceparent,
+            @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         
-        logger.info("Received webhook trigger request - RequestID: {}, Payload: {}", 
-                   requestId, request);
+        logger.info("Received webhook trigger request - RequestID: {}", requestId);
 
-        try {
-            // Validate API key if configured
-            if (!n8nService.isValidApiKey(apiKey)) {
-                logger.warn("Invalid or missing API key - RequestID: {}", requestId);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new ApiResponse(false, "Invalid or missing API key", null, requestId));
-            }
+        String scope = "trigger:" + (apiKey != null ? apiKey.getId() : "-");
+        return idempotencyStore.execute(scope, idempotencyKey, request, () -> {
+            usageAnalytics.recordTrigger(apiKey != null ? apiKey.getId() : null);
+            return processTrigger(request, requestId, traceparent);
+        }, message -> new ApiResponse(false, message, null, requestId));
+    }
+
+    private ResponseEntity<ApiResponse> processTrigger(WebhookRequest request, String requestId, String traceparent) {
+        try (Tracer.Span span = tracer.startServerSpan("POST /api/n8n/trigger", traceparent)) {
+            span.tag("requestId", requestId);
 
             // Forward request to n8n webhook
             Object response = n8nService.triggerWebhook(request, requestId);
             
-            logger.info("Successfully triggered n8n webhook - RequestID: {}, Response: {}", 
-                       requestId, response);
+            logger.info("Successfully triggered n8n webhook - RequestID: {}", requestId);
 
             return ResponseEntity.ok(
                 new ApiResponse(true, "Webhook triggered successfully", response, requestId));
 
+        } catch (LaneSaturatedException e) {
+            logger.warn("Bulk lane saturated, rejecting webhook trigger - RequestID: {}", requestId);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ApiResponse(false, e.getMessage(), null, requestId));
+        } catch (DeadlineExceededException e) {
+            logger.info("Webhook trigger dropped - RequestID: {}, Reason: {}", requestId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(new ApiResponse(false, e.getMessage(), null, requestId));
         } catch (Exception e) {
             logger.error("Error triggering n8n webhook - RequestID: {}, Error: {}", 
                         requestId, e.getMessage(), e);
@@ -87,13 +152,59 @@ public class N8nController {
         }
     }
 
+    /**
+     * Live performance figures: request rates, errors and latency percentiles over
+     * 1, 5 and 15 minutes, plus session memory, outbound pool load, n8n endpoint status and lane saturation
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse> stats() {
+        java.util.Map<String, Object> sessions = new java.util.LinkedHashMap<>();
+        sessions.put("active", chatService.getActiveSessionCount());
+        sessions.put("historyBytesEstimate", chatService.estimateHistoryBytes());
+        sessions.put("cachedHistoryConversations", historyCache.size());
+        sessions.put("store", sessionStore.getStatistics());
+
+        java.util.Map<String, Object> pools = new java.util.LinkedHashMap<>();
+        pools.put("chat", chatService.getChatPoolUtilization());
+        pools.put("webhook", n8nService.getWebhookPoolUtilization());
+
+        java.util.Map<String, Object> endpoints = new java.util.LinkedHashMap<>();
+        endpoints.put("chat", chatService.getChatEndpointStatus());
+        endpoints.put("webhook", n8nService.getWebhookEndpointStatus());
+
+        Runtime runtime = Runtime.getRuntime();
+        java.util.Map<String, Object> heap = new java.util.LinkedHashMap<>();
+        heap.put("usedBytes", runtime.totalMemory() - runtime.freeMemory());
+        heap.put("maxBytes", runtime.maxMemory());
+
+        java.util.Map<String, Object> statsData = new java.util.LinkedHashMap<>();
+        statsData.put("requests", requestStatistics.snapshot());
+        statsData.put("sessions", sessions);
+        statsData.put("pools", pools);
+        statsData.put("endpoints", endpoints);
+        statsData.put("outboundCompression", outboundCompression.getStatistics());
+        statsData.put("lanes", trafficLanes.snapshot());
+        statsData.put("websocket", chatWebSocketHandler.getStatistics());
+        statsData.put("semanticCache", semanticCache.getStatistics());
+        statsData.put("search", searchIndex.getStatistics());
+        statsData.put("analytics", usageAnalytics.getStatistics());
+        statsData.put("batchChat", batchChat.getStatistics());
+        statsData.put("idempotency", idempotencyStore.getStatistics());
+        statsData.put("deadlines", RequestDeadline.getStatistics());
+        statsData.put("heap", heap);
+        statsData.put("timestamp", java.time.LocalDateTime.now().toString());
+
+        return ResponseEntity.ok(new ApiResponse(true, "Service statistics", statsData, null));
+    }
+
     @GetMapping("/test")
-    public ResponseEntity<ApiResponse> testEndpoint() {
-        String requestId = UUID.randomUUID().toString();
+    public ResponseEntity<ApiResponse> testEndpoint(
+            @RequestParam(value = "live", required = false, defaultValue = "false") boolean live) {
+        String requestId = RequestIdFilter.currentRequestId();
         logger.info("Test endpoint called - RequestID: {}", requestId);
         
         try {
-            boolean isConnected = n8nService.testConnection();
+            boolean isConnected = n8nService.testConnection(live);
             String message = isConnected ? "N8N connection test successful" : "N8N connection test failed";
             
             return ResponseEntity.ok(
@@ -0,0 +1,74 @@
+package com.example.n8nintegration.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One prompt of a batch chat request. It continues an existing conversation, starts from the
+ * given context messages, or starts a new conversation when neither is set.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchChatItem {
+
+    // Caller's reference, echoed in the result
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("message")
+    private String message;
+
+    @JsonProperty("conversationId")
+    private String conversationId;
+
+    @JsonProperty("userId")
+    private String userId;
+
+    // Earlier turns as {"role": "user" | "assistant", "content": "..."}
+    @JsonProperty("context")
+    private List<Map<String, String>> context;
+
+    public BatchChatItem() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public List<Map<String, String>> getContext() {
+        return context;
+    }
+
+    public void setContext(List<Map<String, String>> context) {
+        this.context = context;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.n8nintegration.dto;
+
+/**
+ * Cursor parameters for reading a page of conversation history.
+ * Cursors are message sequence numbers, which start at 1 and increase with every message.
+ */
+public class HistoryPageRequest {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private final Long before;
+    private final Long after;
+    private final int limit;
+
+    public HistoryPageRequest(Long before, Long after, Integer limit) {
+        this.before = before;
+        this.after = after;
+        this.limit = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(MAX_LIMIT, limit));
+    }
+
+    /**
+     * A page request, or null when none of the cursor parameters were given
+     */
+    public static HistoryPageRequest of(Long before, Long after, Integer limit) {
+        if (before == null && after == null && limit == null) {
+            return null;
+        }
+        return new HistoryPageRequest(before, after, limit);
+    }
+
+    public Long getBefore() {
+        return before;
+    }
+
+    public Long getAfter() {
+        return after;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Stable key for caching this page
+     */
+    public String cacheKey() {
+        return "b" + before + ":a" + after + ":l" + limit;
+    }
+
+    public String toQueryString() {
+        StringBuilder query = new StringBuilder("?limit=").append(limit);
+        if (before != null) {
+            query.append("&before=").append(before);
+        }
+        if (after != null) {
+            query.append("&after=").append(after);
+        }
+        return query.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryPageRequest{" +
+                "before=" + before +
+                ", after=" + after +
+                ", limit=" + limit +
+                '}';
+    }
+}
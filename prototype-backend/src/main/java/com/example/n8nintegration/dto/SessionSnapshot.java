@@ -0,0 +1,79 @@
+package com.example.n8nintegration.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Transfer Object for copying a conversation session between backend nodes
+ */
+public class SessionSnapshot {
+
+    private String conversationId;
+    private String userId;
+    private long createdAt;
+    private long lastActivity;
+    private List<Map<String, Object>> messages;
+
+    // Default constructor
+    public SessionSnapshot() {}
+
+    // Constructor with all fields
+    public SessionSnapshot(String conversationId, String userId, long createdAt, long lastActivity,
+                           List<Map<String, Object>> messages) {
+        this.conversationId = conversationId;
+        this.userId = userId;
+        this.createdAt = createdAt;
+        this.lastActivity = lastActivity;
+        this.messages = messages;
+    }
+
+    // Getters and Setters
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    public List<Map<String, Object>> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Map<String, Object>> messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionSnapshot{" +
+                "conversationId='" + conversationId + '\'' +
+                ", userId='" + userId + '\'' +
+                ", messageCount=" + (messages != null ? messages.size() : 0) +
+                '}';
+    }
+}
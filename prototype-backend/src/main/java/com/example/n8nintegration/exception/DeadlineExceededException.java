@@ -0,0 +1,17 @@
+package com.example.n8nintegration.exception;
+
+/**
+ * Thrown when the caller's deadline passed before or during an n8n call; answered with 504
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
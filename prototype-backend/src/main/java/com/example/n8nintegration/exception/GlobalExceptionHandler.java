@@ -1,8 +1,10 @@
 package com.example.n8nintegration.exception;
 
+import com.example.n8nintegration.config.RequestIdFilter;
 import com.example.n8nintegration.dto.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -13,7 +15,6 @@ import org.springframework.web.client.RestClientException;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -22,7 +23,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiResponse> handleValidationExceptions(MethodArgumentNotValidException ex) {
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         Map<String, String> errors = new HashMap<>();
         
         ex.getBindingResult().getAllErrors().forEach((error) -> {
@@ -39,16 +40,35 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(RestClientException.class)
     public ResponseEntity<ApiResponse> handleRestClientException(RestClientException ex) {
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         logger.error("REST client error - RequestID: {}, Error: {}", requestId, ex.getMessage(), ex);
 
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
             .body(new ApiResponse(false, "External service error: " + ex.getMessage(), null, requestId));
     }
 
+    @ExceptionHandler(LaneSaturatedException.class)
+    public ResponseEntity<ApiResponse> handleLaneSaturatedException(LaneSaturatedException ex) {
+        String requestId = RequestIdFilter.currentRequestId();
+        logger.warn("Traffic lane saturated - RequestID: {}, Lane: {}", requestId, ex.getLane());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(new ApiResponse(false, ex.getMessage(), null, requestId));
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ApiResponse> handleDeadlineExceededException(DeadlineExceededException ex) {
+        String requestId = RequestIdFilter.currentRequestId();
+        logger.info("Request deadline exceeded - RequestID: {}, Reason: {}", requestId, ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+            .body(new ApiResponse(false, ex.getMessage(), null, requestId));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ApiResponse> handleRuntimeException(RuntimeException ex) {
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         logger.error("Runtime error - RequestID: {}, Error: {}", requestId, ex.getMessage(), ex);
 
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -57,7 +77,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse> handleGenericException(Exception ex) {
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIdFilter.currentRequestId();
         logger.error("Unexpected error - RequestID: {}, Error: {}", requestId, ex.getMessage(), ex);
 
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,26 @@
+package com.example.n8nintegration.exception;
+
+/**
+ * Thrown when a traffic lane has no capacity left for another n8n call; answered with 503
+ */
+public class LaneSaturatedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String lane;
+    private final int retryAfterSeconds;
+
+    public LaneSaturatedException(String lane, int retryAfterSeconds) {
+        super("The " + lane + " lane is at capacity, please retry shortly");
+        this.lane = lane;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
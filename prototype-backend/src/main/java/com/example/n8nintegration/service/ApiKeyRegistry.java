@@ -0,0 +1,299 @@
+package com.example.n8nintegration.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of tenant API keys.
+ *
+ * Keys are loaded from a local JSON file (n8n.api.keys.file) and reloaded when the file changes.
+ * Only SHA-256 digests of the keys are kept in memory, in an open-addressing table, so a lookup
+ * is a single digest plus a short probe with constant-time comparisons.
+ * The legacy single n8n.api.key property is still honoured as a key with every scope.
+ */
+@Service
+@Lazy(false)
+public class ApiKeyRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiKeyRegistry.class);
+
+    public static final String SCOPE_CHAT = "chat";
+    public static final String SCOPE_HISTORY = "history";
+    public static final String SCOPE_TRIGGER = "trigger";
+    public static final Set<String> ALL_SCOPES = Set.of(SCOPE_CHAT, SCOPE_HISTORY, SCOPE_TRIGGER);
+
+    // Diagnostics endpoints; never implied by omitting scopes, only granted explicitly or to n8n.api.key
+    public static final String SCOPE_ADMIN = "admin";
+    // Searching every user's conversations, for support staff; granted like admin
+    public static final String SCOPE_SEARCH = "search";
+    private static final Set<String> OPERATOR_SCOPES =
+        Set.of(SCOPE_CHAT, SCOPE_HISTORY, SCOPE_TRIGGER, SCOPE_ADMIN, SCOPE_SEARCH);
+
+    @Value("${n8n.api.key:}")
+    private String configuredApiKey;
+
+    @Value("${n8n.api.keys.file:}")
+    private String keysFile;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Quota counters survive reloads so editing the file does not reset usage
+    private final Map<String, QuotaWindow> quotaWindows = new ConcurrentHashMap<>();
+
+    private volatile KeyIndex index = KeyIndex.EMPTY;
+    private volatile long keysFileModified = -1L;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Poll the key file and rebuild the index when it has changed
+     */
+    @Scheduled(fixedDelayString = "${n8n.api.keys.reload-interval-ms:5000}")
+    public void reloadIfChanged() {
+        if (keysFile == null || keysFile.isBlank()) {
+            return;
+        }
+        try {
+            Path path = Paths.get(keysFile);
+            long modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : 0L;
+            if (modified != keysFileModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to check API key file {}: {}", keysFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Authentication is enabled as soon as at least one key is registered
+     */
+    public boolean isEnabled() {
+        return index.size > 0;
+    }
+
+    /**
+     * Resolve a presented key to its registered entry, or null if unknown
+     */
+    public ApiKey authenticate(String providedApiKey) {
+        KeyIndex current = index;
+        if (providedApiKey == null || providedApiKey.isEmpty() || current.size == 0) {
+            return null;
+        }
+        return current.lookup(sha256(providedApiKey));
+    }
+
+    public int getKeyCount() {
+        return index.size;
+    }
+
+    private synchronized void reload() {
+        List<ApiKey> keys = new ArrayList<>();
+
+        if (configuredApiKey != null && !configuredApiKey.trim().isEmpty()) {
+            keys.add(new ApiKey("default", sha256(configuredApiKey.trim()), OPERATOR_SCOPES, 0,
+                quotaWindows.computeIfAbsent("default", id -> new QuotaWindow())));
+        }
+
+        long modified = 0L;
+        if (keysFile != null && !keysFile.isBlank()) {
+            Path path = Paths.get(keysFile);
+            try {
+                if (Files.exists(path)) {
+                    modified = Files.getLastModifiedTime(path).toMillis();
+                    List<KeyDefinition> definitions = objectMapper.readValue(
+                        path.toFile(), new TypeReference<List<KeyDefinition>>() {});
+                    for (KeyDefinition definition : definitions) {
+                        ApiKey key = toApiKey(definition);
+                        if (key != null) {
+                            keys.add(key);
+                        }
+                    }
+                } else {
+                    logger.warn("API key file not found: {}", keysFile);
+                }
+            } catch (Exception e) {
+                // Keep serving the previous index rather than locking everyone out
+                logger.error("Failed to load API key file {}: {}", keysFile, e.getMessage());
+                keysFileModified = modified;
+                return;
+            }
+        }
+
+        index = KeyIndex.build(keys);
+        keysFileModified = modified;
+        logger.info("Loaded {} API key(s)", keys.size());
+    }
+
+    private ApiKey toApiKey(KeyDefinition definition) {
+        byte[] digest;
+        if (definition.sha256 != null && !definition.sha256.isBlank()) {
+            digest = HexFormat.of().parseHex(definition.sha256.trim());
+        } else if (definition.key != null && !definition.key.isBlank()) {
+            digest = sha256(definition.key.trim());
+        } else {
+            logger.warn("Skipping API key entry without key or sha256: {}", definition.id);
+            return null;
+        }
+
+        String id = definition.id != null ? definition.id : HexFormat.of().formatHex(digest, 0, 4);
+        Set<String> scopes = definition.scopes == null || definition.scopes.isEmpty()
+            ? ALL_SCOPES : Set.copyOf(definition.scopes);
+
+        return new ApiKey(id, digest, scopes, Math.max(0, definition.quotaPerMinute),
+            quotaWindows.computeIfAbsent(id, k -> new QuotaWindow()));
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A registered key: identity, allowed scopes and per-minute quota
+     */
+    public static class ApiKey {
+        private final String id;
+        private final byte[] digest;
+        private final Set<String> scopes;
+        private final int quotaPerMinute;
+        private final QuotaWindow quotaWindow;
+
+        ApiKey(String id, byte[] digest, Set<String> scopes, int quotaPerMinute, QuotaWindow quotaWindow) {
+            this.id = id;
+            this.digest = digest;
+            this.scopes = scopes;
+            this.quotaPerMinute = quotaPerMinute;
+            this.quotaWindow = quotaWindow;
+        }
+
+        public boolean hasScope(String scope) {
+            return scopes.contains(scope);
+        }
+
+        /**
+         * Consume one request from the current minute's quota
+         */
+        public boolean tryAcquire() {
+            return quotaPerMinute <= 0 || quotaWindow.tryAcquire(quotaPerMinute);
+        }
+
+        public String getId() { return id; }
+        public Set<String> getScopes() { return scopes; }
+        public int getQuotaPerMinute() { return quotaPerMinute; }
+    }
+
+    // Fixed one-minute window; good enough for coarse tenant quotas
+    static class QuotaWindow {
+        // Minute in the high 32 bits and the count in the low 32, so a new minute resets both at once
+        private final AtomicLong state = new AtomicLong();
+
+        boolean tryAcquire(int limit) {
+            return tryAcquire(limit, System.currentTimeMillis() / 60_000L);
+        }
+
+        boolean tryAcquire(int limit, long minute) {
+            long updated = state.updateAndGet(current -> {
+                if ((current >>> 32) != minute) {
+                    return (minute << 32) | 1;
+                }
+                // Stop counting past the limit so the count cannot overflow
+                return (current & 0xFFFFFFFFL) > limit ? current : current + 1;
+            });
+            return (updated & 0xFFFFFFFFL) <= limit;
+        }
+    }
+
+    // Open-addressing (linear probing) table keyed by SHA-256 digest
+    private static final class KeyIndex {
+        static final KeyIndex EMPTY = new KeyIndex(new byte[1][], new ApiKey[1], 0);
+
+        final byte[][] digests;
+        final ApiKey[] keys;
+        final int mask;
+        final int size;
+
+        private KeyIndex(byte[][] digests, ApiKey[] keys, int size) {
+            this.digests = digests;
+            this.keys = keys;
+            this.mask = digests.length - 1;
+            this.size = size;
+        }
+
+        static KeyIndex build(List<ApiKey> entries) {
+            // Keep the load factor at or below 0.5 so probe chains stay short
+            int capacity = Integer.highestOneBit(Math.max(2, entries.size() * 2 - 1)) << 1;
+            byte[][] digests = new byte[capacity][];
+            ApiKey[] keys = new ApiKey[capacity];
+            int size = 0;
+            for (ApiKey key : entries) {
+                int slot = slotOf(key.digest, capacity - 1);
+                while (digests[slot] != null && !MessageDigest.isEqual(digests[slot], key.digest)) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (digests[slot] == null) {
+                    size++;
+                }
+                digests[slot] = key.digest;
+                keys[slot] = key;
+            }
+            return new KeyIndex(digests, keys, size);
+        }
+
+        ApiKey lookup(byte[] digest) {
+            int slot = slotOf(digest, mask);
+            for (int probes = 0; probes <= mask; probes++) {
+                byte[] candidate = digests[slot];
+                if (candidate == null) {
+                    return null;
+                }
+                // MessageDigest.isEqual runs in time independent of where the bytes differ
+                if (MessageDigest.isEqual(candidate, digest)) {
+                    return keys[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int slotOf(byte[] digest, int mask) {
+            int h = (digest[0] & 0xff) | (digest[1] & 0xff) << 8 | (digest[2] & 0xff) << 16 | (digest[3] & 0xff) << 24;
+            return h & mask;
+        }
+    }
+
+    // Shape of one entry in the key file
+    static class KeyDefinition {
+        public String id;
+        public String key;
+        public String sha256;
+        public List<String> scopes;
+        public int quotaPerMinute;
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.BatchChatItem;
+import com.example.n8nintegration.dto.ChatRequest;
+import com.example.n8nintegration.dto.ChatResponse;
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.SynchronizedHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs batches of chat prompts, for replaying many prompts through the workflow at once.
+ *
+ * Items are read from the request one at a time and each batch keeps at most its parallelism of
+ * turns in flight, so neither input nor results are held in memory. Turns go through the normal
+ * chat pipeline but in the bulk lane, which yields to interactive chat; an item that finds the lane
+ * full waits and tries again for up to lane-retry-ms. Every result is written as one NDJSON line as
+ * soon as it completes, in completion order, followed by a summary line with latency percentiles.
+ */
+@Service
+public class BatchChatService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchChatService.class);
+
+    private static final int MAX_MESSAGE_CHARS = 4000;
+    private static final int MAX_CONTEXT_MESSAGES = 200;
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final long MAX_BACKOFF_MILLIS = 2_000;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UsageAnalytics usageAnalytics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.batch.parallelism:4}")
+    private int defaultParallelism;
+
+    // Per batch; by default no more than the bulk lane can run at once
+    @Value("${chat.batch.max-parallelism:${n8n.lanes.bulk.concurrency:8}}")
+    private int maxParallelism;
+
+    @Value("${chat.batch.max-concurrent:2}")
+    private int maxConcurrentBatches;
+
+    @Value("${chat.batch.max-items:10000}")
+    private int maxItems;
+
+    @Value("${chat.batch.lane-retry-ms:60000}")
+    private long laneRetryMillis;
+
+    private Semaphore batchPermits;
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder laneRetries = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        maxParallelism = Math.max(1, maxParallelism);
+        batchPermits = new Semaphore(Math.max(1, maxConcurrentBatches));
+        int threads = Math.max(1, maxConcurrentBatches) * maxParallelism;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Each batch limits its own tasks, so the queue never holds more than the running batches allow
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "batch-chat-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Claim a place for a new batch; false when max-concurrent batches are already running.
+     * A successful call must be paired with {@link #endBatch()}.
+     */
+    public boolean tryBeginBatch() {
+        return batchPermits.tryAcquire();
+    }
+
+    public void endBatch() {
+        batchPermits.release();
+    }
+
+    public int parallelism(Integer requested) {
+        int parallelism = requested != null ? requested : defaultParallelism;
+        return Math.max(1, Math.min(maxParallelism, parallelism));
+    }
+
+    /**
+     * Run every item read from the input and write one result line per item, then a summary line.
+     * Returns once all started items have finished; stops reading early if the client goes away.
+     */
+    public void run(MappingIterator<BatchChatItem> input, int parallelism, ApiKeyRegistry.ApiKey apiKey,
+                    String requestId, OutputStream out) {
+        ResultWriter writer = new ResultWriter(out);
+        Semaphore slots = new Semaphore(parallelism);
+        SynchronizedHistogram latencies = new SynchronizedHistogram(MAX_LATENCY_MICROS, 2);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long started = System.nanoTime();
+        batches.increment();
+
+        int index = 0;
+        String inputError = null;
+        try {
+            while (!writer.isClosed()) {
+                BatchChatItem item;
+                try {
+                    if (!input.hasNextValue()) {
+                        break;
+                    }
+                    item = input.nextValue();
+                } catch (IOException | RuntimeException e) {
+                    inputError = "Invalid batch input after " + index + " items: " + e.getMessage();
+                    break;
+                }
+                if (index >= maxItems) {
+                    inputError = "Batch is limited to " + maxItems + " items";
+                    break;
+                }
+
+                int itemIndex = index++;
+                items.increment();
+                String problem = validate(item);
+                if (problem != null) {
+                    failed.incrementAndGet();
+                    writer.write(failure(itemIndex, item, problem, 0, 0));
+                    continue;
+                }
+                slots.acquire();
+                executor.execute(MdcContext.wrap(RequestDeadline.wrap(() -> {
+                    try {
+                        Map<String, Object> result = runItem(itemIndex, item, apiKey, requestId, latencies);
+                        (Boolean.TRUE.equals(result.get("success")) ? succeeded : failed).incrementAndGet();
+                        writer.write(result);
+                    } finally {
+                        slots.release();
+                    }
+                })));
+            }
+            // Wait for the items still in flight
+            slots.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inputError = "Batch interrupted";
+        }
+
+        double elapsedMillis = (System.nanoTime() - started) / 1_000_000.0;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("type", "summary");
+        summary.put("items", index);
+        summary.put("succeeded", succeeded.get());
+        summary.put("failed", failed.get());
+        summary.put("parallelism", parallelism);
+        summary.put("elapsedMs", round(elapsedMillis));
+        summary.put("itemsPerSecond", elapsedMillis > 0 ? round(index * 1000.0 / elapsedMillis) : 0.0);
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", millis(latencies.getValueAtPercentile(50)));
+        latency.put("p90", millis(latencies.getValueAtPercentile(90)));
+        latency.put("p99", millis(latencies.getValueAtPercentile(99)));
+        latency.put("max", millis(latencies.getMaxValue()));
+        summary.put("latencyMs", latency);
+        if (inputError != null) {
+            summary.put("error", inputError);
+        }
+        writer.write(summary);
+
+        logger.info("Batch chat finished - RequestID: {}, Items: {}, Succeeded: {}, Failed: {}, Parallelism: {}, Duration: {}ms{}",
+                   requestId, index, succeeded.get(), failed.get(), parallelism, Math.round(elapsedMillis),
+                   writer.isClosed() ? ", client disconnected" : "");
+    }
+
+    private Map<String, Object> runItem(int index, BatchChatItem item, ApiKeyRegistry.ApiKey apiKey,
+                                        String requestId, SynchronizedHistogram latencies) {
+        long started = System.nanoTime();
+        String itemRequestId = requestId + "-" + index;
+        int attempts = 0;
+        try {
+            if (apiKey != null && !apiKey.tryAcquire()) {
+                return failure(index, item, "API key quota exceeded", 0, 0);
+            }
+            usageAnalytics.recordChat(apiKey != null ? apiKey.getId() : null, item.getUserId(), item.getMessage());
+
+            String conversationId = item.getConversationId();
+            if (item.getContext() != null && !item.getContext().isEmpty()) {
+                conversationId = chatService.startSeededConversation(item.getUserId(), item.getContext());
+            } else if (conversationId == null) {
+                // Started once, so lane retries below do not each leave an empty conversation behind
+                conversationId = chatService.startNewConversation(item.getUserId());
+            }
+            ChatRequest request = new ChatRequest(item.getMessage(), conversationId, item.getUserId());
+
+            ChatResponse response;
+            long backoffMillis = 50;
+            while (true) {
+                attempts++;
+                try {
+                    response = chatService.sendBatchChatMessage(request, itemRequestId);
+                    break;
+                } catch (LaneSaturatedException e) {
+                    long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                    if (waitedMillis + backoffMillis > laneRetryMillis) {
+                        return failure(index, item, "n8n capacity unavailable: " + e.getMessage(),
+                            attempts, System.nanoTime() - started);
+                    }
+                    laneRetries.increment();
+                    Thread.sleep(backoffMillis);
+                    backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+                }
+            }
+
+            long latencyNanos = System.nanoTime() - started;
+            latencies.recordValue(Math.min(MAX_LATENCY_MICROS, latencyNanos / 1000));
+            if (!response.isSuccess()) {
+                return failure(index, item, response.getMessage(), attempts, latencyNanos);
+            }
+            Map<String, Object> result = result(index, item, true);
+            result.put("conversationId", response.getConversationId());
+            result.put("response", response.getResponse());
+            result.put("latencyMs", round(latencyNanos / 1_000_000.0));
+            result.put("attempts", attempts);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(index, item, "Batch interrupted", attempts, System.nanoTime() - started);
+        } catch (DeadlineExceededException e) {
+            return failure(index, item, e.getMessage(), attempts, System.nanoTime() - started);
+        } catch (RuntimeException e) {
+            logger.error("Batch chat item failed - RequestID: {}, Error: {}", itemRequestId, e.getMessage(), e);
+            return failure(index, item, "Failed to process chat message", attempts, System.nanoTime() - started);
+        }
+    }
+
+    private static String validate(BatchChatItem item) {
+        if (item == null || item.getMessage() == null || item.getMessage().isBlank()) {
+            return "Message cannot be blank";
+        }
+        if (item.getMessage().length() > MAX_MESSAGE_CHARS) {
+            return "Message cannot exceed " + MAX_MESSAGE_CHARS + " characters";
+        }
+        List<Map<String, String>> context = item.getContext();
+        if (context == null || context.isEmpty()) {
+            return null;
+        }
+        if (item.getConversationId() != null) {
+            return "Use either conversationId or context, not both";
+        }
+        if (context.size() > MAX_CONTEXT_MESSAGES) {
+            return "Context cannot exceed " + MAX_CONTEXT_MESSAGES + " messages";
+        }
+        for (Map<String, String> message : context) {
+            String role = message != null ? message.get("role") : null;
+            if (!"user".equals(role) && !"assistant".equals(role)) {
+                return "Context messages need a role of user or assistant";
+            }
+            String content = message.get("content");
+            if (content == null || content.length() > MAX_MESSAGE_CHARS) {
+                return "Context messages need content of at most " + MAX_MESSAGE_CHARS + " characters";
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> result(int index, BatchChatItem item, boolean success) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("type", "result");
+        result.put("index", index);
+        if (item != null && item.getId() != null) {
+            result.put("id", item.getId());
+        }
+        result.put("success", success);
+        return result;
+    }
+
+    private static Map<String, Object> failure(int index, BatchChatItem item, String error, int attempts, long latencyNanos) {
+        Map<String, Object> result = result(index, item, false);
+        result.put("error", error);
+        result.put("latencyMs", round(latencyNanos / 1_000_000.0));
+        result.put("attempts", attempts);
+        return result;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", Math.max(1, maxConcurrentBatches) - batchPermits.availablePermits());
+        stats.put("batches", batches.sum());
+        stats.put("items", items.sum());
+        stats.put("laneRetries", laneRetries.sum());
+        return stats;
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    /**
+     * Serializes result lines from the worker threads; a failed write means the client is gone
+     */
+    private final class ResultWriter {
+        private final OutputStream out;
+        private volatile boolean closed;
+
+        ResultWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void write(Map<String, Object> line) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.write(objectMapper.writeValueAsBytes(line));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                closed = true;
+                logger.warn("Batch chat client disconnected - Error: {}", e.getMessage());
+            }
+        }
+    }
+}
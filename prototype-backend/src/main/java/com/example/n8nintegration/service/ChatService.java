@@ -2,109 +2,268 @@ package com.example.n8nintegration.service;
 
 import com.example.n8nintegration.dto.ChatRequest;
 import com.example.n8nintegration.dto.ChatResponse;
+import com.example.n8nintegration.dto.HistoryPageRequest;
+import com.example.n8nintegration.dto.SessionSnapshot;
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@Lazy(false)
 public class ChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
 
     @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    @Qualifier("n8nChatRestTemplate")
     private RestTemplate restTemplate;
 
-    @Value("${n8n.chat.webhook.url:${n8n.webhook.url}}")
-    private String n8nChatWebhookUrl;
+    @Autowired
+    @Qualifier("n8nProbeRestTemplate")
+    private RestTemplate probeRestTemplate;
+
+    @Autowired
+    @Qualifier("n8nBulkRestTemplate")
+    private RestTemplate bulkRestTemplate;
+
+    @Autowired
+    private TrafficLanes trafficLanes;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SemanticResponseCache semanticCache;
+
+    @Autowired
+    private SessionClusterService sessionCluster;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private HistoryResponseCache historyCache;
+
+    @Autowired
+    private ConversationSessionStore sessionStore;
+
+    @Autowired
+    private ConversationSearchIndex searchIndex;
+
+    @Value("${n8n.chat.webhook.urls:${n8n.chat.webhook.url:${n8n.webhook.url}}}")
+    private String n8nChatWebhookUrls;
+
+    @Value("${n8n.pool.eject-after-failures:3}")
+    private int ejectAfterFailures;
+
+    @Value("${n8n.pool.ejection-ms:30000}")
+    private long ejectionMillis;
+
+    // Keep each conversation on one n8n worker while it is healthy and not overloaded
+    @Value("${n8n.chat.affinity.enabled:true}")
+    private boolean conversationAffinity;
 
-    @Value("${n8n.api.key:}")
-    private String configuredApiKey;
+    @Value("${n8n.chat.affinity.load-factor:1.25}")
+    private double affinityLoadFactor;
 
     @Value("${chat.session.timeout.minutes:60}")
     private int sessionTimeoutMinutes;
 
+    private static final int EXPORT_CHUNK_SIZE = 256;
+
+    // Fallback answers when n8n replies without usable content; never cached
+    private static final String NO_RESPONSE_MESSAGE =
+        "I apologize, but I didn't receive a proper response. Please try again.";
+    private static final String UNREADABLE_RESPONSE_MESSAGE =
+        "I received a response but couldn't process it properly. Please try again.";
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    
-    // Simple in-memory storage for conversation sessions
-    // In production, consider using Redis or a database
-    private final Map<String, ConversationSession> conversationSessions = new ConcurrentHashMap<>();
+
+    @Value("${n8n.health.ttl-ms:60000}")
+    private long healthTtlMillis;
+
+    // HEAD and GET only check that n8n answers; POST runs the workflow with a test payload
+    @Value("${n8n.health.probe-method:HEAD}")
+    private String probeMethod;
+
+    private N8nEndpointPool chatEndpointPool;
+
+    @PostConstruct
+    public void initEndpointPool() {
+        chatEndpointPool = new N8nEndpointPool("chat", N8nEndpointPool.parseUrls(n8nChatWebhookUrls),
+            ejectAfterFailures, ejectionMillis);
+        chatEndpointPool.setAffinityLoadFactor(affinityLoadFactor);
+        sessionStore.setRemovalListener(historyCache::invalidate);
+    }
 
     /**
      * Start a new conversation session
      */
     public String startNewConversation(String userId) {
-        String conversationId = "conv-" + UUID.randomUUID().toString();
-        
-        ConversationSession session = new ConversationSession(conversationId, userId);
-        conversationSessions.put(conversationId, session);
-        
-        logger.info("Started new conversation - ConversationID: {}, UserID: {}", conversationId, userId);
-        
-        // Clean up old sessions periodically
-        cleanupExpiredSessions();
-        
-        return conversationId;
+        return createSession(userId).getConversationId();
     }
 
     /**
      * Send a chat message to the AI via N8n
      */
     public ChatResponse sendChatMessage(ChatRequest request, String requestId) {
+        return sendChatMessage(request, requestId, false);
+    }
+
+    /**
+     * Send a chat message; unless the request was already forwarded by a cluster peer,
+     * it is handed to the node that owns the conversation
+     */
+    public ChatResponse sendChatMessage(ChatRequest request, String requestId, boolean peerRequest) {
+        if (!peerRequest) {
+            ChatResponse forwarded = sessionCluster.routeChat(request, requestId);
+            if (forwarded != null) {
+                return forwarded;
+            }
+        }
+        return processChatMessage(request, requestId, false);
+    }
+
+    /**
+     * Run one turn of a batch. It is sent to n8n in the bulk lane, so interactive chat keeps priority,
+     * and never answered from the semantic cache, so every turn reflects the current workflow.
+     *
+     * @throws LaneSaturatedException if the bulk lane had no capacity; no message was recorded, but a
+     *         request without a conversationId has already started one, so callers that retry should
+     *         start the conversation first with startNewConversation
+     */
+    public ChatResponse sendBatchChatMessage(ChatRequest request, String requestId) {
+        ChatResponse forwarded = sessionCluster.routeChat(request, requestId);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        return processChatMessage(request, requestId, true);
+    }
+
+    /**
+     * Start a conversation that already contains the given user and assistant messages, for
+     * replaying a prompt in context
+     */
+    public String startSeededConversation(String userId, List<Map<String, String>> context) {
+        ConversationSession session = createSession(userId);
+        for (Map<String, String> message : context) {
+            session.addMessage(message.get("role"), message.get("content"));
+        }
+        session.updateLastActivity();
+        sessionStore.touch(session);
+        searchIndex.indexConversation(session.toSnapshot());
+        return session.getConversationId();
+    }
+
+    private ChatResponse processChatMessage(ChatRequest request, String requestId, boolean batch) {
         logger.info("Processing chat message - RequestID: {}, ConversationID: {}", 
                    requestId, request.getConversationId());
 
+        ChatTurnJfrEvent turnEvent = new ChatTurnJfrEvent();
+        turnEvent.begin();
+        turnEvent.requestId = requestId;
+        // Pinned before the lookup, so the session cannot be spilled and loaded again as a second copy mid-turn
+        String pinnedId = request.getConversationId();
+        if (pinnedId != null) {
+            sessionStore.pin(pinnedId);
+        }
         try {
             // Get or create conversation session
-            ConversationSession session = getOrCreateSession(request.getConversationId(), request.getUserId());
+            ConversationSession session;
+            long phaseStart = System.nanoTime();
+            try (Tracer.Span span = tracer.startSpan("chat.session")) {
+                session = getOrCreateSession(request.getConversationId(), request.getUserId());
+                span.tag("conversationId", session.getConversationId()).tag("messages", session.getMessageCount());
+            }
+            if (!session.getConversationId().equals(pinnedId)) {
+                if (pinnedId != null) {
+                    sessionStore.unpin(pinnedId);
+                }
+                pinnedId = session.getConversationId();
+                sessionStore.pin(pinnedId);
+            }
+            turnEvent.sessionLookup = System.nanoTime() - phaseStart;
+            turnEvent.conversationId = session.getConversationId();
             
-            // Prepare headers for N8n request
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("X-Request-ID", requestId);
-            headers.set("X-Request-Type", "chat");
-            headers.set("User-Agent", "Spring-Boot-Chat-Integration/1.0");
-
-            // Prepare payload for N8n
-            Map<String, Object> payload = createChatPayload(request, session, requestId);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-
-            // Make the request to N8n
-            long startTime = System.currentTimeMillis();
-            ResponseEntity<Object> response = restTemplate.exchange(
-                n8nChatWebhookUrl,
-                HttpMethod.POST,
-                entity,
-                Object.class
-            );
-            long duration = System.currentTimeMillis() - startTime;
-
-            logger.info("N8N chat response - RequestID: {}, Status: {}, Duration: {}ms", 
-                       requestId, response.getStatusCode(), duration);
+            // An opening prompt does not depend on earlier turns, so a similar one asked before
+            // can be answered from the semantic cache
+            boolean cacheable = !batch && semanticCache.isEnabled() && session.getMessageCount() == 0;
+            SemanticResponseCache.Hit cacheHit = null;
+            if (cacheable) {
+                try (Tracer.Span span = tracer.startSpan("chat.semantic-cache")) {
+                    cacheHit = semanticCache.lookup(session.getUserId(), request.getMessage());
+                    span.tag("hit", cacheHit != null);
+                    if (cacheHit != null) {
+                        span.tag("similarity", cacheHit.getSimilarity());
+                    }
+                }
+            }
 
-            // Process the response from N8n
-            String aiResponse = extractAiResponseFromN8n(response.getBody());
+            String aiResponse;
+            if (cacheHit != null && !cacheHit.shouldVerify()) {
+                aiResponse = cacheHit.getResponse();
+                turnEvent.cacheHit = true;
+                logger.info("Answered from semantic cache - RequestID: {}, Similarity: {}",
+                           requestId, cacheHit.getSimilarity());
+            } else {
+                aiResponse = requestAiResponse(request, session, requestId, batch, turnEvent);
+                if (cacheable && isCacheableAnswer(aiResponse)) {
+                    if (cacheHit != null) {
+                        semanticCache.verify(session.getUserId(), request.getMessage(), cacheHit, aiResponse);
+                    } else {
+                        semanticCache.put(session.getUserId(), request.getMessage(), aiResponse);
+                    }
+                }
+            }
             
             // Update conversation session
-            session.addMessage("user", request.getMessage());
-            session.addMessage("assistant", aiResponse);
+            long userSeq = session.addMessage("user", request.getMessage());
+            long assistantSeq = session.addMessage("assistant", aiResponse);
             session.updateLastActivity();
+            sessionStore.touch(session);
+            searchIndex.indexTurn(session.getConversationId(), session.getUserId(),
+                userSeq, request.getMessage(), assistantSeq, aiResponse);
+            historyCache.invalidate(session.getConversationId());
+            sessionCluster.replicate(session.getConversationId(), session.getMessageCount(), session::toSnapshot);
+            eventPublisher.publishEvent(
+                new ChatTurnEvent(requestId, session.getConversationId(), request.getMessage(), aiResponse));
 
             // Return successful response
+            turnEvent.success = true;
             return ChatResponse.success(aiResponse, session.getConversationId());
 
+        } catch (LaneSaturatedException e) {
+            logger.warn("Chat lane saturated - RequestID: {}", requestId);
+            throw e;
+        } catch (DeadlineExceededException e) {
+            logger.info("Chat turn dropped - RequestID: {}, Reason: {}", requestId, e.getMessage());
+            throw e;
         } catch (RestClientException e) {
             logger.error("Failed to call N8n chat webhook - RequestID: {}, Error: {}", 
                         requestId, e.getMessage(), e);
@@ -113,6 +272,11 @@ public class ChatService {
             logger.error("Unexpected error processing chat message - RequestID: {}, Error: {}", 
                         requestId, e.getMessage(), e);
             return ChatResponse.error("An unexpected error occurred while processing your message");
+        } finally {
+            if (pinnedId != null) {
+                sessionStore.unpin(pinnedId);
+            }
+            turnEvent.commit();
         }
     }
 
@@ -120,7 +284,23 @@ public class ChatService {
      * Get conversation history
      */
     public Map<String, Object> getConversationHistory(String conversationId) {
-        ConversationSession session = conversationSessions.get(conversationId);
+        return getConversationHistory(conversationId, null, false);
+    }
+
+    /**
+     * Get conversation history, or one page of it when a page request is given.
+     * Unless the request came from a cluster peer, the owning node is asked.
+     */
+    public Map<String, Object> getConversationHistory(String conversationId, HistoryPageRequest page,
+                                                      boolean peerRequest) {
+        if (!peerRequest) {
+            Map<String, Object> forwarded = sessionCluster.routeHistory(conversationId, page, null);
+            if (forwarded != null) {
+                return forwarded;
+            }
+        }
+
+        ConversationSession session = findSession(conversationId);
         
         if (session == null) {
             logger.warn("Conversation not found: {}", conversationId);
@@ -131,23 +311,138 @@ public class ChatService {
             );
         }
 
-        return Map.of(
-            "success", true,
-            "message", "Conversation history retrieved",
-            "conversationId", conversationId,
-            "messages", session.getMessages(),
-            "messageCount", session.getMessages().size(),
-            "createdAt", session.getCreatedAt(),
-            "lastActivity", session.getLastActivity()
-        );
+        return page == null ? session.toHistoryData() : session.toHistoryPage(page);
     }
 
     /**
-     * Test chat connection to N8n
+     * Get the serialized history (or history page) of a conversation this node owns, from the
+     * near-cache when the session has not changed. Returns null if the conversation is remote or unknown.
      */
-    public boolean testChatConnection() {
+    public HistoryResponseCache.CachedHistory getCachedHistory(String conversationId, HistoryPageRequest page,
+                                                               boolean peerRequest) {
+        if (!peerRequest && !sessionCluster.isLocal(conversationId)) {
+            return null;
+        }
+
+        HistoryResponseCache.CachedHistory cached = historyCache.get(conversationId, page);
+        if (cached != null) {
+            return cached;
+        }
+
+        ConversationSession session = findSession(conversationId);
+        if (session == null) {
+            return null;
+        }
+
         try {
-            logger.debug("Testing chat connection to N8n webhook: {}", n8nChatWebhookUrl);
+            long version;
+            Map<String, Object> historyData;
+            synchronized (session) {
+                version = session.getVersion();
+                historyData = page == null ? session.toHistoryData() : session.toHistoryPage(page);
+            }
+            cached = historyCache.put(conversationId, page, Long.toHexString(ConversationSession.toEpochMillis(session.getCreatedAt())),
+                version, historyData);
+
+            // A turn may have landed between building and caching the entry
+            if (session.getVersion() != version) {
+                historyCache.invalidate(conversationId);
+            }
+            return cached;
+        } catch (Exception e) {
+            logger.warn("Failed to cache conversation history - ConversationID: {}, Error: {}",
+                       conversationId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Whether the conversation exists, locally or on the node that owns it
+     */
+    public boolean conversationExists(String conversationId, boolean peerRequest) {
+        if (!peerRequest) {
+            Map<String, Object> forwarded = sessionCluster.routeHistory(
+                conversationId, new HistoryPageRequest(null, null, 1), null);
+            if (forwarded != null) {
+                return Boolean.TRUE.equals(forwarded.get("success"));
+            }
+        }
+        return findSession(conversationId) != null;
+    }
+
+    /**
+     * Stream the full history of a conversation as JSON. Messages are copied from the session
+     * and written in small chunks, so memory use does not grow with the conversation length.
+     */
+    public void exportConversationHistory(String conversationId, boolean peerRequest, OutputStream out)
+            throws IOException {
+        if (!peerRequest && sessionCluster.streamHistoryExport(conversationId, out)) {
+            return;
+        }
+
+        ConversationSession session = findSession(conversationId);
+        if (session == null) {
+            throw new IllegalStateException("Conversation not found: " + conversationId);
+        }
+
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("conversationId", session.getConversationId());
+            generator.writeStringField("userId", session.getUserId());
+            generator.writeStringField("createdAt", session.getCreatedAt().toString());
+            generator.writeArrayFieldStart("messages");
+
+            int written = 0;
+            while (true) {
+                java.util.List<Map<String, Object>> chunk = session.copyRange(written, written + EXPORT_CHUNK_SIZE);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                for (Map<String, Object> message : chunk) {
+                    generator.writeObject(message);
+                }
+                written += chunk.size();
+                generator.flush();
+            }
+
+            generator.writeEndArray();
+            generator.writeNumberField("messageCount", written);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Test the connection to n8n. Unless a live check is requested, the answer comes from the
+     * background health probes and n8n is only contacted when those results are older than
+     * n8n.health.ttl-ms.
+     */
+    public boolean testChatConnection(boolean live) {
+        if (live) {
+            return chatEndpointPool.probe(this::probeChatEndpoint, true);
+        }
+        return chatEndpointPool.cachedProbe(this::probeChatEndpoint, healthTtlMillis);
+    }
+
+    /**
+     * Probe every chat endpoint in the background so health reads never wait on n8n
+     */
+    @Scheduled(fixedDelayString = "${n8n.health.probe-interval-ms:30000}")
+    public void refreshEndpointHealth() {
+        chatEndpointPool.probe(this::probeChatEndpoint, true);
+    }
+
+    /**
+     * Retry ejected chat endpoints so they can be readmitted
+     */
+    @Scheduled(fixedDelayString = "${n8n.pool.probe-interval-ms:10000}")
+    public void probeEjectedEndpoints() {
+        chatEndpointPool.probe(this::probeChatEndpoint, false);
+    }
+
+    private boolean probeChatEndpoint(String url) {
+        try {
+            logger.debug("Testing chat connection to N8n webhook: {}", url);
             
             Map<String, Object> testPayload = Map.of(
                 "test", true,
@@ -161,20 +456,27 @@ public class ChatService {
             headers.set("X-Request-Type", "test");
             headers.set("User-Agent", "Spring-Boot-Chat-Integration/1.0");
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(testPayload, headers);
+            HttpMethod method = HttpMethod.valueOf(probeMethod.trim().toUpperCase());
+            HttpEntity<?> entity = method == HttpMethod.POST ? new HttpEntity<>(testPayload, headers) : new HttpEntity<>(headers);
 
-            ResponseEntity<Object> response = restTemplate.exchange(
-                n8nChatWebhookUrl,
-                HttpMethod.POST,
+            ResponseEntity<Void> response = trafficLanes.run(TrafficLanes.PROBE, () -> probeRestTemplate.exchange(
+                url,
+                method,
                 entity,
-                Object.class
-            );
+                Void.class
+            ));
 
             boolean isSuccessful = response.getStatusCode().is2xxSuccessful();
             logger.debug("Chat connection test result: {}, Status: {}", isSuccessful, response.getStatusCode());
             
             return isSuccessful;
 
+        } catch (HttpClientErrorException e) {
+            // A webhook registered for POST answers other methods with 4xx, which still shows n8n is up
+            return !HttpMethod.POST.name().equalsIgnoreCase(probeMethod.trim());
+        } catch (LaneSaturatedException e) {
+            // Our own probe lane is full, which says nothing about the endpoint
+            throw e;
         } catch (Exception e) {
             logger.error("Chat connection test failed: {}", e.getMessage());
             return false;
@@ -184,13 +486,62 @@ public class ChatService {
     // Private helper methods
 
     private ConversationSession getOrCreateSession(String conversationId, String userId) {
-        if (conversationId != null && conversationSessions.containsKey(conversationId)) {
-            return conversationSessions.get(conversationId);
+        ConversationSession existing = findSession(conversationId);
+        if (existing != null) {
+            return existing;
         }
         
         // Create new session if not found
-        String newConversationId = startNewConversation(userId);
-        return conversationSessions.get(newConversationId);
+        return createSession(userId);
+    }
+
+    private ConversationSession createSession(String userId) {
+        String conversationId = newLocalConversationId();
+        
+        ConversationSession session = new ConversationSession(conversationId, userId);
+        sessionStore.putIfAbsent(session);
+        
+        logger.info("Started new conversation - ConversationID: {}, UserID: {}", conversationId, userId);
+        
+        // Clean up old sessions periodically
+        cleanupExpiredSessions();
+        
+        return session;
+    }
+
+    /**
+     * Look up a local session, taking over the replica if this node is now responsible for it
+     */
+    private ConversationSession findSession(String conversationId) {
+        if (conversationId == null) {
+            return null;
+        }
+        ConversationSession session = sessionStore.get(conversationId);
+        if (session != null) {
+            return session;
+        }
+
+        SessionSnapshot replica = sessionCluster.takeReplica(conversationId);
+        if (replica == null) {
+            return null;
+        }
+        logger.info("Promoting replica of conversation - ConversationID: {}, Messages: {}",
+                   conversationId, replica.getMessages().size());
+        ConversationSession promoted = ConversationSession.fromSnapshot(replica);
+        searchIndex.indexConversation(replica);
+        ConversationSession raced = sessionStore.putIfAbsent(promoted);
+        return raced != null ? raced : promoted;
+    }
+
+    /**
+     * Generate a conversation ID that this node owns, so the first turn needs no forwarding
+     */
+    private String newLocalConversationId() {
+        String conversationId = idGenerator.nextId("conv-");
+        for (int attempt = 0; attempt < 64 && !sessionCluster.isLocal(conversationId); attempt++) {
+            conversationId = idGenerator.nextId("conv-");
+        }
+        return conversationId;
     }
 
     private Map<String, Object> createChatPayload(ChatRequest request, ConversationSession session, String requestId) {
@@ -208,7 +559,7 @@ public class ChatService {
         metadata.put("requestId", requestId);
         metadata.put("timestamp", LocalDateTime.now().toString());
         metadata.put("source", "spring-boot-chat");
-        metadata.put("messageCount", session.getMessages().size());
+        metadata.put("messageCount", session.getMessageCount());
         metadata.put("sessionAge", session.getSessionAgeMinutes());
         
         payload.put("chat", chatData);
@@ -218,10 +569,86 @@ public class ChatService {
         return payload;
     }
 
+    /**
+     * Send one turn to an n8n chat endpoint, within the chat lane, and extract the answer
+     */
+    private String requestAiResponse(ChatRequest request, ConversationSession session, String requestId,
+                                     boolean batch, ChatTurnJfrEvent turnEvent) {
+        // Prepare headers for N8n request
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Request-ID", requestId);
+        headers.set("X-Request-Type", "chat");
+        headers.set("User-Agent", "Spring-Boot-Chat-Integration/1.0");
+
+        // Prepare payload for N8n
+        Map<String, Object> payload;
+        long phaseStart = System.nanoTime();
+        try (Tracer.Span span = tracer.startSpan("chat.payload")) {
+            payload = createChatPayload(request, session, requestId);
+            span.tag("messageChars", request.getMessage().length()).tag("sessionMessages", session.getMessageCount());
+        }
+        turnEvent.payloadBuild = System.nanoTime() - phaseStart;
+        if (turnEvent.isEnabled()) {
+            // Serialized again only while a recording is running
+            turnEvent.bytesOut = payloadBytes(payload);
+        }
+
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
+
+        // Make the request to one of the N8n chat endpoints
+        long startTime = System.currentTimeMillis();
+        phaseStart = System.nanoTime();
+        String affinityKey = conversationAffinity ? session.getConversationId() : null;
+        RestTemplate template = batch ? bulkRestTemplate : restTemplate;
+        if (turnEvent.isEnabled()) {
+            ResponseBytes.track();
+        }
+        ResponseEntity<Object> response;
+        try {
+            response = trafficLanes.run(batch ? TrafficLanes.BULK : TrafficLanes.CHAT, () ->
+                chatEndpointPool.execute(affinityKey, url -> template.exchange(
+                    url,
+                    HttpMethod.POST,
+                    entity,
+                    Object.class
+                )));
+        } finally {
+            turnEvent.bytesIn = ResponseBytes.finish();
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        turnEvent.n8nExchange = System.nanoTime() - phaseStart;
+
+        logger.info("N8N chat response - RequestID: {}, Status: {}, Duration: {}ms", 
+                   requestId, response.getStatusCode(), duration);
+
+        // Process the response from N8n
+        String aiResponse;
+        phaseStart = System.nanoTime();
+        try (Tracer.Span span = tracer.startSpan("chat.extract")) {
+            aiResponse = extractAiResponseFromN8n(response.getBody());
+            span.tag("responseChars", aiResponse.length());
+        }
+        turnEvent.responseExtraction = System.nanoTime() - phaseStart;
+        return aiResponse;
+    }
+
+    private long payloadBytes(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload).length;
+        } catch (JsonProcessingException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isCacheableAnswer(String aiResponse) {
+        return !NO_RESPONSE_MESSAGE.equals(aiResponse) && !UNREADABLE_RESPONSE_MESSAGE.equals(aiResponse);
+    }
+
     private String extractAiResponseFromN8n(Object responseBody) {
         try {
             if (responseBody == null) {
-                return "I apologize, but I didn't receive a proper response. Please try again.";
+                return NO_RESPONSE_MESSAGE;
             }
 
             // Convert response to map for easier processing
@@ -244,7 +671,7 @@ public class ChatService {
             
         } catch (Exception e) {
             logger.warn("Failed to extract AI response from N8n response: {}", e.getMessage());
-            return "I received a response but couldn't process it properly. Please try again.";
+            return UNREADABLE_RESPONSE_MESSAGE;
         }
     }
 
@@ -252,78 +679,41 @@ public class ChatService {
         try {
             LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(sessionTimeoutMinutes);
             
-            conversationSessions.entrySet().removeIf(entry -> {
-                ConversationSession session = entry.getValue();
-                boolean isExpired = session.getLastActivity().isBefore(cutoffTime);
-                
-                if (isExpired) {
-                    logger.debug("Removing expired conversation session: {}", entry.getKey());
-                }
-                
-                return isExpired;
-            });
+            int removed = sessionStore.removeExpired(cutoffTime);
+            if (removed > 0) {
+                logger.debug("Removed expired conversation sessions: {}", removed);
+            }
+            sessionCluster.removeExpiredReplicas(ConversationSession.toEpochMillis(cutoffTime));
             
         } catch (Exception e) {
             logger.warn("Error during session cleanup: {}", e.getMessage());
         }
     }
 
-    public String getChatWebhookUrl() {
-        return n8nChatWebhookUrl;
-    }
-
-    // Inner class for conversation session management
-    private static class ConversationSession {
-        private final String conversationId;
-        private final String userId;
-        private final LocalDateTime createdAt;
-        private LocalDateTime lastActivity;
-        private final Map<String, Object> messages;
-
-        public ConversationSession(String conversationId, String userId) {
-            this.conversationId = conversationId;
-            this.userId = userId;
-            this.createdAt = LocalDateTime.now();
-            this.lastActivity = LocalDateTime.now();
-            this.messages = new HashMap<>();
-            this.messages.put("history", new java.util.ArrayList<>());
-        }
+    public int getActiveSessionCount() {
+        return sessionStore.size();
+    }
 
-        public void addMessage(String role, String content) {
-            Map<String, Object> message = new HashMap<>();
-            message.put("role", role);
-            message.put("content", content);
-            message.put("timestamp", LocalDateTime.now().toString());
-            
-            @SuppressWarnings("unchecked")
-            java.util.List<Map<String, Object>> history = 
-                (java.util.List<Map<String, Object>>) messages.get("history");
-            history.add(message);
-        }
+    /**
+     * Approximate heap used by the message histories of all sessions on this node
+     */
+    public long estimateHistoryBytes() {
+        return sessionStore.getBytes();
+    }
 
-        @SuppressWarnings("unchecked")
-        public java.util.List<Map<String, Object>> getRecentMessages(int limit) {
-            java.util.List<Map<String, Object>> history = 
-                (java.util.List<Map<String, Object>>) messages.get("history");
-            
-            int size = history.size();
-            int fromIndex = Math.max(0, size - limit);
-            
-            return history.subList(fromIndex, size);
-        }
+    public String getChatWebhookUrl() {
+        return chatEndpointPool.getPrimaryUrl();
+    }
 
-        public void updateLastActivity() {
-            this.lastActivity = LocalDateTime.now();
-        }
+    public N8nEndpointPool getChatEndpointPool() {
+        return chatEndpointPool;
+    }
 
-        public long getSessionAgeMinutes() {
-            return java.time.Duration.between(createdAt, LocalDateTime.now()).toMinutes();
-        }
+    public List<Map<String, Object>> getChatEndpointStatus() {
+        return chatEndpointPool.snapshot();
+    }
 
-        // Getters
-        public String getConversationId() { return conversationId; }
-        public LocalDateTime getCreatedAt() { return createdAt; }
-        public LocalDateTime getLastActivity() { return lastActivity; }
-        public Map<String, Object> getMessages() { return messages; }
+    public Map<String, Object> getChatPoolUtilization() {
+        return chatEndpointPool.utilization();
     }
 }
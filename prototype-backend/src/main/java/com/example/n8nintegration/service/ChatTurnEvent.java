@@ -0,0 +1,27 @@
+package com.example.n8nintegration.service;
+
+/**
+ * Published by ChatService after a chat turn has been added to a conversation on this node
+ */
+public class ChatTurnEvent {
+
+    private final String requestId;
+    private final String conversationId;
+    private final String userMessage;
+    private final String response;
+    private final long timestamp;
+
+    public ChatTurnEvent(String requestId, String conversationId, String userMessage, String response) {
+        this.requestId = requestId;
+        this.conversationId = conversationId;
+        this.userMessage = userMessage;
+        this.response = response;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getRequestId() { return requestId; }
+    public String getConversationId() { return conversationId; }
+    public String getUserMessage() { return userMessage; }
+    public String getResponse() { return response; }
+    public long getTimestamp() { return timestamp; }
+}
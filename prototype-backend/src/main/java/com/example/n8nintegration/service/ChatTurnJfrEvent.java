@@ -0,0 +1,60 @@
+package com.example.n8nintegration.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one chat turn handled on this node, with the time spent in each phase.
+ * While no recording has the event enabled, begin, commit and the phase timing cost next to nothing.
+ */
+@Name("com.example.n8nintegration.ChatTurn")
+@Label("Chat Turn")
+@Category({"n8n Integration", "Chat"})
+@Description("A chat turn from session lookup to the stored answer")
+@StackTrace(false)
+final class ChatTurnJfrEvent extends jdk.jfr.Event {
+
+    @Label("Request ID")
+    String requestId;
+
+    @Label("Conversation ID")
+    String conversationId;
+
+    @Label("Session Lookup")
+    @Timespan(Timespan.NANOSECONDS)
+    long sessionLookup;
+
+    @Label("Payload Build")
+    @Timespan(Timespan.NANOSECONDS)
+    long payloadBuild;
+
+    @Label("n8n Exchange")
+    @Description("Waiting for a chat lane and the HTTP call to n8n, including retries on other endpoints")
+    @Timespan(Timespan.NANOSECONDS)
+    long n8nExchange;
+
+    @Label("Response Extraction")
+    @Timespan(Timespan.NANOSECONDS)
+    long responseExtraction;
+
+    @Label("Bytes Out")
+    @Description("JSON payload sent to n8n, before compression")
+    @DataAmount(DataAmount.BYTES)
+    long bytesOut;
+
+    @Label("Bytes In")
+    @Description("Response body read from n8n, after gzip decoding; -1 when no recording was running")
+    @DataAmount(DataAmount.BYTES)
+    long bytesIn = -1;
+
+    @Label("Semantic Cache Hit")
+    boolean cacheHit;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,123 @@
+package com.example.n8nintegration.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Immutable consistent hash ring with virtual nodes.
+ *
+ * Adding or removing a node only moves the keys that hashed next to that node's
+ * virtual points; every other key keeps its owner.
+ */
+public class ConsistentHashRing<T> {
+
+    private final long[] points;
+    private final Object[] owners;
+    private final int nodeCount;
+
+    public ConsistentHashRing(List<T> nodes, Function<T, String> nodeKey, int virtualNodes) {
+        int total = nodes.size() * virtualNodes;
+        long[] hashes = new long[total];
+        Object[] nodeAtHash = new Object[total];
+        int i = 0;
+        for (T node : nodes) {
+            String key = nodeKey.apply(node);
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[i] = hash(key + "#" + v);
+                nodeAtHash[i] = node;
+                i++;
+            }
+        }
+
+        // Sort points and owners together
+        Integer[] order = new Integer[total];
+        for (int j = 0; j < total; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[total];
+        this.owners = new Object[total];
+        for (int j = 0; j < total; j++) {
+            points[j] = hashes[order[j]];
+            owners[j] = nodeAtHash[order[j]];
+        }
+        this.nodeCount = nodes.size();
+    }
+
+    /**
+     * The node that owns a key, ignoring load and health
+     */
+    public T owner(String key) {
+        return locate(key, node -> true);
+    }
+
+    /**
+     * Walk clockwise from the key's position and return the first distinct node
+     * the predicate accepts, or null if none does
+     */
+    @SuppressWarnings("unchecked")
+    public T locate(String key, Predicate<T> acceptable) {
+        if (points.length == 0) {
+            return null;
+        }
+        int start = indexFor(hash(key));
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        for (int step = 0; step < points.length && visited.size() < nodeCount; step++) {
+            Object node = owners[(start + step) % points.length];
+            if (visited.put(node, Boolean.TRUE) == null && acceptable.test((T) node)) {
+                return (T) node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Distinct nodes in ring order starting at the key's position: the owner first, then its successors
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> preferenceList(String key, int limit) {
+        List<T> result = new ArrayList<>(Math.min(limit, nodeCount));
+        if (points.length == 0) {
+            return result;
+        }
+        int start = indexFor(hash(key));
+        for (int step = 0; step < points.length && result.size() < Math.min(limit, nodeCount); step++) {
+            T node = (T) owners[(start + step) % points.length];
+            if (!result.contains(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    private int indexFor(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+
+    /**
+     * 64-bit FNV-1a with a murmur finalizer, stable across JVMs
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,674 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.SessionSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the messages of conversations handled by this node.
+ *
+ * Every message gets an increasing message number. For each term, the posting list holds the
+ * numbers of the messages containing it with the term's positions, as varint-encoded deltas, plus
+ * a skip entry every 64 postings. A query intersects the lists of its terms with leapfrog skipping,
+ * checks phrase positions and then applies the user and time filters, so its cost follows the
+ * rarest term rather than the number of conversations. Sessions do not need to be in memory to
+ * be found.
+ *
+ * Conversations are dropped from results once they pass the session timeout; when they account
+ * for a quarter of all messages, the index is rebuilt without them.
+ */
+@Service
+@Lazy(false)
+public class ConversationSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSearchIndex.class);
+
+    private static final int SKIP_INTERVAL = 64;
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final int MAX_MATCHES_PER_CONVERSATION = 5;
+    private static final double COMPACT_DEAD_RATIO = 0.25;
+    private static final byte ROLE_USER = 0;
+    private static final byte ROLE_ASSISTANT = 1;
+    private static final Pattern QUERY_CLAUSE = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    @Value("${chat.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.search.max-tokens-per-message:2000}")
+    private int maxTokensPerMessage;
+
+    @Value("${chat.session.timeout.minutes:60}")
+    private int retentionMinutes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by the lock: per-message columns, indexed by message number
+    private int[] messageConversation = new int[1024];
+    private int[] messageSeq = new int[1024];
+    private int[] messageTime = new int[1024];
+    private byte[] messageRole = new byte[1024];
+    private int messageCount;
+    private int deadMessages;
+    private final List<ConversationDoc> conversations = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    // Message times are stored as seconds since this base to fit in an int
+    private final long baseEpochSeconds = Instant.now().getEpochSecond();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private volatile long lastCompactionMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Index both messages of a chat turn
+     */
+    public void indexTurn(String conversationId, String userId, long userSeq, String userMessage,
+                          long assistantSeq, String response) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, int[]> userTerms = termPositions(userMessage);
+        Map<String, int[]> responseTerms = termPositions(response);
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinal(conversationId, userId, now);
+            addMessage(ordinal, userSeq, ROLE_USER, now, userTerms);
+            addMessage(ordinal, assistantSeq, ROLE_ASSISTANT, now, responseTerms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index a whole conversation taken over from another node, unless it is already indexed here
+     */
+    public void indexConversation(SessionSnapshot snapshot) {
+        if (!enabled) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (ordinals.containsKey(snapshot.getConversationId())) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map<String, int[]>> terms = new ArrayList<>();
+        for (Map<String, Object> message : snapshot.getMessages()) {
+            terms.add(termPositions(String.valueOf(message.get("content"))));
+        }
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinal(snapshot.getConversationId(), snapshot.getUserId(), snapshot.getLastActivity());
+            for (int i = 0; i < terms.size(); i++) {
+                Map<String, Object> message = snapshot.getMessages().get(i);
+                Object seq = message.get("seq");
+                addMessage(ordinal, seq instanceof Number number ? number.longValue() : i + 1,
+                    "user".equals(message.get("role")) ? ROLE_USER : ROLE_ASSISTANT,
+                    snapshot.getLastActivity(), terms.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find conversations with a message matching every word and quoted phrase of the query
+     *
+     * @param userId   only conversations of this user, if given
+     * @param fromMillis only messages at or after this time, if given
+     * @param toMillis   only messages before this time, if given
+     * @throws IllegalArgumentException if the query has no searchable words
+     */
+    public Map<String, Object> search(String query, String userId, Long fromMillis, Long toMillis, int limit) {
+        long started = System.nanoTime();
+        List<String[]> clauses = parseQuery(query);
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException("Query has no searchable words");
+        }
+        int fromTime = fromMillis != null ? toIndexTime(fromMillis) : Integer.MIN_VALUE;
+        int toTime = toMillis != null ? toIndexTime(toMillis) : Integer.MAX_VALUE;
+
+        Map<Integer, ConversationMatch> matches = new HashMap<>();
+        long retentionCutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        lock.readLock().lock();
+        try {
+            // One cursor per clause term; the first term of each clause anchors its phrase
+            List<PostingList.Cursor> cursors = new ArrayList<>();
+            List<int[]> clauseRanges = new ArrayList<>();
+            boolean missingTerm = false;
+            for (String[] clause : clauses) {
+                clauseRanges.add(new int[]{cursors.size(), clause.length});
+                for (String term : clause) {
+                    PostingList list = postings.get(term);
+                    if (list == null) {
+                        missingTerm = true;
+                        break;
+                    }
+                    cursors.add(list.cursor());
+                }
+            }
+
+            if (!missingTerm) {
+                // Start with the rarest term so skips are as long as possible
+                PostingList.Cursor[] ordered = cursors.toArray(new PostingList.Cursor[0]);
+                Arrays.sort(ordered, Comparator.comparingInt(PostingList.Cursor::documentFrequency));
+                int target = 0;
+                outer:
+                while (true) {
+                    for (PostingList.Cursor cursor : ordered) {
+                        if (!cursor.advance(target)) {
+                            break outer;
+                        }
+                        if (cursor.message() > target) {
+                            target = cursor.message();
+                            continue outer;
+                        }
+                    }
+                    collect(target, cursors, clauseRanges, userId, fromTime, toTime, retentionCutoff, matches);
+                    target++;
+                }
+            }
+
+            List<ConversationMatch> ranked = new ArrayList<>(matches.values());
+            ranked.sort(Comparator.comparingLong((ConversationMatch match) -> match.doc.lastActivityMillis).reversed());
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (ConversationMatch match : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                results.add(match.toResult());
+            }
+
+            long elapsed = System.nanoTime() - started;
+            searches.increment();
+            searchNanos.add(elapsed);
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("query", query);
+            data.put("totalConversations", matches.size());
+            data.put("results", results);
+            data.put("tookMs", Math.round(elapsed / 10_000.0) / 100.0);
+            return data;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the read lock; all cursors are on the same message
+    private void collect(int message, List<PostingList.Cursor> cursors, List<int[]> clauseRanges, String userId,
+                         int fromTime, int toTime, long retentionCutoff, Map<Integer, ConversationMatch> matches) {
+        int time = messageTime[message];
+        if (time < fromTime || time >= toTime) {
+            return;
+        }
+        ConversationDoc doc = conversations.get(messageConversation[message]);
+        if (doc.dead || doc.lastActivityMillis < retentionCutoff || (userId != null && !userId.equals(doc.userId))) {
+            return;
+        }
+        for (int[] range : clauseRanges) {
+            if (range[1] > 1 && !phraseMatches(cursors, range[0], range[1])) {
+                return;
+            }
+        }
+        ConversationMatch match = matches.computeIfAbsent(messageConversation[message], ordinal -> new ConversationMatch(doc));
+        match.add(messageSeq[message], messageRole[message]);
+    }
+
+    private static boolean phraseMatches(List<PostingList.Cursor> cursors, int first, int length) {
+        int[] anchors = cursors.get(first).positions();
+        for (int anchor : anchors) {
+            boolean all = true;
+            for (int i = 1; i < length && all; i++) {
+                all = Arrays.binarySearch(cursors.get(first + i).positions(), anchor + i) >= 0;
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hide conversations past the session timeout, and rebuild the index once they make up a
+     * quarter of it
+     */
+    @Scheduled(fixedDelayString = "${chat.search.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        lock.writeLock().lock();
+        try {
+            for (ConversationDoc doc : conversations) {
+                if (!doc.dead && doc.lastActivityMillis < cutoff) {
+                    doc.dead = true;
+                    deadMessages += doc.messages;
+                    ordinals.remove(doc.conversationId);
+                }
+            }
+            if (deadMessages > 0 && deadMessages >= messageCount * COMPACT_DEAD_RATIO) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock. Renumbering keeps the order, so postings stay sorted.
+    private void compact() {
+        long started = System.currentTimeMillis();
+        int[] conversationRemap = new int[conversations.size()];
+        List<ConversationDoc> liveConversations = new ArrayList<>();
+        for (int i = 0; i < conversations.size(); i++) {
+            ConversationDoc doc = conversations.get(i);
+            conversationRemap[i] = doc.dead ? -1 : liveConversations.size();
+            if (!doc.dead) {
+                ordinals.put(doc.conversationId, liveConversations.size());
+                liveConversations.add(doc);
+            }
+        }
+
+        int[] messageRemap = new int[messageCount];
+        int liveMessages = 0;
+        for (int message = 0; message < messageCount; message++) {
+            int conversation = conversationRemap[messageConversation[message]];
+            if (conversation < 0) {
+                messageRemap[message] = -1;
+                continue;
+            }
+            messageRemap[message] = liveMessages;
+            messageConversation[liveMessages] = conversation;
+            messageSeq[liveMessages] = messageSeq[message];
+            messageTime[liveMessages] = messageTime[message];
+            messageRole[liveMessages] = messageRole[message];
+            liveMessages++;
+        }
+
+        postings.entrySet().removeIf(entry -> !entry.getValue().rewrite(messageRemap));
+        conversations.clear();
+        conversations.addAll(liveConversations);
+        messageCount = liveMessages;
+        deadMessages = 0;
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, liveMessages)) << 1);
+        if (capacity < messageSeq.length) {
+            resizeMessageColumns(capacity);
+        }
+
+        compactions.increment();
+        lastCompactionMillis = System.currentTimeMillis() - started;
+        logger.info("Compacted search index - Conversations: {}, Messages: {}, Terms: {}, Duration: {}ms",
+                   conversations.size(), messageCount, postings.size(), lastCompactionMillis);
+    }
+
+    // Caller holds the write lock
+    private int ordinal(String conversationId, String userId, long activityMillis) {
+        Integer ordinal = ordinals.get(conversationId);
+        if (ordinal == null) {
+            ordinal = conversations.size();
+            conversations.add(new ConversationDoc(conversationId, userId));
+            ordinals.put(conversationId, ordinal);
+        }
+        ConversationDoc doc = conversations.get(ordinal);
+        doc.lastActivityMillis = Math.max(doc.lastActivityMillis, activityMillis);
+        return ordinal;
+    }
+
+    // Caller holds the write lock
+    private void addMessage(int ordinal, long seq, byte role, long timeMillis, Map<String, int[]> terms) {
+        if (messageCount == messageSeq.length) {
+            resizeMessageColumns(messageSeq.length * 2);
+        }
+        int message = messageCount++;
+        messageConversation[message] = ordinal;
+        messageSeq[message] = (int) seq;
+        messageTime[message] = toIndexTime(timeMillis);
+        messageRole[message] = role;
+        conversations.get(ordinal).messages++;
+        for (Map.Entry<String, int[]> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new PostingList()).add(message, term.getValue());
+        }
+    }
+
+    private void resizeMessageColumns(int capacity) {
+        messageConversation = Arrays.copyOf(messageConversation, capacity);
+        messageSeq = Arrays.copyOf(messageSeq, capacity);
+        messageTime = Arrays.copyOf(messageTime, capacity);
+        messageRole = Arrays.copyOf(messageRole, capacity);
+    }
+
+    private int toIndexTime(long epochMillis) {
+        long seconds = epochMillis / 1000 - baseEpochSeconds;
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE - 1, seconds));
+    }
+
+    /**
+     * Positions of each distinct term of a text, in order
+     */
+    private Map<String, int[]> termPositions(String text) {
+        Map<String, int[]> terms = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        List<String> tokens = tokenize(text, maxTokensPerMessage);
+        for (String token : tokens) {
+            counts.merge(token, 1, Integer::sum);
+        }
+        for (int position = 0; position < tokens.size(); position++) {
+            String token = tokens.get(position);
+            int[] positions = terms.get(token);
+            if (positions == null) {
+                positions = new int[counts.get(token)];
+                terms.put(token, positions);
+                counts.put(token, 0);
+            }
+            int filled = counts.get(token);
+            positions[filled] = position;
+            counts.put(token, filled + 1);
+        }
+        return terms;
+    }
+
+    // Lower-cased runs of letters and digits; everything else separates words
+    static List<String> tokenize(String text, int maxTokens) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length() && tokens.size() < maxTokens; i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (token.length() < MAX_TOKEN_LENGTH) {
+                    token.append(Character.toLowerCase(c));
+                }
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private List<String[]> parseQuery(String query) {
+        List<String[]> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        Matcher matcher = QUERY_CLAUSE.matcher(query);
+        while (matcher.find()) {
+            String text = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            List<String> tokens = tokenize(text, 32);
+            if (matcher.group(1) != null) {
+                if (!tokens.isEmpty()) {
+                    clauses.add(tokens.toArray(new String[0]));
+                }
+            } else {
+                for (String token : tokens) {
+                    clauses.add(new String[]{token});
+                }
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Size of the index and search timings
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        lock.readLock().lock();
+        try {
+            long postingBytes = 0;
+            for (PostingList list : postings.values()) {
+                postingBytes += list.sizeInBytes();
+            }
+            stats.put("conversations", conversations.size());
+            stats.put("messages", messageCount);
+            stats.put("expiredMessages", deadMessages);
+            stats.put("terms", postings.size());
+            stats.put("postingBytes", postingBytes);
+            // Posting arrays, message columns, and roughly 100 bytes per term and per conversation
+            stats.put("approximateBytes", postingBytes + 13L * messageSeq.length
+                + 100L * (postings.size() + conversations.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = searches.sum();
+        stats.put("searches", count);
+        stats.put("averageSearchMs", count == 0 ? 0.0 : Math.round(searchNanos.sum() / (double) count / 10_000.0) / 100.0);
+        stats.put("compactions", compactions.sum());
+        stats.put("lastCompactionMs", lastCompactionMillis);
+        return stats;
+    }
+
+    // Guarded by the lock
+    private static final class ConversationDoc {
+        final String conversationId;
+        final String userId;
+        long lastActivityMillis;
+        int messages;
+        boolean dead;
+
+        ConversationDoc(String conversationId, String userId) {
+            this.conversationId = conversationId;
+            this.userId = userId;
+        }
+    }
+
+    private static final class ConversationMatch {
+        final ConversationDoc doc;
+        final List<Map<String, Object>> messages = new ArrayList<>();
+        int matchCount;
+
+        ConversationMatch(ConversationDoc doc) {
+            this.doc = doc;
+        }
+
+        void add(int seq, byte role) {
+            matchCount++;
+            if (messages.size() < MAX_MATCHES_PER_CONVERSATION) {
+                Map<String, Object> message = new LinkedHashMap<>();
+                message.put("seq", seq);
+                message.put("role", role == ROLE_USER ? "user" : "assistant");
+                messages.add(message);
+            }
+        }
+
+        Map<String, Object> toResult() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("conversationId", doc.conversationId);
+            result.put("userId", doc.userId);
+            result.put("lastActivity", LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(doc.lastActivityMillis), ZoneId.systemDefault()).toString());
+            result.put("matchingMessages", matchCount);
+            result.put("matches", messages);
+            return result;
+        }
+    }
+
+    /**
+     * Postings of one term: for each message, the gap from the previous message number, the
+     * number of occurrences and the gaps between positions, all as varints. Every 64th posting
+     * also gets a skip entry with the message number before it and its byte offset.
+     */
+    static final class PostingList {
+        private byte[] data = new byte[8];
+        private int length;
+        private int lastMessage = -1;
+        private int documentFrequency;
+        private int[] skipMessages = new int[0];
+        private int[] skipOffsets = new int[0];
+        private int skips;
+
+        void add(int message, int[] positions) {
+            if (documentFrequency > 0 && documentFrequency % SKIP_INTERVAL == 0) {
+                if (skips == skipMessages.length) {
+                    skipMessages = Arrays.copyOf(skipMessages, Math.max(4, skips * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, Math.max(4, skips * 2));
+                }
+                skipMessages[skips] = lastMessage;
+                skipOffsets[skips] = length;
+                skips++;
+            }
+            writeVarint(message - lastMessage);
+            writeVarint(positions.length);
+            int previous = 0;
+            for (int position : positions) {
+                writeVarint(position - previous);
+                previous = position;
+            }
+            lastMessage = message;
+            documentFrequency++;
+        }
+
+        /**
+         * Re-encode with renumbered messages, leaving out those mapped to -1
+         *
+         * @return whether any posting is left
+         */
+        boolean rewrite(int[] messageRemap) {
+            PostingList rebuilt = new PostingList();
+            Cursor cursor = cursor();
+            while (cursor.next()) {
+                int mapped = messageRemap[cursor.message()];
+                if (mapped >= 0) {
+                    rebuilt.add(mapped, cursor.positions().clone());
+                }
+            }
+            data = Arrays.copyOf(rebuilt.data, rebuilt.length);
+            length = rebuilt.length;
+            lastMessage = rebuilt.lastMessage;
+            documentFrequency = rebuilt.documentFrequency;
+            skipMessages = Arrays.copyOf(rebuilt.skipMessages, rebuilt.skips);
+            skipOffsets = Arrays.copyOf(rebuilt.skipOffsets, rebuilt.skips);
+            skips = rebuilt.skips;
+            return documentFrequency > 0;
+        }
+
+        long sizeInBytes() {
+            return data.length + 4L * (skipMessages.length + skipOffsets.length);
+        }
+
+        Cursor cursor() {
+            return new Cursor();
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * Forward-only reader; positions are decoded for the current message only
+         */
+        final class Cursor {
+            private int offset;
+            private int message = -1;
+            private int[] positions = new int[4];
+            private int positionCount;
+            private boolean started;
+            private boolean exhausted;
+
+            int documentFrequency() {
+                return documentFrequency;
+            }
+
+            int message() {
+                return message;
+            }
+
+            int[] positions() {
+                return positionCount == positions.length ? positions : Arrays.copyOf(positions, positionCount);
+            }
+
+            /**
+             * Move to the first posting at or after the target message
+             *
+             * @return false once the list is exhausted
+             */
+            boolean advance(int target) {
+                if (exhausted) {
+                    return false;
+                }
+                if (started && message >= target) {
+                    return true;
+                }
+                // Jump to the last skip entry whose preceding message is below the target,
+                // if it is ahead of us
+                int skip = Arrays.binarySearch(skipMessages, 0, skips, target);
+                skip = skip >= 0 ? skip - 1 : -skip - 2;
+                if (skip >= 0 && skipOffsets[skip] > offset) {
+                    offset = skipOffsets[skip];
+                    message = skipMessages[skip];
+                }
+                started = true;
+                do {
+                    if (!next()) {
+                        return false;
+                    }
+                } while (message < target);
+                return true;
+            }
+
+            boolean next() {
+                if (offset >= length) {
+                    exhausted = true;
+                    return false;
+                }
+                message += readVarint();
+                positionCount = readVarint();
+                if (positions.length < positionCount) {
+                    positions = new int[positionCount];
+                }
+                int position = 0;
+                for (int i = 0; i < positionCount; i++) {
+                    position += readVarint();
+                    positions[i] = position;
+                }
+                started = true;
+                return true;
+            }
+
+            private int readVarint() {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                return value;
+            }
+        }
+    }
+}
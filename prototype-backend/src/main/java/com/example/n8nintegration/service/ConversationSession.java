@@ -0,0 +1,296 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.HistoryPageRequest;
+import com.example.n8nintegration.dto.SessionSnapshot;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One conversation held in memory: its message history, activity times and an estimate of the
+ * heap the history retains, which ConversationSessionStore uses to enforce its byte budget
+ */
+class ConversationSession {
+    private final String conversationId;
+    private final String userId;
+    private final LocalDateTime createdAt;
+    private volatile LocalDateTime lastActivity;
+    private final Map<String, Object> messages;
+    // Incremented on every change to the message history
+    private long version;
+    // Version this copy started from: 0 when new, the last sequence number when loaded from a snapshot
+    private final long loadedVersion;
+    // Rough heap footprint of the history, maintained as messages are added
+    private volatile long approximateBytes;
+
+    public ConversationSession(String conversationId, String userId) {
+        this.conversationId = conversationId;
+        this.userId = userId;
+        this.createdAt = LocalDateTime.now();
+        this.lastActivity = LocalDateTime.now();
+        this.messages = new HashMap<>();
+        this.messages.put("history", new ArrayList<>());
+        this.loadedVersion = 0;
+    }
+
+    private ConversationSession(SessionSnapshot snapshot) {
+        this.conversationId = snapshot.getConversationId();
+        this.userId = snapshot.getUserId();
+        this.createdAt = fromEpochMillis(snapshot.getCreatedAt());
+        this.lastActivity = fromEpochMillis(snapshot.getLastActivity());
+        this.messages = new HashMap<>();
+        this.messages.put("history", new ArrayList<>(snapshot.getMessages()));
+        // Continue the owner's numbering so ETags of the two copies never collide
+        List<Map<String, Object>> history = snapshot.getMessages();
+        this.version = history.isEmpty() ? 0
+            : ((Number) history.get(history.size() - 1).getOrDefault("seq", (long) history.size())).longValue();
+        this.loadedVersion = version;
+        long bytes = 0;
+        for (Map<String, Object> message : snapshot.getMessages()) {
+            bytes += estimateMessageBytes(String.valueOf(message.get("content")));
+        }
+        this.approximateBytes = bytes;
+    }
+
+    static ConversationSession fromSnapshot(SessionSnapshot snapshot) {
+        return new ConversationSession(snapshot);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized SessionSnapshot toSnapshot() {
+        List<Map<String, Object>> history =
+            (List<Map<String, Object>>) messages.get("history");
+        return new SessionSnapshot(conversationId, userId, toEpochMillis(createdAt),
+            toEpochMillis(lastActivity), new ArrayList<>(history));
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized int getMessageCount() {
+        return ((List<Map<String, Object>>) messages.get("history")).size();
+    }
+
+    /**
+     * Append a message to the history
+     *
+     * @return the message's sequence number
+     */
+    public synchronized long addMessage(String role, String content) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        message.put("timestamp", LocalDateTime.now().toString());
+        
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> history = 
+            (List<Map<String, Object>>) messages.get("history");
+        version++;
+        // Sequence numbers are contiguous and serve as pagination cursors
+        message.put("seq", version);
+        history.add(message);
+        approximateBytes += estimateMessageBytes(content);
+        return version;
+    }
+
+    /**
+     * Append the messages another copy of this conversation received since it was created or
+     * loaded, skipping those this copy already holds. Appended messages keep their role, content
+     * and timestamp but are numbered after this copy's own.
+     *
+     * @return the number of messages appended
+     */
+    public int absorb(ConversationSession other) {
+        List<Map<String, Object>> added = other.messagesSinceLoaded();
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> history = (List<Map<String, Object>>) messages.get("history");
+            int appended = 0;
+            for (Map<String, Object> message : added) {
+                if (containsTurnMessage(history, message)) {
+                    continue;
+                }
+                Map<String, Object> copy = new HashMap<>(message);
+                version++;
+                copy.put("seq", version);
+                history.add(copy);
+                approximateBytes += estimateMessageBytes(String.valueOf(message.get("content")));
+                appended++;
+            }
+            return appended;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized List<Map<String, Object>> messagesSinceLoaded() {
+        List<Map<String, Object>> added = new ArrayList<>();
+        for (Map<String, Object> message : (List<Map<String, Object>>) messages.get("history")) {
+            if (((Number) message.getOrDefault("seq", 0L)).longValue() > loadedVersion) {
+                added.add(message);
+            }
+        }
+        return added;
+    }
+
+    // Sequence numbers of two copies overlap, so a message is recognised by what it says and when
+    private static boolean containsTurnMessage(List<Map<String, Object>> history, Map<String, Object> message) {
+        for (Map<String, Object> held : history) {
+            if (Objects.equals(held.get("timestamp"), message.get("timestamp"))
+                    && Objects.equals(held.get("role"), message.get("role"))
+                    && Objects.equals(held.get("content"), message.get("content"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getApproximateBytes() {
+        return approximateBytes;
+    }
+
+    /**
+     * Drop the oldest messages until the history fits in maxBytes, always keeping the latest
+     * keepLatest messages. Sequence numbers of the remaining messages do not change, so this is
+     * only called right after a turn, whose messages already moved the version on.
+     *
+     * @return the number of messages removed
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int trimOldest(long maxBytes, int keepLatest) {
+        List<Map<String, Object>> history = (List<Map<String, Object>>) messages.get("history");
+        int removable = history.size() - keepLatest;
+        int removed = 0;
+        long bytes = approximateBytes;
+        while (removed < removable && bytes > maxBytes) {
+            bytes -= estimateMessageBytes(String.valueOf(history.get(removed).get("content")));
+            removed++;
+        }
+        if (removed > 0) {
+            history.subList(0, removed).clear();
+            approximateBytes = bytes;
+        }
+        return removed;
+    }
+
+    // Map, entries, role, timestamp and sequence take roughly 400 bytes; content is counted as UTF-16
+    private static long estimateMessageBytes(String content) {
+        return 400L + (content != null ? 2L * content.length() : 0);
+    }
+
+    /**
+     * Copy messages [fromIndex, toIndex) of the history, clamped to its size
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<Map<String, Object>> copyRange(int fromIndex, int toIndex) {
+        List<Map<String, Object>> history =
+            (List<Map<String, Object>>) messages.get("history");
+        int from = Math.min(fromIndex, history.size());
+        int to = Math.min(toIndex, history.size());
+        return new ArrayList<>(history.subList(from, to));
+    }
+
+    /**
+     * Build one page of history. With an after cursor the page runs forward from it;
+     * otherwise it holds the latest messages before the before cursor (or the end).
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Map<String, Object> toHistoryPage(HistoryPageRequest page) {
+        List<Map<String, Object>> history =
+            (List<Map<String, Object>>) messages.get("history");
+        int size = history.size();
+        long firstSeq = size == 0 ? 1 : ((Number) history.get(0).getOrDefault("seq", 1L)).longValue();
+
+        int from;
+        int to;
+        boolean hasMore;
+        Long nextCursor;
+        if (page.getAfter() != null) {
+            from = (int) Math.max(0, Math.min(size, page.getAfter() - firstSeq + 1));
+            to = Math.min(size, from + page.getLimit());
+            hasMore = to < size;
+            nextCursor = hasMore ? firstSeq + to - 1 : null;
+        } else {
+            to = page.getBefore() != null
+                ? (int) Math.max(0, Math.min(size, page.getBefore() - firstSeq)) : size;
+            from = Math.max(0, to - page.getLimit());
+            hasMore = from > 0;
+            nextCursor = hasMore ? firstSeq + from : null;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("success", true);
+        data.put("message", "Conversation history retrieved");
+        data.put("conversationId", conversationId);
+        data.put("messages", new ArrayList<>(history.subList(from, to)));
+        data.put("messageCount", size);
+        data.put("hasMore", hasMore);
+        if (nextCursor != null) {
+            data.put("nextCursor", nextCursor);
+        }
+        data.put("lastActivity", lastActivity);
+        return data;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Build the history view returned by the API, copying the message list so it can be
+     * serialized after the lock is released
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Map<String, Object> toHistoryData() {
+        List<Map<String, Object>> history =
+            (List<Map<String, Object>>) messages.get("history");
+        return Map.of(
+            "success", true,
+            "message", "Conversation history retrieved",
+            "conversationId", conversationId,
+            "messages", Map.of("history", new ArrayList<>(history)),
+            "messageCount", history.size(),
+            "createdAt", createdAt,
+            "lastActivity", lastActivity
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized List<Map<String, Object>> getRecentMessages(int limit) {
+        List<Map<String, Object>> history = 
+            (List<Map<String, Object>>) messages.get("history");
+        
+        int size = history.size();
+        int fromIndex = Math.max(0, size - limit);
+        
+        // Copy so the payload is not affected by turns added while it is serialized
+        return new ArrayList<>(history.subList(fromIndex, size));
+    }
+
+    public void updateLastActivity() {
+        this.lastActivity = LocalDateTime.now();
+    }
+
+    public long getSessionAgeMinutes() {
+        return Duration.between(createdAt, LocalDateTime.now()).toMinutes();
+    }
+
+    // Getters
+    public String getConversationId() { return conversationId; }
+    public String getUserId() { return userId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getLastActivity() { return lastActivity; }
+    public Map<String, Object> getMessages() { return messages; }
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
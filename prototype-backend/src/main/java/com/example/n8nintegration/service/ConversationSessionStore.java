@@ -0,0 +1,821 @@
+package com.example.n8nintegration.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Conversation sessions, held within a heap budget.
+ *
+ * Every session in memory is charged its approximate retained size. When the total goes over the
+ * budget, victims are taken from the least recently used end: among the few coldest sessions, the
+ * one used least often goes first (a TinyLFU-style frequency counter, halved periodically so old
+ * popularity fades). A single session may not grow beyond max-session-kb; its oldest messages,
+ * which n8n no longer sees as context, are dropped instead.
+ *
+ * With spilling enabled, sessions idle for chat.session.spill.idle-seconds, and eviction victims,
+ * are written compressed to a SessionDiskTier and only a small stub stays on the heap. The next
+ * turn or history read loads the session back. Without spilling, victims are dropped. Sessions
+ * pinned for a turn in flight are never chosen, so the turn cannot end up on a second copy.
+ *
+ * The old generation is also watched through the JVM's collection usage threshold. When live
+ * data is still above the threshold after a GC, the coldest share of sessions is shed at once,
+ * before the heap reaches the point where the collector thrashes.
+ */
+@Service
+@Lazy(false)
+public class ConversationSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSessionStore.class);
+
+    // Session object, history map and list, IDs and the store entry
+    private static final long SESSION_OVERHEAD_BYTES = 1024;
+    // Map entry, stub and record location of a session on disk
+    private static final long STUB_BYTES = 200;
+    // n8n receives the last 10 messages as context, so trimming never goes below them
+    private static final int KEEP_LATEST_MESSAGES = 10;
+    private static final int EVICTION_SAMPLE = 8;
+    private static final int MAX_FREQUENCY = 15;
+    // Full spill segments with less live data than this are compacted
+    private static final double COMPACT_BELOW_LIVE_RATIO = 0.25;
+
+    @Value("${chat.session.memory-budget-mb:0}")
+    private long budgetMegabytes;
+
+    // Used when no explicit budget is set
+    @Value("${chat.session.memory-budget-heap-fraction:0.25}")
+    private double budgetHeapFraction;
+
+    @Value("${chat.session.max-session-kb:512}")
+    private long maxSessionKilobytes;
+
+    @Value("${chat.session.heap-pressure-threshold:0.85}")
+    private double heapPressureThreshold;
+
+    @Value("${chat.session.heap-pressure-shed-fraction:0.25}")
+    private double heapPressureShedFraction;
+
+    @Value("${chat.session.spill.enabled:true}")
+    private boolean spillEnabled;
+
+    // Empty: a fresh temporary directory for this process
+    @Value("${chat.session.spill.dir:}")
+    private String spillDirectory;
+
+    @Value("${chat.session.spill.idle-seconds:300}")
+    private long spillIdleSeconds;
+
+    @Value("${chat.session.spill.segment-mb:64}")
+    private long spillSegmentMegabytes;
+
+    // Access order: the eldest entry is the least recently used session
+    private final LinkedHashMap<String, Entry> sessions = new LinkedHashMap<>(256, 0.75f, true);
+    // Taken out of the map and being written to disk; a read in the meantime takes them back
+    private final Map<String, ConversationSession> spilling = new HashMap<>();
+    private final Map<String, ColdSession> cold = new HashMap<>();
+    // Conversations with turns in flight, and how many; neither evicted nor spilled while here
+    private final Map<String, Integer> pinned = new HashMap<>();
+    private long chargedBytes;
+    private long accessesSinceAging;
+
+    private long budgetBytes;
+    private long maxSessionBytes;
+    private volatile Consumer<String> removalListener = conversationId -> { };
+
+    private SessionDiskTier diskTier;
+    private Path createdSpillDirectory;
+
+    private final List<MemoryPoolMXBean> watchedPools = new ArrayList<>();
+    private NotificationEmitter memoryEmitter;
+    private final NotificationListener pressureListener = this::onMemoryNotification;
+    private long gcCountAtLastShed = -1;
+
+    private final LongAdder budgetEvictions = new LongAdder();
+    private final LongAdder pressureEvictions = new LongAdder();
+    private final LongAdder expiredSessions = new LongAdder();
+    private final LongAdder lostSessions = new LongAdder();
+    private final LongAdder trimmedSessions = new LongAdder();
+    private final LongAdder trimmedMessages = new LongAdder();
+    private final LongAdder reconciledSessions = new LongAdder();
+    private final LongAdder pressureEvents = new LongAdder();
+    private volatile long lastPressureAtMillis;
+
+    private final LongAdder spills = new LongAdder();
+    private final LongAdder spillFailures = new LongAdder();
+    private final LongAdder spilledRawBytes = new LongAdder();
+    private final LongAdder spilledCompressedBytes = new LongAdder();
+    private final LongAdder rehydrations = new LongAdder();
+    private final LongAdder rehydrationFailures = new LongAdder();
+    private final LongAdder rehydrationNanos = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        budgetBytes = budgetMegabytes > 0
+            ? budgetMegabytes * 1024 * 1024
+            : (long) (Runtime.getRuntime().maxMemory() * budgetHeapFraction);
+        maxSessionBytes = Math.max(16 * 1024, maxSessionKilobytes * 1024);
+
+        if (spillEnabled) {
+            try {
+                Path directory;
+                if (spillDirectory == null || spillDirectory.isBlank()) {
+                    directory = Files.createTempDirectory("chat-sessions-");
+                    createdSpillDirectory = directory;
+                } else {
+                    directory = Path.of(spillDirectory);
+                }
+                diskTier = new SessionDiskTier(directory, Math.max(1, spillSegmentMegabytes) * 1024 * 1024);
+            } catch (IOException e) {
+                logger.warn("Session spill directory unavailable, keeping all sessions in memory: {}", e.getMessage());
+            }
+        }
+
+        // Only old generation pools support a usage threshold; young pools are empty after a GC anyway
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * heapPressureThreshold));
+                watchedPools.add(pool);
+            }
+        }
+        if (!watchedPools.isEmpty() && ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter emitter) {
+            memoryEmitter = emitter;
+            memoryEmitter.addNotificationListener(pressureListener, null, null);
+        }
+
+        logger.info("Session store ready - Budget: {} MB, Max session: {} KB, Spill: {}, Watched pools: {}",
+                   budgetBytes / (1024 * 1024), maxSessionBytes / 1024,
+                   diskTier != null ? diskTier.snapshot().get("directory") : "off",
+                   watchedPools.stream().map(MemoryPoolMXBean::getName).toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (memoryEmitter != null) {
+            try {
+                memoryEmitter.removeNotificationListener(pressureListener);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        }
+        if (diskTier != null) {
+            diskTier.close();
+        }
+        if (createdSpillDirectory != null) {
+            try {
+                Files.deleteIfExists(createdSpillDirectory);
+            } catch (IOException e) {
+                logger.debug("Could not remove spill directory {}: {}", createdSpillDirectory, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Called with the ID of every session whose history leaves the heap, whether it was dropped
+     * or spilled to disk
+     */
+    public void setRemovalListener(Consumer<String> removalListener) {
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Find a session, loading it back from disk if it was spilled
+     */
+    public ConversationSession get(String conversationId) {
+        Evictions evictions = new Evictions();
+        ConversationSession session;
+        ColdSession coldSession = null;
+        synchronized (this) {
+            session = findInMemory(conversationId, evictions);
+            if (session == null) {
+                coldSession = cold.get(conversationId);
+            }
+        }
+        complete(evictions);
+        if (session != null || coldSession == null) {
+            return session;
+        }
+        return rehydrate(conversationId, coldSession);
+    }
+
+    /**
+     * Add a session unless one with the same ID is already held
+     *
+     * @return the session already held, or null if the given one was added
+     */
+    public ConversationSession putIfAbsent(ConversationSession session) {
+        String conversationId = session.getConversationId();
+        Evictions evictions = new Evictions();
+        ConversationSession existing;
+        boolean onDisk = false;
+        synchronized (this) {
+            existing = findInMemory(conversationId, evictions);
+            if (existing == null) {
+                onDisk = cold.containsKey(conversationId);
+                if (!onDisk) {
+                    Entry entry = admit(session);
+                    evictOverBudget(entry, evictions);
+                }
+            }
+        }
+        complete(evictions);
+        return onDisk ? get(conversationId) : existing;
+    }
+
+    /**
+     * Keep a conversation in memory while a turn runs on it. Pin before looking the session up,
+     * so the copy found is the one that stays held until unpin.
+     */
+    public synchronized void pin(String conversationId) {
+        pinned.merge(conversationId, 1, Integer::sum);
+    }
+
+    public synchronized void unpin(String conversationId) {
+        pinned.computeIfPresent(conversationId, (id, turns) -> turns > 1 ? turns - 1 : null);
+    }
+
+    /**
+     * Account for a session that has just grown by a turn: trim it if it went over the per-session
+     * limit, recharge its size and evict other sessions if the budget is now exceeded. A session
+     * dropped while its turn was running is admitted again. If another copy of the conversation is
+     * held meanwhile, in memory or on disk, the turn's messages are merged into that copy instead,
+     * so neither copy's turns are lost.
+     */
+    public void touch(ConversationSession session) {
+        if (session.getApproximateBytes() + SESSION_OVERHEAD_BYTES > maxSessionBytes) {
+            int removed = session.trimOldest(maxSessionBytes - SESSION_OVERHEAD_BYTES, KEEP_LATEST_MESSAGES);
+            if (removed > 0) {
+                trimmedSessions.increment();
+                trimmedMessages.add(removed);
+                logger.debug("Trimmed oversized conversation - ConversationID: {}, Messages removed: {}",
+                            session.getConversationId(), removed);
+            }
+        }
+
+        String conversationId = session.getConversationId();
+        Evictions evictions = new Evictions();
+        ConversationSession held = null;
+        ColdSession heldOnDisk = null;
+        synchronized (this) {
+            Entry entry = sessions.get(conversationId);
+            ConversationSession pending = spilling.get(conversationId);
+            if (entry != null && entry.session == session) {
+                recordAccess(entry);
+                long weight = weigh(session);
+                chargedBytes += weight - entry.chargedBytes;
+                entry.chargedBytes = weight;
+                evictOverBudget(entry, evictions);
+            } else if (entry != null || (pending != null && pending != session)) {
+                held = findInMemory(conversationId, evictions);
+            } else if (pending == null && cold.containsKey(conversationId)) {
+                heldOnDisk = cold.get(conversationId);
+            } else {
+                evictOverBudget(admit(session), evictions);
+            }
+        }
+        complete(evictions);
+
+        if (heldOnDisk != null) {
+            held = rehydrate(conversationId, heldOnDisk);
+            if (held == null) {
+                // The copy on disk could not be read, so this one is all that is left
+                touch(session);
+                return;
+            }
+        }
+        if (held != null) {
+            int merged = held.absorb(session);
+            reconciledSessions.increment();
+            logger.warn("Merged a turn into the conversation copy held by the store - ConversationID: {}, Messages: {}",
+                       conversationId, merged);
+            touch(held);
+        }
+    }
+
+    /**
+     * Remove sessions with no activity since the cutoff, wherever they are held
+     *
+     * @return the number of sessions removed
+     */
+    public int removeExpired(LocalDateTime cutoff) {
+        long cutoffMillis = ConversationSession.toEpochMillis(cutoff);
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> hot = sessions.values().iterator();
+            while (hot.hasNext()) {
+                Entry entry = hot.next();
+                if (entry.session.getLastActivity().isBefore(cutoff)) {
+                    hot.remove();
+                    chargedBytes -= entry.chargedBytes;
+                    expired.add(entry.session.getConversationId());
+                }
+            }
+            // A spill that finds its session gone frees the record it wrote
+            spilling.values().removeIf(session -> session.getLastActivity().isBefore(cutoff));
+            Iterator<Map.Entry<String, ColdSession>> stubs = cold.entrySet().iterator();
+            while (stubs.hasNext()) {
+                Map.Entry<String, ColdSession> stub = stubs.next();
+                if (stub.getValue().lastActivityMillis < cutoffMillis) {
+                    stubs.remove();
+                    chargedBytes -= STUB_BYTES;
+                    diskTier.release(stub.getValue().location);
+                    expired.add(stub.getKey());
+                }
+            }
+        }
+        expiredSessions.add(expired.size());
+        notifyRemoved(expired);
+        return expired.size();
+    }
+
+    /**
+     * Move sessions nobody has touched for the idle time to disk
+     */
+    @Scheduled(fixedDelayString = "${chat.session.spill.check-interval-ms:15000}")
+    public void spillIdleSessions() {
+        if (diskTier == null) {
+            return;
+        }
+        long idleBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(spillIdleSeconds);
+        List<ConversationSession> idle = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = sessions.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                // Access order, so everything after the first recent entry is recent too
+                if (entry.lastAccessNanos - idleBefore > 0) {
+                    break;
+                }
+                if (pinned.containsKey(entry.session.getConversationId())) {
+                    continue;
+                }
+                iterator.remove();
+                chargedBytes -= entry.chargedBytes;
+                spilling.put(entry.session.getConversationId(), entry.session);
+                idle.add(entry.session);
+            }
+        }
+
+        List<String> spilled = new ArrayList<>();
+        for (ConversationSession session : idle) {
+            if (spill(session, true)) {
+                spilled.add(session.getConversationId());
+            }
+        }
+        if (!spilled.isEmpty()) {
+            logger.debug("Spilled idle conversation sessions: {}", spilled.size());
+        }
+        notifyRemoved(spilled);
+        compactSpillSegments();
+    }
+
+    /**
+     * Move the records still live in mostly free segments forward, so those segments can be deleted
+     */
+    private void compactSpillSegments() {
+        List<Integer> sparse = diskTier.sparseSegments(COMPACT_BELOW_LIVE_RATIO);
+        if (sparse.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, ColdSession>> toMove = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, ColdSession> stub : cold.entrySet()) {
+                if (sparse.contains(stub.getValue().location.segmentId)) {
+                    toMove.add(Map.entry(stub.getKey(), stub.getValue()));
+                }
+            }
+        }
+
+        for (Map.Entry<String, ColdSession> stub : toMove) {
+            ColdSession moving = stub.getValue();
+            SessionDiskTier.Location moved;
+            try {
+                moved = diskTier.relocate(moving.location);
+            } catch (IOException e) {
+                logger.warn("Failed to compact spill segment {}: {}", moving.location.segmentId, e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                if (cold.get(stub.getKey()) == moving) {
+                    cold.put(stub.getKey(), new ColdSession(moved, moving.lastActivityMillis));
+                    diskTier.release(moving.location);
+                } else {
+                    diskTier.release(moved);
+                }
+            }
+        }
+    }
+
+    /**
+     * Catch sustained heap pressure the threshold notification misses, since it only fires when
+     * usage first crosses the threshold. Only acts once per GC, after the collector has had its say.
+     */
+    @Scheduled(fixedDelayString = "${chat.session.heap-pressure-check-ms:5000}")
+    public void checkHeapPressure() {
+        for (MemoryPoolMXBean pool : watchedPools) {
+            if (pool.isCollectionUsageThresholdExceeded()) {
+                shedForHeapPressure(pool.getName());
+                return;
+            }
+        }
+    }
+
+    private void onMemoryNotification(Notification notification, Object handback) {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+            shedForHeapPressure(info.getPoolName());
+        }
+    }
+
+    private void shedForHeapPressure(String poolName) {
+        long gcCount = totalGcCount();
+        Evictions evictions = new Evictions();
+        long before;
+        long after;
+        synchronized (this) {
+            if (gcCount == gcCountAtLastShed) {
+                return;
+            }
+            gcCountAtLastShed = gcCount;
+            before = chargedBytes;
+            long target = (long) (chargedBytes * (1.0 - heapPressureShedFraction));
+            while (chargedBytes > target && !sessions.isEmpty()) {
+                Entry victim = evictOne(null);
+                if (victim == null) {
+                    break;
+                }
+                evictions.add(victim);
+            }
+            after = chargedBytes;
+        }
+        if (evictions.isEmpty()) {
+            return;
+        }
+        int shed = evictions.size();
+        pressureEvents.increment();
+        pressureEvictions.add(shed);
+        lastPressureAtMillis = System.currentTimeMillis();
+        logger.warn("Heap pressure after GC - Pool: {}, Sessions shed: {}, Session bytes: {} -> {}",
+                   poolName, shed, before, after);
+        complete(evictions);
+    }
+
+    private ConversationSession rehydrate(String conversationId, ColdSession coldSession) {
+        long started = System.nanoTime();
+        ConversationSession loaded = null;
+        try {
+            loaded = ConversationSession.fromSnapshot(diskTier.read(coldSession.location));
+        } catch (IOException e) {
+            logger.error("Failed to load spilled conversation - ConversationID: {}, Error: {}",
+                        conversationId, e.getMessage());
+        }
+
+        Evictions evictions = new Evictions();
+        ConversationSession result;
+        ColdSession relocated = null;
+        boolean lost = false;
+        synchronized (this) {
+            if (cold.get(conversationId) == coldSession) {
+                cold.remove(conversationId);
+                chargedBytes -= STUB_BYTES;
+                diskTier.release(coldSession.location);
+                if (loaded != null) {
+                    evictOverBudget(admit(loaded), evictions);
+                } else {
+                    lost = true;
+                }
+                result = loaded;
+            } else {
+                // Another reader loaded it first, compaction moved it, or it expired meanwhile
+                result = findInMemory(conversationId, evictions);
+                if (result == null) {
+                    relocated = cold.get(conversationId);
+                }
+            }
+        }
+        complete(evictions);
+        if (relocated != null) {
+            return rehydrate(conversationId, relocated);
+        }
+
+        if (lost) {
+            rehydrationFailures.increment();
+            lostSessions.increment();
+            notifyRemoved(List.of(conversationId));
+        } else if (result == loaded) {
+            rehydrations.increment();
+            rehydrationNanos.add(System.nanoTime() - started);
+        }
+        return result;
+    }
+
+    /**
+     * Write a session taken out of memory to disk and leave a stub for it. Unless the session was
+     * claimed back meanwhile; then the record is freed again.
+     *
+     * @return whether the session is now on disk
+     */
+    private boolean spill(ConversationSession session, boolean keepOnFailure) {
+        String conversationId = session.getConversationId();
+        long rawBytes = session.getApproximateBytes();
+        SessionDiskTier.Location location;
+        try {
+            location = diskTier.write(session.toSnapshot());
+        } catch (IOException e) {
+            spillFailures.increment();
+            logger.warn("Failed to spill conversation - ConversationID: {}, Error: {}", conversationId, e.getMessage());
+            boolean dropped = false;
+            synchronized (this) {
+                if (spilling.remove(conversationId, session)) {
+                    if (keepOnFailure) {
+                        admit(session);
+                    } else {
+                        dropped = true;
+                    }
+                }
+            }
+            if (dropped) {
+                lostSessions.increment();
+                notifyRemoved(List.of(conversationId));
+            }
+            return false;
+        }
+
+        boolean stored;
+        synchronized (this) {
+            stored = spilling.remove(conversationId, session);
+            if (stored) {
+                cold.put(conversationId, new ColdSession(location,
+                    ConversationSession.toEpochMillis(session.getLastActivity())));
+                chargedBytes += STUB_BYTES;
+            } else {
+                diskTier.release(location);
+            }
+        }
+        if (stored) {
+            spills.increment();
+            spilledRawBytes.add(rawBytes);
+            spilledCompressedBytes.add(location.length);
+        }
+        return stored;
+    }
+
+    // Callers hold the monitor. Takes back a session being spilled.
+    private ConversationSession findInMemory(String conversationId, Evictions evictions) {
+        Entry entry = sessions.get(conversationId);
+        if (entry != null) {
+            recordAccess(entry);
+            return entry.session;
+        }
+        ConversationSession pending = spilling.get(conversationId);
+        if (pending != null) {
+            evictOverBudget(admit(pending), evictions);
+        }
+        return pending;
+    }
+
+    // Callers hold the monitor. Any older copy being spilled or on disk is superseded.
+    private Entry admit(ConversationSession session) {
+        String conversationId = session.getConversationId();
+        spilling.remove(conversationId);
+        ColdSession stale = cold.remove(conversationId);
+        if (stale != null) {
+            chargedBytes -= STUB_BYTES;
+            diskTier.release(stale.location);
+        }
+
+        Entry entry = new Entry(session, weigh(session));
+        sessions.put(conversationId, entry);
+        chargedBytes += entry.chargedBytes;
+        recordAccess(entry);
+        return entry;
+    }
+
+    private void evictOverBudget(Entry protectedEntry, Evictions evictions) {
+        while (chargedBytes > budgetBytes && sessions.size() > 1) {
+            Entry victim = evictOne(protectedEntry);
+            if (victim == null) {
+                return;
+            }
+            budgetEvictions.increment();
+            evictions.add(victim);
+        }
+    }
+
+    /**
+     * Take out the least frequently used of the coldest sessions; ties go to the least recent.
+     * Pinned sessions are passed over, so there may be no victim.
+     * With a disk tier the victim is marked for spilling, to be written once the lock is released.
+     */
+    private Entry evictOne(Entry protectedEntry) {
+        Entry victim = null;
+        int sampled = 0;
+        for (Entry entry : sessions.values()) {
+            if (entry == protectedEntry || pinned.containsKey(entry.session.getConversationId())) {
+                continue;
+            }
+            if (victim == null || entry.frequency < victim.frequency) {
+                victim = entry;
+            }
+            if (++sampled >= EVICTION_SAMPLE) {
+                break;
+            }
+        }
+        if (victim != null) {
+            sessions.remove(victim.session.getConversationId());
+            chargedBytes -= victim.chargedBytes;
+            if (diskTier != null) {
+                spilling.put(victim.session.getConversationId(), victim.session);
+            }
+        }
+        return victim;
+    }
+
+    // Called without the monitor: spill what was marked for it and report what left the heap
+    private void complete(Evictions evictions) {
+        if (evictions.isEmpty()) {
+            return;
+        }
+        List<String> removed = new ArrayList<>();
+        for (Entry victim : evictions.victims) {
+            ConversationSession session = victim.session;
+            if (diskTier == null || spill(session, false)) {
+                removed.add(session.getConversationId());
+            }
+        }
+        notifyRemoved(removed);
+    }
+
+    private void recordAccess(Entry entry) {
+        entry.lastAccessNanos = System.nanoTime();
+        if (entry.frequency < MAX_FREQUENCY) {
+            entry.frequency++;
+        }
+        // Halve all counts every few accesses per session so the counters follow recent traffic
+        if (++accessesSinceAging >= Math.max(1024, 10L * sessions.size())) {
+            accessesSinceAging = 0;
+            for (Entry each : sessions.values()) {
+                each.frequency >>= 1;
+            }
+        }
+    }
+
+    private void notifyRemoved(List<String> conversationIds) {
+        for (String conversationId : conversationIds) {
+            removalListener.accept(conversationId);
+        }
+    }
+
+    private static long weigh(ConversationSession session) {
+        return SESSION_OVERHEAD_BYTES + session.getApproximateBytes();
+    }
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Number of conversations held, in memory or on disk
+     */
+    public synchronized int size() {
+        return sessions.size() + spilling.size() + cold.size();
+    }
+
+    /**
+     * Approximate heap retained by all sessions and stubs, as charged against the budget
+     */
+    public synchronized long getBytes() {
+        return chargedBytes;
+    }
+
+    /**
+     * Budget usage, tiers, evictions by cause, trimming, spilling and heap pressure events
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("sessions", sessions.size() + spilling.size() + cold.size());
+            stats.put("inMemory", sessions.size() + spilling.size());
+            stats.put("onDisk", cold.size());
+            stats.put("pinned", pinned.size());
+            stats.put("bytes", chargedBytes);
+            stats.put("budgetBytes", budgetBytes);
+            stats.put("budgetUsed", Math.round(chargedBytes * 1000.0 / Math.max(1, budgetBytes)) / 1000.0);
+        }
+        stats.put("maxSessionBytes", maxSessionBytes);
+
+        Map<String, Object> evictions = new LinkedHashMap<>();
+        evictions.put("budget", budgetEvictions.sum());
+        evictions.put("heapPressure", pressureEvictions.sum());
+        evictions.put("expired", expiredSessions.sum());
+        evictions.put("lost", lostSessions.sum());
+        stats.put("evictions", evictions);
+        stats.put("trimmedSessions", trimmedSessions.sum());
+        stats.put("trimmedMessages", trimmedMessages.sum());
+        stats.put("reconciledSessions", reconciledSessions.sum());
+
+        Map<String, Object> spill = new LinkedHashMap<>();
+        spill.put("enabled", diskTier != null);
+        if (diskTier != null) {
+            long rawBytes = spilledRawBytes.sum();
+            long compressedBytes = spilledCompressedBytes.sum();
+            long loaded = rehydrations.sum();
+            spill.put("idleSeconds", spillIdleSeconds);
+            spill.put("spills", spills.sum());
+            spill.put("spillFailures", spillFailures.sum());
+            spill.put("compressionRatio", compressedBytes == 0 ? 0.0
+                : Math.round(rawBytes * 100.0 / compressedBytes) / 100.0);
+            spill.put("rehydrations", loaded);
+            spill.put("rehydrationFailures", rehydrationFailures.sum());
+            spill.put("averageRehydrationMs", loaded == 0 ? 0.0
+                : Math.round(rehydrationNanos.sum() / (double) loaded / 10_000.0) / 100.0);
+            spill.put("disk", diskTier.snapshot());
+        }
+        stats.put("spill", spill);
+
+        Map<String, Object> pressure = new LinkedHashMap<>();
+        pressure.put("threshold", heapPressureThreshold);
+        pressure.put("watchedPools", watchedPools.stream().map(MemoryPoolMXBean::getName).toList());
+        pressure.put("events", pressureEvents.sum());
+        long lastPressure = lastPressureAtMillis;
+        pressure.put("lastEventAt", lastPressure == 0 ? null : Instant.ofEpochMilli(lastPressure).toString());
+        stats.put("heapPressure", pressure);
+        return stats;
+    }
+
+    // Guarded by the store's monitor
+    private static final class Entry {
+        final ConversationSession session;
+        long chargedBytes;
+        int frequency;
+        long lastAccessNanos;
+
+        Entry(ConversationSession session, long chargedBytes) {
+            this.session = session;
+            this.chargedBytes = chargedBytes;
+        }
+    }
+
+    // What stays on the heap for a session on disk
+    private static final class ColdSession {
+        final SessionDiskTier.Location location;
+        final long lastActivityMillis;
+
+        ColdSession(SessionDiskTier.Location location, long lastActivityMillis) {
+            this.location = location;
+            this.lastActivityMillis = lastActivityMillis;
+        }
+    }
+
+    // Sessions taken out under the monitor, finished (spilled or reported) after it is released
+    private static final class Evictions {
+        final List<Entry> victims = new ArrayList<>();
+
+        void add(Entry victim) {
+            victims.add(victim);
+        }
+
+        boolean isEmpty() {
+            return victims.isEmpty();
+        }
+
+        int size() {
+            return victims.size();
+        }
+    }
+}
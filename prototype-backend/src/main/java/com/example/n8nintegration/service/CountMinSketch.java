@@ -0,0 +1,171 @@
+package com.example.n8nintegration.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate per-item counts in fixed memory, with the heaviest items kept by name.
+ *
+ * Each item increments one counter in each of depth rows of width counters (conservative update:
+ * only the rows at the current minimum), and its count is estimated as the minimum of those
+ * counters. Estimates never undercount, and overcount by at most a small share of the total.
+ * Alongside the counters, the items with the highest estimates are tracked in a small candidate
+ * set, so the sketch can list its heavy hitters. Sketches with the same dimensions merge by adding
+ * counters and re-ranking the union of their candidates. Not thread-safe.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int[] counters;
+    private final int maxCandidates;
+    private final Map<String, Long> candidates = new HashMap<>();
+    private long total;
+
+    CountMinSketch(int depth, int width, int maxCandidates) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Count-Min width must be a power of two");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new int[depth * width];
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Count one occurrence of an item whose well-mixed 64-bit hash is given
+     */
+    void add(String item, long hash) {
+        total++;
+        int[] slots = slots(hash);
+        int min = Integer.MAX_VALUE;
+        for (int slot : slots) {
+            min = Math.min(min, counters[slot]);
+        }
+        if (min == Integer.MAX_VALUE) {
+            return;
+        }
+        for (int slot : slots) {
+            if (counters[slot] == min) {
+                counters[slot] = min + 1;
+            }
+        }
+        offerCandidate(item, min + 1L);
+    }
+
+    long estimate(long hash) {
+        int min = Integer.MAX_VALUE;
+        for (int slot : slots(hash)) {
+            min = Math.min(min, counters[slot]);
+        }
+        return min;
+    }
+
+    long total() {
+        return total;
+    }
+
+    /**
+     * Heavy hitters with their estimated counts, highest first
+     */
+    List<Map.Entry<String, Long>> top(int limit) {
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(candidates.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    void merge(CountMinSketch other, HashFunction hashFunction) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge Count-Min sketches of different dimensions");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            long sum = (long) counters[i] + other.counters[i];
+            counters[i] = (int) Math.min(Integer.MAX_VALUE, sum);
+        }
+        total += other.total;
+        // Re-estimate every candidate from the combined counters
+        Map<String, Long> union = new HashMap<>(candidates);
+        union.putAll(other.candidates);
+        candidates.clear();
+        for (String item : union.keySet()) {
+            offerCandidate(item, estimate(hashFunction.hash(item)));
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+        candidates.clear();
+        total = 0;
+    }
+
+    int sizeInBytes() {
+        return counters.length * Integer.BYTES;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(total);
+        for (int counter : counters) {
+            out.writeInt(counter);
+        }
+        out.writeInt(candidates.size());
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            out.writeUTF(candidate.getKey());
+            out.writeLong(candidate.getValue());
+        }
+    }
+
+    void readFrom(DataInputStream in) throws IOException {
+        clear();
+        total = in.readLong();
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = in.readInt();
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String item = in.readUTF();
+            offerCandidate(item, in.readLong());
+        }
+    }
+
+    private void offerCandidate(String item, long estimate) {
+        if (candidates.containsKey(item) || candidates.size() < maxCandidates) {
+            candidates.put(item, estimate);
+            return;
+        }
+        // The candidate set is small, so a linear scan for the lightest one is cheap
+        String lightest = null;
+        long lightestCount = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            if (candidate.getValue() < lightestCount) {
+                lightest = candidate.getKey();
+                lightestCount = candidate.getValue();
+            }
+        }
+        if (estimate > lightestCount) {
+            candidates.remove(lightest);
+            candidates.put(item, estimate);
+        }
+    }
+
+    // Row i uses h1 + i * h2 (Kirsch-Mitzenmacher), both halves of the 64-bit hash
+    private int[] slots(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int[] slots = new int[depth];
+        for (int row = 0; row < depth; row++) {
+            slots[row] = row * width + ((h1 + row * h2) & (width - 1));
+        }
+        return slots;
+    }
+
+    @FunctionalInterface
+    interface HashFunction {
+        long hash(String item);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.n8nintegration.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * On-demand Java Flight Recorder recordings for profiling a live node.
+ *
+ * At most one recording runs at a time, bounded by duration and size, using one of the JDK's
+ * settings ("default" is cheap enough for production, "profile" samples more). Chat turn events are
+ * always included; events that capture environment variables, system properties, JVM arguments or
+ * process command lines never are, since they can hold secrets. Stopping or dumping writes a .jfr file to the recordings directory, where only
+ * the newest files are kept; the files can be opened in JDK Mission Control or with the jfr tool.
+ */
+@Service
+public class FlightRecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingService.class);
+
+    private static final List<String> SETTINGS = List.of("default", "profile");
+    private static final String FILE_SUFFIX = ".jfr";
+
+    // Recorded by the JDK settings, but may contain credentials passed as env vars or -D flags
+    static final List<String> SENSITIVE_EVENTS = List.of(
+        "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation", "jdk.SystemProcess");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Value("${chat.profiling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.profiling.dir:}")
+    private String directory;
+
+    @Value("${chat.profiling.max-duration-seconds:600}")
+    private long maxDurationSeconds;
+
+    @Value("${chat.profiling.max-size-mb:200}")
+    private long maxSizeMegabytes;
+
+    // Older recordings are deleted beyond this many files
+    @Value("${chat.profiling.max-files:5}")
+    private int maxFiles;
+
+    private Recording recording;
+    private String settings;
+
+    @PostConstruct
+    public void init() {
+        if (directory == null || directory.isBlank()) {
+            directory = Path.of(System.getProperty("java.io.tmpdir"), "chat-recordings").toString();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled && FlightRecorder.isAvailable();
+    }
+
+    /**
+     * Start a recording that stops by itself after the given duration (capped by the configured
+     * maximum). Throws IllegalStateException if one is already running.
+     */
+    public synchronized Map<String, Object> start(String settingsName, long durationSeconds)
+            throws IOException, ParseException {
+        if (!SETTINGS.contains(settingsName)) {
+            throw new IllegalArgumentException("Settings must be one of " + SETTINGS);
+        }
+        if (isRunning()) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        pruneFiles();
+        Configuration configuration = Configuration.getConfiguration(settingsName);
+        Path target = newFile("chat-" + settingsName);
+
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName("chat-profiling");
+        newRecording.enable(ChatTurnJfrEvent.class);
+        for (String event : SENSITIVE_EVENTS) {
+            newRecording.disable(event);
+        }
+        newRecording.setToDisk(true);
+        newRecording.setMaxSize(maxSizeMegabytes * 1024 * 1024);
+        long seconds = durationSeconds > 0 ? Math.min(durationSeconds, maxDurationSeconds) : maxDurationSeconds;
+        newRecording.setDuration(Duration.ofSeconds(seconds));
+        // Written here when the recording is stopped, by a request or by its duration running out
+        newRecording.setDestination(target);
+        newRecording.start();
+
+        closeRecording();
+        recording = newRecording;
+        settings = settingsName;
+        logger.info("Started flight recording - Settings: {}, Duration: {}s, MaxSize: {} MB, File: {}",
+                   settingsName, seconds, maxSizeMegabytes, target);
+        return getStatus();
+    }
+
+    /**
+     * Stop the running recording and write it out. Returns null when none is running.
+     */
+    public synchronized Map<String, Object> stop() {
+        if (!isRunning()) {
+            return null;
+        }
+        Path file = recording.getDestination();
+        recording.stop();
+        logger.info("Stopped flight recording - File: {}", file);
+        pruneFiles();
+        return fileInfo(file);
+    }
+
+    /**
+     * Write what the running recording holds so far, leaving it running. Returns null when none is running.
+     */
+    public synchronized Map<String, Object> dump() throws IOException {
+        if (!isRunning()) {
+            return null;
+        }
+        Path file = newFile("chat-" + settings + "-snapshot");
+        recording.dump(file);
+        logger.info("Dumped flight recording - File: {}", file);
+        pruneFiles();
+        return fileInfo(file);
+    }
+
+    public synchronized Map<String, Object> getStatus() throws IOException {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", isEnabled());
+        status.put("directory", directory);
+        if (recording != null) {
+            Map<String, Object> current = new LinkedHashMap<>();
+            current.put("state", recording.getState().name());
+            current.put("settings", settings);
+            if (recording.getStartTime() != null) {
+                current.put("startTime", ConversationSession.fromEpochMillis(recording.getStartTime().toEpochMilli()));
+            }
+            current.put("durationSeconds", recording.getDuration() != null ? recording.getDuration().getSeconds() : null);
+            current.put("maxSizeBytes", recording.getMaxSize());
+            current.put("file", recording.getDestination() != null ? recording.getDestination().getFileName().toString() : null);
+            status.put("recording", current);
+        }
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (Path file : listFiles()) {
+            files.add(fileInfo(file));
+        }
+        status.put("files", files);
+        return status;
+    }
+
+    /**
+     * A finished recording file by name, or null if there is no such file
+     */
+    public synchronized Path resolveFile(String name) throws IOException {
+        for (Path file : listFiles()) {
+            if (file.getFileName().toString().equals(name)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (isRunning()) {
+            // Keep what was recorded; the file is written as the recording stops
+            recording.stop();
+        }
+        closeRecording();
+    }
+
+    // Caller holds the monitor. A recording whose duration ran out has stopped by itself.
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private Path newFile(String prefix) throws IOException {
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+        return dir.resolve(prefix + "-" + LocalDateTime.now().format(FILE_TIME) + FILE_SUFFIX);
+    }
+
+    // Caller holds the monitor. Newest first, without the file a running recording will write.
+    private List<Path> listFiles() throws IOException {
+        Path dir = Path.of(directory);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                .filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                .filter(file -> !isRunning() || !file.equals(recording.getDestination()))
+                .sorted(Comparator.comparing(FlightRecordingService::lastModified).reversed())
+                .toList();
+        }
+    }
+
+    private void pruneFiles() {
+        try {
+            List<Path> files = listFiles();
+            for (Path file : files.subList(Math.min(files.size(), Math.max(1, maxFiles)), files.size())) {
+                if (recording == null || !file.equals(recording.getDestination())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to prune flight recordings in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> fileInfo(Path file) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", file.getFileName().toString());
+        info.put("bytes", file.toFile().length());
+        info.put("modified", ConversationSession.fromEpochMillis(lastModified(file)));
+        return info;
+    }
+
+    private static long lastModified(Path file) {
+        return file.toFile().lastModified();
+    }
+}
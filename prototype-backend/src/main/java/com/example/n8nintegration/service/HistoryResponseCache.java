@@ -0,0 +1,143 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.HistoryPageRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Near-cache of serialized conversation history.
+ *
+ * Each entry holds the JSON of one history view (the full history or one page) together with the
+ * session version it was built from and a matching ETag. All views of a conversation are dropped
+ * whenever a message is added, so a hit can be served, or answered with 304 Not Modified, without
+ * reading the session or running Jackson.
+ */
+@Service
+public class HistoryResponseCache {
+
+    private static final byte[] SUCCESS_PREFIX = "{\"success\":true,\"message\":".getBytes(StandardCharsets.UTF_8);
+    private static final String FULL_VIEW = "full";
+    private static final int MAX_VIEWS_PER_CONVERSATION = 8;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.history.cache.max-entries:10000}")
+    private int maxEntries;
+
+    // conversationId -> view key -> cached view
+    private final Map<String, Map<String, CachedHistory>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Cached view of a conversation; a null page means the full history
+     */
+    public CachedHistory get(String conversationId, HistoryPageRequest page) {
+        Map<String, CachedHistory> views = entries.get(conversationId);
+        return views != null ? views.get(viewKey(page)) : null;
+    }
+
+    /**
+     * Serialize and cache a history view built from the given session version
+     */
+    public CachedHistory put(String conversationId, HistoryPageRequest page, String sessionTag, long version,
+                             Object data) throws JsonProcessingException {
+        String viewKey = viewKey(page);
+        CachedHistory entry = new CachedHistory(
+            "\"" + sessionTag + "-" + version + "-" + Integer.toHexString(viewKey.hashCode()) + "\"",
+            version, objectMapper.writeValueAsBytes(data));
+
+        if (entries.size() >= maxEntries) {
+            // Approximate bound: drop a handful of arbitrary entries rather than tracking recency
+            Iterator<String> keys = entries.keySet().iterator();
+            for (int i = 0; i < 16 && keys.hasNext(); i++) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        Map<String, CachedHistory> views = entries.computeIfAbsent(conversationId, id -> new ConcurrentHashMap<>());
+        if (views.size() >= MAX_VIEWS_PER_CONVERSATION) {
+            views.clear();
+        }
+        views.put(viewKey, entry);
+        return entry;
+    }
+
+    public void invalidate(String conversationId) {
+        entries.remove(conversationId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String viewKey(HistoryPageRequest page) {
+        return page == null ? FULL_VIEW : page.cacheKey();
+    }
+
+    /**
+     * One cached history view
+     */
+    public static class CachedHistory {
+        private final String etag;
+        private final long version;
+        private final byte[] dataJson;
+
+        CachedHistory(String etag, long version, byte[] dataJson) {
+            this.etag = etag;
+            this.version = version;
+            this.dataJson = dataJson;
+        }
+
+        /**
+         * Whether an If-None-Match header already names this version
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Wrap the cached data in the standard ApiResponse envelope. The message is a
+         * fixed server-side string and the request ID is generated, so neither needs escaping.
+         */
+        public byte[] toResponseBody(String message, String requestId) {
+            byte[] tail = (",\"requestId\":\"" + requestId + "\",\"timestamp\":\""
+                + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+            byte[] middle = ("\"" + message + "\",\"data\":").getBytes(StandardCharsets.UTF_8);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream(
+                SUCCESS_PREFIX.length + middle.length + dataJson.length + tail.length);
+            body.writeBytes(SUCCESS_PREFIX);
+            body.writeBytes(middle);
+            body.writeBytes(dataJson);
+            body.writeBytes(tail);
+            return body.toByteArray();
+        }
+
+        public String getEtag() { return etag; }
+        public long getVersion() { return version; }
+    }
+}
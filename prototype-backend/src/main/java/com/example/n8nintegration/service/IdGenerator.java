@@ -0,0 +1,19 @@
+package com.example.n8nintegration.service;
+
+/**
+ * Source of request and conversation IDs. The implementation is chosen with app.id.generator.
+ */
+public interface IdGenerator {
+
+    /**
+     * A new ID, unique across threads and instances
+     */
+    String nextId();
+
+    /**
+     * A new ID with a fixed prefix, for example "conv-"
+     */
+    default String nextId(String prefix) {
+        return prefix + nextId();
+    }
+}
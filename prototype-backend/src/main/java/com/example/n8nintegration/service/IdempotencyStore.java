@@ -0,0 +1,266 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Results of requests sent with an Idempotency-Key header, so a client retrying after a lost
+ * response gets the original answer instead of a second n8n call.
+ *
+ * The first request with a key runs and its response is kept until the TTL after it finished;
+ * repeats get that response back with Idempotent-Replayed: true. A repeat arriving while the first
+ * is still running waits for its result. Keys are scoped to the endpoint and API key, and a repeat
+ * whose body differs from the first is rejected. Server errors and 429 are not kept, so a retry
+ * after them runs again. The oldest finished entries are evicted beyond max-entries; when every
+ * entry is still running, new keys are refused with 503 rather than dropping a running request's entry.
+ */
+@Service
+@Lazy(false)
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.idempotency.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${chat.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    // How long a repeat waits for the first request before giving up with 409
+    @Value("${chat.idempotency.wait-timeout-ms:130000}")
+    private long waitTimeoutMs;
+
+    // Insertion order for eviction; guarded by this object's monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256);
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Run the call once per key: without a key it simply runs, otherwise the first request runs
+     * and its response is returned again for repeats. The error body function builds the body of
+     * the 400/409/422/503 responses for invalid keys, repeats that wait too long, mismatched bodies
+     * and a store full of running requests.
+     *
+     * @throws DeadlineExceededException if the request's deadline passes while a repeat waits
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request,
+                                         Supplier<ResponseEntity<T>> call, Function<String, T> errorBody) {
+        if (!enabled || key == null) {
+            return call.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                .body(errorBody.apply(IDEMPOTENCY_KEY_HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        String storeKey = scope + "\n" + key;
+        byte[] fingerprint = fingerprint(request);
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(storeKey);
+            if (entry != null && entry.isExpired(System.currentTimeMillis(), ttlSeconds)) {
+                entries.remove(storeKey);
+                entry = null;
+            }
+            if (entry == null) {
+                if (!makeRoom()) {
+                    rejections.increment();
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(errorBody.apply("Too many requests with an " + IDEMPOTENCY_KEY_HEADER + " are in progress"));
+                }
+                entry = new Entry(fingerprint);
+                entries.put(storeKey, entry);
+                owner = true;
+            }
+        }
+
+        if (!Arrays.equals(entry.fingerprint, fingerprint)) {
+            mismatches.increment();
+            return ResponseEntity.unprocessableEntity()
+                .body(errorBody.apply(IDEMPOTENCY_KEY_HEADER + " was already used with a different request"));
+        }
+        if (owner) {
+            return runFirst(storeKey, entry, call);
+        }
+        return replay(entry, key, errorBody);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public synchronized int removeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now, ttlSeconds)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.debug("Removed {} expired idempotency keys", removed);
+        }
+        return removed;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        synchronized (this) {
+            statistics.put("entries", entries.size());
+        }
+        statistics.put("maxEntries", maxEntries);
+        statistics.put("ttlSeconds", ttlSeconds);
+        statistics.put("executions", executions.sum());
+        statistics.put("replays", replays.sum());
+        statistics.put("waitedForInFlight", waits.sum());
+        statistics.put("mismatches", mismatches.sum());
+        statistics.put("evictions", evictions.sum());
+        statistics.put("rejectedWhileFull", rejections.sum());
+        return statistics;
+    }
+
+    private <T> ResponseEntity<T> runFirst(String storeKey, Entry entry, Supplier<ResponseEntity<T>> call) {
+        executions.increment();
+        ResponseEntity<T> response = null;
+        try {
+            response = call.get();
+            return response;
+        } finally {
+            if (response == null || !isFinal(response)) {
+                // Let the next retry run again; repeats already waiting get this outcome
+                synchronized (this) {
+                    entries.remove(storeKey, entry);
+                }
+            }
+            entry.complete(response);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> replay(Entry entry, String key, Function<String, T> errorBody) {
+        if (!entry.result.isDone()) {
+            waits.increment();
+        }
+        // Never wait past the caller's own deadline
+        long waitMillis = Math.min(waitTimeoutMs, Math.max(0, RequestDeadline.remainingMillis()));
+        ResponseEntity<?> original;
+        try {
+            original = entry.result.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (RequestDeadline.isExpired()) {
+                throw RequestDeadline.expiredDuring("the wait for the first request with this " + IDEMPOTENCY_KEY_HEADER, e);
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(errorBody.apply("A request with this " + IDEMPOTENCY_KEY_HEADER + " is still in progress"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(errorBody.apply("A request with this " + IDEMPOTENCY_KEY_HEADER + " is still in progress"));
+        } catch (ExecutionException e) {
+            original = null;
+        }
+        if (original == null) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(errorBody.apply("The request with this " + IDEMPOTENCY_KEY_HEADER + " failed; retry it"));
+        }
+
+        replays.increment();
+        logger.debug("Replaying idempotent response - Key: {}, Status: {}", key, original.getStatusCode().value());
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(original.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>((T) original.getBody(), headers, original.getStatusCode());
+    }
+
+    // Caller holds the monitor. Evicts the oldest finished entries until there is room for one more;
+    // running entries stay so their repeats still wait instead of running the call a second time.
+    private boolean makeRoom() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() >= maxEntries && iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+        return entries.size() < maxEntries;
+    }
+
+    private static boolean isFinal(ResponseEntity<?> response) {
+        int status = response.getStatusCode().value();
+        return status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            byte[] json = request != null ? objectMapper.writeValueAsBytes(request) : new byte[0];
+            return MessageDigest.getInstance("SHA-256").digest(json);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(request).getBytes(StandardCharsets.UTF_8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Entry {
+        final byte[] fingerprint;
+        final CompletableFuture<ResponseEntity<?>> result = new CompletableFuture<>();
+        volatile long completedAt;
+
+        Entry(byte[] fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void complete(ResponseEntity<?> response) {
+            completedAt = System.currentTimeMillis();
+            result.complete(response);
+        }
+
+        // Running requests never expire; the TTL counts from when the response was ready
+        boolean isExpired(long now, long ttlSeconds) {
+            return result.isDone() && now - completedAt > ttlSeconds * 1000;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.n8nintegration.service;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+
+/**
+ * Carries the logging MDC (request, conversation and trace IDs) of the submitting thread into
+ * tasks run on worker threads, so their log lines and RequestIdFilter.currentRequestId() still
+ * name the request they belong to.
+ */
+public final class MdcContext {
+
+    private MdcContext() {}
+
+    /**
+     * Wrap a task so it runs with the caller's MDC and leaves the worker's own MDC as it was
+     */
+    public static Runnable wrap(Runnable task) {
+        Map<String, String> captured = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            if (captured != null) {
+                MDC.setContextMap(captured);
+            } else {
+                MDC.clear();
+            }
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    MDC.setContextMap(previous);
+                } else {
+                    MDC.clear();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A pool of interchangeable n8n webhook endpoints.
+ *
+ * Requests go to the less loaded of two randomly chosen healthy endpoints (power of two choices),
+ * where load is outstanding requests weighted by the latency EWMA. Failures feed an error EWMA;
+ * an endpoint that keeps failing is ejected and only readmitted once an active probe succeeds.
+ *
+ * Calls with an affinity key (a conversation ID) are routed by consistent hashing with bounded
+ * loads instead, so consecutive turns reach the same worker unless it is ejected or already
+ * carrying more than its share of outstanding requests.
+ */
+public class N8nEndpointPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(N8nEndpointPool.class);
+
+    // Weight of the newest sample in the latency and error averages
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double ERROR_RATE_EJECT_THRESHOLD = 0.5;
+    private static final long MAX_EJECTION_MILLIS = 5 * 60_000L;
+    private static final int VIRTUAL_NODES_PER_ENDPOINT = 100;
+
+    private final String name;
+    private final List<Endpoint> endpoints;
+    private final int ejectAfterFailures;
+    private final long ejectionMillis;
+    private final ConsistentHashRing<Endpoint> ring;
+    private double affinityLoadFactor = 1.25;
+    // Lets one caller refresh stale probe results while the others read the previous ones
+    private final ReentrantLock probeRefreshLock = new ReentrantLock();
+
+    public N8nEndpointPool(String name, List<String> urls, int ejectAfterFailures, long ejectionMillis) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one webhook URL is required for pool " + name);
+        }
+        this.name = name;
+        this.endpoints = new ArrayList<>();
+        for (String url : urls) {
+            endpoints.add(new Endpoint(url));
+        }
+        this.ejectAfterFailures = Math.max(1, ejectAfterFailures);
+        this.ejectionMillis = Math.max(1_000L, ejectionMillis);
+        this.ring = new ConsistentHashRing<>(endpoints, Endpoint::getUrl, VIRTUAL_NODES_PER_ENDPOINT);
+    }
+
+    /**
+     * How far above the average outstanding load an affinity owner may go before
+     * requests spill to the next endpoint on the ring (must be greater than 1)
+     */
+    public void setAffinityLoadFactor(double affinityLoadFactor) {
+        this.affinityLoadFactor = Math.max(1.01, affinityLoadFactor);
+    }
+
+    /**
+     * Parse a comma separated URL list, ignoring blanks and duplicates
+     */
+    public static List<String> parseUrls(String urls) {
+        List<String> result = new ArrayList<>();
+        if (urls == null) {
+            return result;
+        }
+        for (String url : urls.split(",")) {
+            String trimmed = url.trim();
+            if (!trimmed.isEmpty() && !result.contains(trimmed)) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run a call against the selected endpoint, recording its latency and outcome
+     */
+    public <T> T execute(Function<String, T> call) {
+        return execute(select(), call);
+    }
+
+    /**
+     * Run a call against the endpoint the affinity key maps to, falling back to
+     * normal selection when no key is given
+     */
+    public <T> T execute(String affinityKey, Function<String, T> call) {
+        return execute(affinityKey == null ? select() : selectFor(affinityKey), call);
+    }
+
+    private <T> T execute(Endpoint endpoint, Function<String, T> call) {
+        endpoint.outstanding.incrementAndGet();
+        long startTime = System.nanoTime();
+        try {
+            T result = call.apply(endpoint.url);
+            recordSuccess(endpoint, System.nanoTime() - startTime);
+            return result;
+        } catch (HttpClientErrorException e) {
+            // A 4xx is about the request, not about the health of the node
+            recordSuccess(endpoint, System.nanoTime() - startTime);
+            throw e;
+        } catch (RuntimeException e) {
+            // A response timeout cut short by the caller's deadline says nothing about the node
+            if (!RequestDeadline.isExpired()) {
+                recordFailure(endpoint);
+            }
+            throw e;
+        } finally {
+            endpoint.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * Pick an endpoint with power of two choices among the admitted ones
+     */
+    Endpoint select() {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+
+        List<Endpoint> admitted = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.ejected) {
+                admitted.add(endpoint);
+            }
+        }
+
+        if (admitted.isEmpty()) {
+            // Everything is ejected: fail open to the endpoint that has been out the longest
+            Endpoint oldest = endpoints.get(0);
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.ejectedAt < oldest.ejectedAt) {
+                    oldest = endpoint;
+                }
+            }
+            return oldest;
+        }
+        if (admitted.size() == 1) {
+            return admitted.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(admitted.size());
+        int second = random.nextInt(admitted.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = admitted.get(first);
+        Endpoint b = admitted.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * Consistent hashing with bounded loads: walk the ring from the key and take the first
+     * admitted endpoint whose outstanding requests stay within loadFactor times the average
+     */
+    Endpoint selectFor(String affinityKey) {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+
+        int admitted = 0;
+        int totalOutstanding = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.ejected) {
+                admitted++;
+                totalOutstanding += endpoint.outstanding.get();
+            }
+        }
+        if (admitted == 0) {
+            return select();
+        }
+
+        int capacity = (int) Math.ceil(affinityLoadFactor * (totalOutstanding + 1) / admitted);
+        Endpoint endpoint = ring.locate(affinityKey,
+            candidate -> !candidate.ejected && candidate.outstanding.get() + 1 <= capacity);
+        return endpoint != null ? endpoint : select();
+    }
+
+    /**
+     * Actively probe endpoints and apply the results. Ejected endpoints are only
+     * probed once their ejection period has elapsed.
+     */
+    public boolean probe(Predicate<String> probe, boolean includeAdmitted) {
+        boolean anyHealthy = false;
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejected && now < endpoint.ejectedAt + endpoint.currentEjectionMillis) {
+                continue;
+            }
+            if (!endpoint.ejected && !includeAdmitted) {
+                anyHealthy = true;
+                continue;
+            }
+
+            long startTime = System.nanoTime();
+            boolean healthy;
+            try {
+                healthy = probe.test(endpoint.url);
+            } catch (LaneSaturatedException e) {
+                // Not probed this round; keep the previous result rather than blame the endpoint
+                logger.debug("Probe skipped, probe lane saturated - Pool: {}, Endpoint: {}", name, endpoint.url);
+                ProbeResult previous = endpoint.lastProbe;
+                if (!endpoint.ejected && previous != null && previous.healthy) {
+                    anyHealthy = true;
+                }
+                continue;
+            }
+            endpoint.lastProbe = new ProbeResult(healthy, System.currentTimeMillis(),
+                (System.nanoTime() - startTime) / 1_000_000.0);
+            if (healthy) {
+                anyHealthy = true;
+                recordSuccess(endpoint, System.nanoTime() - startTime);
+                if (endpoint.ejected) {
+                    readmit(endpoint);
+                }
+            } else if (endpoint.ejected) {
+                // Still failing: back off further before the next probe
+                synchronized (endpoint) {
+                    endpoint.ejectedAt = now;
+                    endpoint.currentEjectionMillis = Math.min(MAX_EJECTION_MILLIS, endpoint.currentEjectionMillis * 2);
+                }
+            } else {
+                recordFailure(endpoint);
+            }
+        }
+        return anyHealthy;
+    }
+
+    /**
+     * Health of the pool from recent probe results: true if any endpoint passed a probe
+     * within maxAgeMillis. Only when some results are older than that are the endpoints probed
+     * again, and only by one caller at a time; concurrent callers get the previous results.
+     */
+    public boolean cachedProbe(Predicate<String> probe, long maxAgeMillis) {
+        if (hasStaleProbes(maxAgeMillis) && probeRefreshLock.tryLock()) {
+            try {
+                if (hasStaleProbes(maxAgeMillis)) {
+                    return probe(probe, true);
+                }
+            } finally {
+                probeRefreshLock.unlock();
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints) {
+            ProbeResult result = endpoint.lastProbe;
+            if (result != null && result.healthy && now - result.probedAt <= maxAgeMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasStaleProbes(long maxAgeMillis) {
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejected && now < endpoint.ejectedAt + endpoint.currentEjectionMillis) {
+                // Known bad and not due for a probe yet
+                continue;
+            }
+            ProbeResult result = endpoint.lastProbe;
+            if (result == null || now - result.probedAt > maxAgeMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    public String getUrl(int index) {
+        return endpoints.get(index).url;
+    }
+
+    public boolean isEjected(int index) {
+        return endpoints.get(index).ejected;
+    }
+
+    /**
+     * Outcome of the latest active probe of an endpoint, or null if it was never probed
+     */
+    public ProbeResult getLastProbe(int index) {
+        return endpoints.get(index).lastProbe;
+    }
+
+    public String getPrimaryUrl() {
+        return endpoints.get(0).url;
+    }
+
+    public List<String> getUrls() {
+        List<String> urls = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            urls.add(endpoint.url);
+        }
+        return urls;
+    }
+
+    /**
+     * Point-in-time view of every endpoint, for health reporting
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("url", endpoint.url);
+            status.put("status", endpoint.ejected ? "ejected" : "active");
+            status.put("outstandingRequests", endpoint.outstanding.get());
+            status.put("latencyEwmaMs", Math.round(endpoint.latencyEwmaMs * 10) / 10.0);
+            status.put("errorRateEwma", Math.round(endpoint.errorEwma * 1000) / 1000.0);
+            status.put("ejections", endpoint.ejections);
+            result.add(status);
+        }
+        return result;
+    }
+
+    /**
+     * Pool-wide load: endpoints in rotation and requests currently in flight
+     */
+    public Map<String, Object> utilization() {
+        int active = 0;
+        int outstanding = 0;
+        int busiest = 0;
+        for (Endpoint endpoint : endpoints) {
+            int inFlight = endpoint.outstanding.get();
+            outstanding += inFlight;
+            busiest = Math.max(busiest, inFlight);
+            if (!endpoint.ejected) {
+                active++;
+            }
+        }
+        Map<String, Object> utilization = new LinkedHashMap<>();
+        utilization.put("endpoints", endpoints.size());
+        utilization.put("activeEndpoints", active);
+        utilization.put("outstandingRequests", outstanding);
+        utilization.put("busiestEndpointOutstanding", busiest);
+        return utilization;
+    }
+
+    private void recordSuccess(Endpoint endpoint, long elapsedNanos) {
+        double elapsedMs = elapsedNanos / 1_000_000.0;
+        synchronized (endpoint) {
+            endpoint.latencyEwmaMs = endpoint.samples == 0
+                ? elapsedMs : endpoint.latencyEwmaMs + EWMA_ALPHA * (elapsedMs - endpoint.latencyEwmaMs);
+            endpoint.errorEwma -= EWMA_ALPHA * endpoint.errorEwma;
+            endpoint.consecutiveFailures = 0;
+            endpoint.samples++;
+        }
+    }
+
+    private void recordFailure(Endpoint endpoint) {
+        boolean eject;
+        synchronized (endpoint) {
+            endpoint.errorEwma += EWMA_ALPHA * (1.0 - endpoint.errorEwma);
+            endpoint.consecutiveFailures++;
+            endpoint.samples++;
+            eject = !endpoint.ejected
+                && (endpoint.consecutiveFailures >= ejectAfterFailures
+                    || (endpoint.samples >= 10 && endpoint.errorEwma > ERROR_RATE_EJECT_THRESHOLD));
+            if (eject) {
+                endpoint.ejected = true;
+                endpoint.ejectedAt = System.currentTimeMillis();
+                endpoint.currentEjectionMillis = ejectionMillis;
+                endpoint.ejections++;
+            }
+        }
+        if (eject) {
+            logger.warn("Ejected n8n endpoint from {} pool after {} consecutive failures: {}",
+                       name, endpoint.consecutiveFailures, endpoint.url);
+        }
+    }
+
+    private void readmit(Endpoint endpoint) {
+        synchronized (endpoint) {
+            endpoint.ejected = false;
+            endpoint.consecutiveFailures = 0;
+            endpoint.errorEwma = 0.0;
+        }
+        logger.info("Readmitted n8n endpoint to {} pool: {}", name, endpoint.url);
+    }
+
+    // Mutable per-endpoint state; writes are guarded by the endpoint monitor
+    static final class Endpoint {
+        final String url;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile double latencyEwmaMs;
+        volatile double errorEwma;
+        volatile boolean ejected;
+        volatile long ejectedAt;
+        volatile ProbeResult lastProbe;
+        long currentEjectionMillis;
+        int consecutiveFailures;
+        long samples;
+        int ejections;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        double cost() {
+            // Unmeasured endpoints look cheap so they get traffic and a latency estimate
+            return (outstanding.get() + 1) * Math.max(1.0, latencyEwmaMs);
+        }
+
+        String getUrl() {
+            return url;
+        }
+    }
+
+    /**
+     * Result of one active probe
+     */
+    public static final class ProbeResult {
+        private final boolean healthy;
+        private final long probedAt;
+        private final double latencyMs;
+
+        ProbeResult(boolean healthy, long probedAt, double latencyMs) {
+            this.healthy = healthy;
+            this.probedAt = probedAt;
+            this.latencyMs = latencyMs;
+        }
+
+        public boolean isHealthy() { return healthy; }
+        public long getProbedAt() { return probedAt; }
+        public double getLatencyMs() { return latencyMs; }
+    }
+}
@@ -1,38 +1,75 @@
 package com.example.n8nintegration.service;
 
 import com.example.n8nintegration.dto.WebhookRequest;
+import com.example.n8nintegration.exception.LaneSaturatedException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
+@Lazy(false)
 public class N8nService {
 
     private static final Logger logger = LoggerFactory.getLogger(N8nService.class);
 
     @Autowired
+    @Qualifier("n8nBulkRestTemplate")
     private RestTemplate restTemplate;
 
-    @Value("${n8n.webhook.url}")
-    private String n8nWebhookUrl;
+    @Autowired
+    @Qualifier("n8nProbeRestTemplate")
+    private RestTemplate probeRestTemplate;
+
+    @Autowired
+    private TrafficLanes trafficLanes;
+
+    @Value("${n8n.webhook.urls:${n8n.webhook.url}}")
+    private String n8nWebhookUrls;
 
-    @Value("${n8n.api.key:}")
-    private String configuredApiKey;
+    @Value("${n8n.pool.eject-after-failures:3}")
+    private int ejectAfterFailures;
+
+    @Value("${n8n.pool.ejection-ms:30000}")
+    private long ejectionMillis;
+
+    @Autowired
+    private ApiKeyRegistry apiKeyRegistry;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Value("${n8n.health.ttl-ms:60000}")
+    private long healthTtlMillis;
+
+    // HEAD and GET only check that n8n answers; POST runs the workflow with a test payload
+    @Value("${n8n.health.probe-method:HEAD}")
+    private String probeMethod;
+
+    private N8nEndpointPool webhookEndpointPool;
+
+    @PostConstruct
+    public void initEndpointPool() {
+        webhookEndpointPool = new N8nEndpointPool("webhook", N8nEndpointPool.parseUrls(n8nWebhookUrls),
+            ejectAfterFailures, ejectionMillis);
+    }
+
     public Object triggerWebhook(WebhookRequest request, String requestId) {
-        logger.info("Triggering n8n webhook - RequestID: {}, URL: {}", requestId, n8nWebhookUrl);
+        logger.info("Triggering n8n webhook - RequestID: {}", requestId);
 
         try {
             // Prepare headers
@@ -52,14 +89,15 @@ public class N8nService {
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
 
-            // Make the request to n8n
+            // Make the request to one of the n8n webhook endpoints
             long startTime = System.currentTimeMillis();
-            ResponseEntity<Object> response = restTemplate.exchange(
-                n8nWebhookUrl,
-                HttpMethod.POST,
-                entity,
-                Object.class
-            );
+            ResponseEntity<Object> response = trafficLanes.run(TrafficLanes.BULK, () ->
+                webhookEndpointPool.execute(url -> restTemplate.exchange(
+                    url,
+                    HttpMethod.POST,
+                    entity,
+                    Object.class
+                )));
             long duration = System.currentTimeMillis() - startTime;
 
             logger.info("N8N webhook response - RequestID: {}, Status: {}, Duration: {}ms", 
@@ -74,9 +112,37 @@ public class N8nService {
         }
     }
 
-    public boolean testConnection() {
+    /**
+     * Test the connection to n8n. Unless a live check is requested, the answer comes from the
+     * background health probes and n8n is only contacted when those results are older than
+     * n8n.health.ttl-ms.
+     */
+    public boolean testConnection(boolean live) {
+        if (live) {
+            return webhookEndpointPool.probe(this::probeWebhookEndpoint, true);
+        }
+        return webhookEndpointPool.cachedProbe(this::probeWebhookEndpoint, healthTtlMillis);
+    }
+
+    /**
+     * Probe every webhook endpoint in the background so health reads never wait on n8n
+     */
+    @Scheduled(fixedDelayString = "${n8n.health.probe-interval-ms:30000}")
+    public void refreshEndpointHealth() {
+        webhookEndpointPool.probe(this::probeWebhookEndpoint, true);
+    }
+
+    /**
+     * Retry ejected webhook endpoints so they can be readmitted
+     */
+    @Scheduled(fixedDelayString = "${n8n.pool.probe-interval-ms:10000}")
+    public void probeEjectedEndpoints() {
+        webhookEndpointPool.probe(this::probeWebhookEndpoint, false);
+    }
+
+    private boolean probeWebhookEndpoint(String url) {
         try {
-            logger.debug("Testing connection to n8n webhook: {}", n8nWebhookUrl);
+            logger.debug("Testing connection to n8n webhook: {}", url);
             
             // Simple test payload
             Map<String, Object> testPayload = Map.of(
@@ -89,20 +155,27 @@ public class N8nService {
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.set("User-Agent", "Spring-Boot-N8N-Integration/1.0");
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(testPayload, headers);
+            HttpMethod method = HttpMethod.valueOf(probeMethod.trim().toUpperCase());
+            HttpEntity<?> entity = method == HttpMethod.POST ? new HttpEntity<>(testPayload, headers) : new HttpEntity<>(headers);
 
-            ResponseEntity<Object> response = restTemplate.exchange(
-                n8nWebhookUrl,
-                HttpMethod.POST,
+            ResponseEntity<Void> response = trafficLanes.run(TrafficLanes.PROBE, () -> probeRestTemplate.exchange(
+                url,
+                method,
                 entity,
-                Object.class
-            );
+                Void.class
+            ));
 
             boolean isSuccessful = response.getStatusCode().is2xxSuccessful();
             logger.debug("Connection test result: {}, Status: {}", isSuccessful, response.getStatusCode());
             
             return isSuccessful;
 
+        } catch (HttpClientErrorException e) {
+            // A webhook registered for POST answers other methods with 4xx, which still shows n8n is up
+            return !HttpMethod.POST.name().equalsIgnoreCase(probeMethod.trim());
+        } catch (LaneSaturatedException e) {
+            // Our own probe lane is full, which says nothing about the endpoint
+            throw e;
         } catch (Exception e) {
             logger.error("Connection test failed: {}", e.getMessage());
             return false;
@@ -110,20 +183,23 @@ public class N8nService {
     }
 
     public boolean isValidApiKey(String providedApiKey) {
-        // If no API key is configured, skip validation
-        if (configuredApiKey == null || configuredApiKey.trim().isEmpty()) {
-            logger.debug("No API key configured, skipping validation");
-            return true;
-        }
-
-        // If API key is configured, validate it
-        boolean isValid = configuredApiKey.equals(providedApiKey);
-        logger.debug("API key validation result: {}", isValid);
-        
-        return isValid;
+        // Request authentication happens in ApiKeyFilter; this stays for callers outside the web layer
+        return !apiKeyRegistry.isEnabled() || apiKeyRegistry.authenticate(providedApiKey) != null;
     }
 
     public String getWebhookUrl() {
-        return n8nWebhookUrl;
+        return webhookEndpointPool.getPrimaryUrl();
+    }
+
+    public N8nEndpointPool getWebhookEndpointPool() {
+        return webhookEndpointPool;
+    }
+
+    public List<Map<String, Object>> getWebhookEndpointStatus() {
+        return webhookEndpointPool.snapshot();
+    }
+
+    public Map<String, Object> getWebhookPoolUtilization() {
+        return webhookEndpointPool.utilization();
     }
 }
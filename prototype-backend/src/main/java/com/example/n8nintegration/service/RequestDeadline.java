@@ -0,0 +1,118 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.DeadlineExceededException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deadline of the request being handled on this thread, taken from the caller's timeout header.
+ *
+ * Work that has not started yet is skipped once the deadline has passed, outbound n8n calls get
+ * the remaining time as their response timeout, and the remaining time is sent on to n8n and to
+ * cluster peers in the same header. Threads without a deadline are unaffected.
+ */
+public final class RequestDeadline {
+
+    // Milliseconds the caller is still willing to wait, relative so clocks need not agree
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<Long> deadlineNanos = new ThreadLocal<>();
+
+    private static final LongAdder requests = new LongAdder();
+    private static final LongAdder expiredOnArrival = new LongAdder();
+    private static final LongAdder expiredBeforeCall = new LongAdder();
+    private static final LongAdder expiredDuringCall = new LongAdder();
+
+    private RequestDeadline() {}
+
+    /**
+     * Set the deadline of this thread's request to the given number of milliseconds from now
+     */
+    public static void start(long timeoutMillis) {
+        requests.increment();
+        deadlineNanos.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    public static void clear() {
+        deadlineNanos.remove();
+    }
+
+    public static boolean isSet() {
+        return deadlineNanos.get() != null;
+    }
+
+    /**
+     * Milliseconds left before the deadline, or Long.MAX_VALUE when the request has none
+     */
+    public static long remainingMillis() {
+        Long deadline = deadlineNanos.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    /**
+     * Wrap a task so it runs under this thread's deadline on a worker thread, leaving the worker's
+     * own deadline as it was. Time the task spends queued counts against the deadline.
+     */
+    public static Runnable wrap(Runnable task) {
+        Long captured = deadlineNanos.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            Long previous = deadlineNanos.get();
+            deadlineNanos.set(captured);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    deadlineNanos.set(previous);
+                } else {
+                    deadlineNanos.remove();
+                }
+            }
+        };
+    }
+
+    public static boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+
+    /**
+     * Give up before starting the named step if the caller's deadline has passed
+     *
+     * @throws DeadlineExceededException if it has
+     */
+    public static void check(String step) {
+        if (isExpired()) {
+            expiredBeforeCall.increment();
+            throw new DeadlineExceededException("Request deadline passed before " + step);
+        }
+    }
+
+    /**
+     * Exception for a call that failed because the deadline ran out while it was running
+     */
+    public static DeadlineExceededException expiredDuring(String step, Throwable cause) {
+        expiredDuringCall.increment();
+        return new DeadlineExceededException("Request deadline passed during " + step, cause);
+    }
+
+    public static void recordExpiredOnArrival() {
+        expiredOnArrival.increment();
+    }
+
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("requestsWithDeadline", requests.sum());
+        statistics.put("expiredOnArrival", expiredOnArrival.sum());
+        statistics.put("expiredBeforeCall", expiredBeforeCall.sum());
+        statistics.put("expiredDuringCall", expiredDuringCall.sum());
+        return statistics;
+    }
+}
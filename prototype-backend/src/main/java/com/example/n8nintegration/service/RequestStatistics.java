@@ -0,0 +1,190 @@
+package com.example.n8nintegration.service;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolling request statistics for the stats endpoint.
+ *
+ * Recording is cheap and never blocks: counts go into LongAdders in 5-second slots, and latencies
+ * into an HdrHistogram Recorder. Every 15 seconds the recorder's interval histogram is moved into
+ * a ring covering 15 minutes; readers merge the slots and intervals that fall inside each window,
+ * so percentiles trail the live traffic by up to one interval.
+ */
+@Service
+@Lazy(false)
+public class RequestStatistics {
+
+    public static final String CATEGORY_CHAT = "chat";
+    public static final String CATEGORY_HISTORY = "history";
+    public static final String CATEGORY_TRIGGER = "trigger";
+    public static final String CATEGORY_OTHER = "other";
+
+    private static final String[] CATEGORIES = {CATEGORY_CHAT, CATEGORY_HISTORY, CATEGORY_TRIGGER, CATEGORY_OTHER};
+    private static final int[] WINDOW_MINUTES = {1, 5, 15};
+
+    private static final long SLOT_MILLIS = 5_000;
+    private static final long INTERVAL_MILLIS = 15_000;
+    private static final int SLOTS = (int) (TimeUnit.MINUTES.toMillis(15) / SLOT_MILLIS);
+    private static final int INTERVALS = (int) (TimeUnit.MINUTES.toMillis(15) / INTERVAL_MILLIS);
+
+    // Latencies above this are recorded as this value
+    private static final long MAX_LATENCY_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    private final Map<String, CategoryStats> categories = new LinkedHashMap<>();
+
+    public RequestStatistics() {
+        for (String category : CATEGORIES) {
+            categories.put(category, new CategoryStats());
+        }
+    }
+
+    /**
+     * Record one finished request
+     */
+    public void record(String category, int status, long latencyNanos) {
+        CategoryStats stats = categories.getOrDefault(category, categories.get(CATEGORY_OTHER));
+        stats.slotFor(System.currentTimeMillis()).add(status);
+        stats.recorder.recordValue(Math.min(MAX_LATENCY_MICROS, Math.max(0, latencyNanos / 1000)));
+    }
+
+    @Scheduled(fixedRate = INTERVAL_MILLIS)
+    public void rotateIntervals() {
+        for (CategoryStats stats : categories.values()) {
+            stats.rotate(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Rates, error counts and latency percentiles per category and window
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CategoryStats> entry : categories.entrySet()) {
+            Map<String, Object> windows = new LinkedHashMap<>();
+            for (int minutes : WINDOW_MINUTES) {
+                windows.put(minutes + "m", entry.getValue().window(now, TimeUnit.MINUTES.toMillis(minutes)));
+            }
+            result.put(entry.getKey(), windows);
+        }
+        return result;
+    }
+
+    private static final class CategoryStats {
+        private final Slot[] slots = new Slot[SLOTS];
+        private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 2);
+
+        // Completed latency intervals and the time each one ended; idle intervals are left empty
+        private final Histogram[] intervals = new Histogram[INTERVALS];
+        private final long[] intervalEnds = new long[INTERVALS];
+        private int nextInterval;
+        private Histogram spare;
+
+        CategoryStats() {
+            for (int i = 0; i < SLOTS; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        Slot slotFor(long nowMillis) {
+            long epoch = nowMillis / SLOT_MILLIS;
+            Slot slot = slots[(int) (epoch % SLOTS)];
+            if (slot.epoch != epoch) {
+                slot.roll(epoch);
+            }
+            return slot;
+        }
+
+        synchronized void rotate(long nowMillis) {
+            int index = nextInterval;
+            nextInterval = (nextInterval + 1) % INTERVALS;
+            if (intervals[index] != null) {
+                spare = intervals[index];
+            }
+            // The recorder resets and reuses the spare, so steady-state rotation allocates nothing
+            Histogram interval = recorder.getIntervalHistogram(spare);
+            spare = null;
+            if (interval.getTotalCount() > 0) {
+                intervals[index] = interval;
+            } else {
+                intervals[index] = null;
+                spare = interval;
+            }
+            intervalEnds[index] = nowMillis;
+        }
+
+        synchronized Map<String, Object> window(long nowMillis, long windowMillis) {
+            long requests = 0;
+            long serverErrors = 0;
+            long clientErrors = 0;
+            long oldestSlot = (nowMillis - windowMillis) / SLOT_MILLIS;
+            for (Slot slot : slots) {
+                if (slot.epoch > oldestSlot) {
+                    requests += slot.requests.sum();
+                    serverErrors += slot.serverErrors.sum();
+                    clientErrors += slot.clientErrors.sum();
+                }
+            }
+
+            Histogram merged = new Histogram(MAX_LATENCY_MICROS, 2);
+            for (int i = 0; i < INTERVALS; i++) {
+                if (intervals[i] != null && intervalEnds[i] > nowMillis - windowMillis) {
+                    merged.add(intervals[i]);
+                }
+            }
+
+            Map<String, Object> window = new LinkedHashMap<>();
+            window.put("requests", requests);
+            window.put("requestsPerSecond", Math.round(requests * 100_000.0 / windowMillis) / 100.0);
+            window.put("serverErrors", serverErrors);
+            window.put("clientErrors", clientErrors);
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("p50", millis(merged.getValueAtPercentile(50)));
+            latency.put("p90", millis(merged.getValueAtPercentile(90)));
+            latency.put("p99", millis(merged.getValueAtPercentile(99)));
+            latency.put("p999", millis(merged.getValueAtPercentile(99.9)));
+            latency.put("max", millis(merged.getMaxValue()));
+            window.put("latencyMs", latency);
+            return window;
+        }
+
+        private static double millis(long micros) {
+            return Math.round(micros / 10.0) / 100.0;
+        }
+    }
+
+    private static final class Slot {
+        private volatile long epoch = -1;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder serverErrors = new LongAdder();
+        private final LongAdder clientErrors = new LongAdder();
+
+        synchronized void roll(long newEpoch) {
+            // Re-check under the lock: only the first recorder of a new slot period resets it
+            if (epoch != newEpoch) {
+                requests.reset();
+                serverErrors.reset();
+                clientErrors.reset();
+                epoch = newEpoch;
+            }
+        }
+
+        void add(int status) {
+            requests.increment();
+            if (status >= 500) {
+                serverErrors.increment();
+            } else if (status >= 400) {
+                clientErrors.increment();
+            }
+        }
+    }
+}
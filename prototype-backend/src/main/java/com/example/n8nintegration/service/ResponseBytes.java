@@ -0,0 +1,47 @@
+package com.example.n8nintegration.service;
+
+/**
+ * Size of the n8n response body read on this thread, counted as it is read rather than taken from
+ * Content-Length, which chunked and gzip responses do not carry. Only counted between track() and
+ * finish(), so calls made outside a recorded chat turn cost nothing.
+ */
+public final class ResponseBytes {
+
+    private static final ThreadLocal<long[]> counter = new ThreadLocal<>();
+
+    private ResponseBytes() {}
+
+    public static void track() {
+        counter.set(new long[] {0});
+    }
+
+    public static boolean isTracking() {
+        return counter.get() != null;
+    }
+
+    /**
+     * Start counting a new response; a retried call only reports the response that was used
+     */
+    public static void restart() {
+        long[] count = counter.get();
+        if (count != null) {
+            count[0] = 0;
+        }
+    }
+
+    public static void add(long bytes) {
+        long[] count = counter.get();
+        if (count != null) {
+            count[0] += bytes;
+        }
+    }
+
+    /**
+     * Stop counting and return the bytes read, or -1 if nothing was being tracked
+     */
+    public static long finish() {
+        long[] count = counter.get();
+        counter.remove();
+        return count != null ? count[0] : -1;
+    }
+}
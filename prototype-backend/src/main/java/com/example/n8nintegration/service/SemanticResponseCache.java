@@ -0,0 +1,421 @@
+package com.example.n8nintegration.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate-match cache of answers to opening prompts.
+ *
+ * Prompts are normalized (lower case, punctuation and common filler words removed) and cut into
+ * character trigrams. A 128-value MinHash signature of the trigrams estimates the Jaccard
+ * similarity of two prompts, and the signature is split into 32 bands of 4 values for a
+ * locality-sensitive index, so a lookup only compares against prompts sharing at least one band.
+ * The most similar candidate at or above the threshold is a hit.
+ *
+ * A sample of hits is still sent to n8n, and the fresh answer is compared with the cached one to
+ * measure hit quality; a cached answer that no longer agrees is replaced. Entries expire after
+ * the TTL and the least recently used are evicted beyond max-entries.
+ *
+ * n8n receives the userId with every turn and may personalise its answer, so by default each user
+ * has a separate cache and an answer is only ever served back to the user it was given to. With
+ * scope=global all users share one cache, which is only safe for workflows that ignore the user.
+ */
+@Service
+@Lazy(false)
+public class SemanticResponseCache {
+
+    private static final int HASHES = 128;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int BANDS = HASHES / ROWS_PER_BAND;
+    private static final int MIN_SHINGLES = 3;
+    private static final int MAX_RESPONSE_CHARS = 16_384;
+
+    private static final Set<String> FILLER_WORDS = Set.of(
+        "a", "an", "the", "is", "are", "was", "be", "do", "does", "can", "could", "would", "will",
+        "i", "me", "my", "we", "our", "you", "your", "it", "its", "to", "of", "for", "on", "in", "at",
+        "and", "or", "please", "pls", "hi", "hello", "hey", "thanks", "thank", "tell", "what", "whats");
+
+    // Per-position seeds for the MinHash family
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    @Value("${chat.semantic-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.semantic-cache.similarity-threshold:0.8}")
+    private double threshold;
+
+    @Value("${chat.semantic-cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${chat.semantic-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${chat.semantic-cache.verify-sample-rate:0.05}")
+    private double verifySampleRate;
+
+    // "user" keeps each user's answers apart; "global" shares them between all users
+    @Value("${chat.semantic-cache.scope:user}")
+    private String scope;
+
+    // Recency order for eviction; the map and the band index are guarded by this object's monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Long, List<Entry>> bandIndex = new HashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder unfingerprintable = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder disagreements = new LongAdder();
+    private final LongAdder[] hitSimilarity = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+    private final LongAdder similarityMillis = new LongAdder();
+    private final LongAdder agreementMillis = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The best cached answer the user may be given for a prompt at or above the similarity
+     * threshold, or null
+     */
+    public Hit lookup(String userId, String prompt) {
+        lookups.increment();
+        Fingerprint fingerprint = Fingerprint.of(prompt);
+        if (fingerprint == null) {
+            unfingerprintable.increment();
+            misses.increment();
+            return null;
+        }
+
+        String partition = partition(userId);
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        double bestSimilarity = 0;
+        synchronized (this) {
+            Entry exact = entries.get(entryKey(partition, fingerprint.normalized));
+            if (exact != null && !exact.isExpired(now, ttlMinutes)) {
+                best = exact;
+                bestSimilarity = 1.0;
+            } else {
+                Set<Entry> seen = new HashSet<>();
+                for (int band = 0; band < BANDS; band++) {
+                    List<Entry> bucket = bandIndex.get(bandKey(band, partition, fingerprint.signature));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (Entry candidate : bucket) {
+                        if (seen.add(candidate) && candidate.partition.equals(partition)
+                                && !candidate.isExpired(now, ttlMinutes)) {
+                            double similarity = similarity(fingerprint.signature, candidate.signature);
+                            if (similarity >= threshold && similarity > bestSimilarity) {
+                                best = candidate;
+                                bestSimilarity = similarity;
+                            }
+                        }
+                    }
+                }
+                if (best != null) {
+                    // Refresh recency of the matched entry
+                    entries.get(best.key);
+                }
+            }
+        }
+
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        if (bestSimilarity >= 1.0) {
+            exactHits.increment();
+        } else {
+            nearHits.increment();
+        }
+        hitSimilarity[similarityBucket(bestSimilarity)].increment();
+        similarityMillis.add(Math.round(bestSimilarity * 1000));
+        boolean verify = verifySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < verifySampleRate;
+        return new Hit(best.response, bestSimilarity, verify);
+    }
+
+    /**
+     * Remember the answer n8n gave to a user's prompt
+     */
+    public void put(String userId, String prompt, String response) {
+        if (response == null || response.length() > MAX_RESPONSE_CHARS) {
+            return;
+        }
+        Fingerprint fingerprint = Fingerprint.of(prompt);
+        if (fingerprint == null) {
+            return;
+        }
+        String partition = partition(userId);
+        Entry entry = new Entry(entryKey(partition, fingerprint.normalized), partition, fingerprint.signature,
+            response, System.currentTimeMillis());
+        synchronized (this) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                unindex(previous);
+            }
+            for (int band = 0; band < BANDS; band++) {
+                bandIndex.computeIfAbsent(bandKey(band, entry.partition, entry.signature), key -> new ArrayList<>(2)).add(entry);
+            }
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                unindex(evicted);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Record how well a sampled hit agreed with the answer n8n gave for the same prompt, and
+     * keep the fresh answer
+     */
+    public void verify(String userId, String prompt, Hit hit, String freshResponse) {
+        Fingerprint cached = Fingerprint.of(hit.getResponse());
+        Fingerprint fresh = Fingerprint.of(freshResponse);
+        double agreement = cached != null && fresh != null
+            ? similarity(cached.signature, fresh.signature)
+            : (hit.getResponse().equals(freshResponse) ? 1.0 : 0.0);
+        verifications.increment();
+        agreementMillis.add(Math.round(agreement * 1000));
+        if (agreement < threshold) {
+            disagreements.increment();
+        }
+        put(userId, prompt, freshResponse);
+    }
+
+    /**
+     * Drop expired entries so their memory is returned even without lookups
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public synchronized int removeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.isExpired(now, ttlMinutes)) {
+                iterator.remove();
+                unindex(entry);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void unindex(Entry entry) {
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(band, entry.partition, entry.signature);
+            List<Entry> bucket = bandIndex.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    bandIndex.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hit counts, similarity of served hits and agreement of verified hits
+     */
+    public Map<String, Object> getStatistics() {
+        long hits = exactHits.sum() + nearHits.sum();
+        long verified = verifications.sum();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("similarityThreshold", threshold);
+        synchronized (this) {
+            statistics.put("entries", entries.size());
+            statistics.put("indexBuckets", bandIndex.size());
+        }
+        statistics.put("lookups", lookups.sum());
+        statistics.put("exactHits", exactHits.sum());
+        statistics.put("nearHits", nearHits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("unfingerprintablePrompts", unfingerprintable.sum());
+        statistics.put("hitRate", lookups.sum() == 0 ? 0.0 : Math.round(hits * 1000.0 / lookups.sum()) / 1000.0);
+        statistics.put("evictions", evictions.sum());
+
+        Map<String, Object> similarity = new LinkedHashMap<>();
+        similarity.put("average", hits == 0 ? 0.0 : Math.round(similarityMillis.sum() / (double) hits) / 1000.0);
+        similarity.put("below0.9", hitSimilarity[0].sum());
+        similarity.put("0.9to0.95", hitSimilarity[1].sum());
+        similarity.put("0.95to1", hitSimilarity[2].sum());
+        similarity.put("exact", hitSimilarity[3].sum());
+        statistics.put("hitSimilarity", similarity);
+
+        Map<String, Object> verification = new LinkedHashMap<>();
+        verification.put("sampleRate", verifySampleRate);
+        verification.put("verified", verified);
+        verification.put("averageAgreement", verified == 0 ? 0.0 : Math.round(agreementMillis.sum() / (double) verified) / 1000.0);
+        verification.put("disagreements", disagreements.sum());
+        statistics.put("verification", verification);
+        return statistics;
+    }
+
+    private static int similarityBucket(double similarity) {
+        if (similarity >= 1.0) {
+            return 3;
+        }
+        if (similarity >= 0.95) {
+            return 2;
+        }
+        return similarity >= 0.9 ? 1 : 0;
+    }
+
+    static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return equal / (double) HASHES;
+    }
+
+    private String partition(String userId) {
+        return "global".equalsIgnoreCase(scope) || userId == null ? "" : userId;
+    }
+
+    private static String entryKey(String partition, String normalized) {
+        return partition + '\n' + normalized;
+    }
+
+    // Same band of the same signature in another partition lands in a different bucket
+    private static long bandKey(int band, String partition, int[] signature) {
+        long hash = mix(band + 31L * partition.hashCode());
+        for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+            hash = mix(hash * 31 + signature[i]);
+        }
+        return hash;
+    }
+
+    // 64-bit finalizer from MurmurHash3
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Fingerprint {
+        final String normalized;
+        final int[] signature;
+
+        private Fingerprint(String normalized, int[] signature) {
+            this.normalized = normalized;
+            this.signature = signature;
+        }
+
+        /**
+         * Normalize and MinHash a text, or null if it is too short to fingerprint
+         */
+        static Fingerprint of(String text) {
+            String normalized = normalize(text);
+            if (normalized.length() < MIN_SHINGLES + 2) {
+                return null;
+            }
+
+            int[] signature = new int[HASHES];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+            String padded = " " + normalized + " ";
+            Set<Long> shingles = new HashSet<>();
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                long shingle = mix(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+                if (shingles.add(shingle)) {
+                    for (int h = 0; h < HASHES; h++) {
+                        int value = (int) (mix(shingle ^ SEEDS[h]) >>> 33);
+                        if (value < signature[h]) {
+                            signature[h] = value;
+                        }
+                    }
+                }
+            }
+            return shingles.size() < MIN_SHINGLES ? null : new Fingerprint(normalized, signature);
+        }
+
+        static String normalize(String text) {
+            StringBuilder normalized = new StringBuilder(text.length());
+            for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty() && !FILLER_WORDS.contains(word)) {
+                    if (normalized.length() > 0) {
+                        normalized.append(' ');
+                    }
+                    normalized.append(word);
+                }
+            }
+            return normalized.toString();
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final String partition;
+        final int[] signature;
+        final String response;
+        final long createdAt;
+
+        Entry(String key, String partition, int[] signature, String response, long createdAt) {
+            this.key = key;
+            this.partition = partition;
+            this.signature = signature;
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlMinutes) {
+            return now - createdAt > TimeUnit.MINUTES.toMillis(ttlMinutes);
+        }
+    }
+
+    /**
+     * A cached answer, its similarity to the prompt, and whether this hit was picked for verification
+     */
+    public static final class Hit {
+        private final String response;
+        private final double similarity;
+        private final boolean verify;
+
+        Hit(String response, double similarity, boolean verify) {
+            this.response = response;
+            this.similarity = similarity;
+            this.verify = verify;
+        }
+
+        public String getResponse() { return response; }
+        public double getSimilarity() { return similarity; }
+        public boolean shouldVerify() { return verify; }
+    }
+}
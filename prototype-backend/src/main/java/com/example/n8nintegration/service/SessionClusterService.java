@@ -0,0 +1,354 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.ApiResponse;
+import com.example.n8nintegration.dto.ChatRequest;
+import com.example.n8nintegration.dto.ChatResponse;
+import com.example.n8nintegration.dto.HistoryPageRequest;
+import com.example.n8nintegration.dto.SessionSnapshot;
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Partitions conversation sessions across backend instances.
+ *
+ * Each conversation is owned by the node its ID hashes to on a consistent hash ring of
+ * chat.cluster.nodes. Requests that arrive elsewhere are forwarded to the owner; if the owner is
+ * unreachable the next node on the ring takes over, using the replica it holds for hot sessions.
+ */
+@Service
+public class SessionClusterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionClusterService.class);
+
+    public static final String CLUSTER_TOKEN_HEADER = "X-Cluster-Token";
+    public static final String CLUSTER_PEER_ATTRIBUTE = "n8n.clusterPeer";
+
+    private static final int VIRTUAL_NODES_PER_MEMBER = 100;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Value("${chat.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.cluster.self-url:http://localhost:${server.port:8080}}")
+    private String selfUrl;
+
+    @Value("${chat.cluster.nodes:}")
+    private String nodes;
+
+    @Value("${chat.cluster.secret:}")
+    private String secret;
+
+    // Sessions with at least this many messages are copied to their backup node after each turn
+    @Value("${chat.cluster.replication.min-messages:4}")
+    private int replicationMinMessages;
+
+    private List<String> members;
+    private ConsistentHashRing<String> ring;
+    private ThreadPoolExecutor replicationExecutor;
+
+    private final Map<String, SessionSnapshot> replicas = new ConcurrentHashMap<>();
+    private final Set<String> pendingReplications = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        members = N8nEndpointPool.parseUrls(nodes);
+        if (!members.contains(selfUrl)) {
+            members.add(selfUrl);
+        }
+        ring = new ConsistentHashRing<>(members, member -> member, VIRTUAL_NODES_PER_MEMBER);
+
+        // Replication is best effort: a single worker, bounded queue, drop when full
+        replicationExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000), runnable -> {
+                Thread thread = new Thread(runnable, "session-replication");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+        if (secret == null || secret.isBlank()) {
+            // Without a secret any caller could act as a peer and bypass API keys
+            throw new IllegalStateException("chat.cluster.secret must be set when chat.cluster.enabled=true");
+        }
+        logger.info("Session cluster enabled - Self: {}, Members: {}", selfUrl, members);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (replicationExecutor != null) {
+            replicationExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether this node owns the conversation (always true when clustering is off)
+     */
+    public boolean isLocal(String conversationId) {
+        return !enabled || conversationId == null || selfUrl.equals(ring.owner(conversationId));
+    }
+
+    /**
+     * Check the shared secret presented by another node, in constant time
+     */
+    public boolean isTrustedPeer(String token) {
+        if (!enabled || token == null || secret == null || secret.isBlank()) {
+            return false;
+        }
+        return MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a chat turn to the node responsible for its conversation.
+     * Returns null when this node should handle it.
+     */
+    public ChatResponse routeChat(ChatRequest request, String requestId) {
+        if (isLocal(request.getConversationId())) {
+            return null;
+        }
+
+        for (String member : ring.preferenceList(request.getConversationId(), members.size())) {
+            if (member.equals(selfUrl)) {
+                return null;
+            }
+            RequestDeadline.check("forwarding to " + member);
+            try {
+                HttpEntity<ChatRequest> entity = new HttpEntity<>(request, peerHeaders(requestId));
+                ResponseEntity<ChatResponse> response = restTemplate.exchange(
+                    member + "/api/n8n/chat", HttpMethod.POST, entity, ChatResponse.class);
+                logger.debug("Forwarded chat message - RequestID: {}, ConversationID: {}, Node: {}",
+                            requestId, request.getConversationId(), member);
+                return response.getBody();
+            } catch (HttpStatusCodeException e) {
+                if (e.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT) {
+                    throw new DeadlineExceededException("Request deadline passed on cluster node " + member);
+                }
+                ChatResponse body = e.getResponseBodyAs(ChatResponse.class);
+                return body != null ? body : ChatResponse.error("Cluster node returned " + e.getStatusCode());
+            } catch (ResourceAccessException e) {
+                // After a read timeout the node may already have run the turn; only skip nodes never reached
+                if (!isConnectFailure(e)) {
+                    logger.warn("Cluster node did not answer - RequestID: {}, Node: {}, Error: {}",
+                               requestId, member, e.getMessage());
+                    return ChatResponse.error("Cluster node did not answer: " + e.getMessage());
+                }
+                logger.warn("Cluster node unreachable, trying next - RequestID: {}, Node: {}, Error: {}",
+                           requestId, member, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fetch conversation history (or one page of it) from the node responsible for it.
+     * Returns null when this node should answer.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> routeHistory(String conversationId, HistoryPageRequest page, String requestId) {
+        if (isLocal(conversationId)) {
+            return null;
+        }
+
+        for (String member : ring.preferenceList(conversationId, members.size())) {
+            if (member.equals(selfUrl)) {
+                return null;
+            }
+            try {
+                HttpEntity<Void> entity = new HttpEntity<>(peerHeaders(requestId));
+                String url = member + "/api/n8n/chat/history/" + conversationId
+                    + (page != null ? page.toQueryString() : "");
+                ResponseEntity<ApiResponse> response = restTemplate.exchange(url, HttpMethod.GET, entity, ApiResponse.class);
+                ApiResponse body = response.getBody();
+                if (body != null && body.getData() instanceof Map) {
+                    return (Map<String, Object>) body.getData();
+                }
+            } catch (HttpClientErrorException.NotFound e) {
+                return Map.of(
+                    "success", false,
+                    "message", "Conversation not found",
+                    "conversationId", conversationId
+                );
+            } catch (HttpStatusCodeException e) {
+                throw new IllegalStateException("Cluster node returned " + e.getStatusCode() + " for history request", e);
+            } catch (ResourceAccessException e) {
+                logger.warn("Cluster node unreachable, trying next - RequestID: {}, Node: {}, Error: {}",
+                           requestId, member, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stream a conversation export from the node responsible for it straight into the given
+     * output stream. Returns false when this node should produce the export itself.
+     */
+    public boolean streamHistoryExport(String conversationId, OutputStream out) {
+        if (isLocal(conversationId)) {
+            return false;
+        }
+
+        for (String member : ring.preferenceList(conversationId, members.size())) {
+            if (member.equals(selfUrl)) {
+                return false;
+            }
+            try {
+                HttpHeaders headers = peerHeaders(null);
+                restTemplate.execute(member + "/api/n8n/chat/history/" + conversationId + "/export", HttpMethod.GET,
+                    request -> request.getHeaders().putAll(headers),
+                    response -> {
+                        StreamUtils.copy(response.getBody(), out);
+                        return null;
+                    });
+                return true;
+            } catch (ResourceAccessException e) {
+                logger.warn("Cluster node unreachable, trying next - Node: {}, Error: {}", member, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Asynchronously copy a hot session to its backup node. Repeated calls for the same
+     * conversation while a copy is queued are coalesced into one.
+     */
+    public void replicate(String conversationId, int messageCount, Supplier<SessionSnapshot> snapshot) {
+        if (!enabled || messageCount < replicationMinMessages || !pendingReplications.add(conversationId)) {
+            return;
+        }
+
+        replicationExecutor.execute(MdcContext.wrap(() -> {
+            pendingReplications.remove(conversationId);
+            String backup = backupFor(conversationId);
+            if (backup == null) {
+                return;
+            }
+            try {
+                HttpEntity<SessionSnapshot> entity = new HttpEntity<>(snapshot.get(), peerHeaders(null));
+                restTemplate.exchange(backup + "/api/n8n/cluster/sessions", HttpMethod.POST, entity, Void.class);
+            } catch (Exception e) {
+                logger.debug("Session replication failed - ConversationID: {}, Node: {}, Error: {}",
+                            conversationId, backup, e.getMessage());
+            }
+        }));
+    }
+
+    public void storeReplica(SessionSnapshot snapshot) {
+        replicas.put(snapshot.getConversationId(), snapshot);
+    }
+
+    /**
+     * Remove and return the replica of a conversation, used when this node takes it over
+     */
+    public SessionSnapshot takeReplica(String conversationId) {
+        return enabled ? replicas.remove(conversationId) : null;
+    }
+
+    public void removeExpiredReplicas(long cutoffMillis) {
+        replicas.values().removeIf(replica -> replica.getLastActivity() < cutoffMillis);
+    }
+
+    /**
+     * GET a path from every other member and return the response bodies, skipping nodes that fail
+     */
+    public List<byte[]> fetchFromPeers(String path) {
+        List<byte[]> bodies = new ArrayList<>();
+        if (!enabled) {
+            return bodies;
+        }
+        for (String member : members) {
+            if (member.equals(selfUrl)) {
+                continue;
+            }
+            if (RequestDeadline.isExpired()) {
+                logger.warn("Request deadline passed, not asking remaining cluster nodes - Path: {}", path);
+                break;
+            }
+            try {
+                HttpEntity<Void> entity = new HttpEntity<>(peerHeaders(null));
+                ResponseEntity<byte[]> response = restTemplate.exchange(member + path, HttpMethod.GET, entity, byte[].class);
+                if (response.getBody() != null) {
+                    bodies.add(response.getBody());
+                }
+            } catch (RestClientException e) {
+                logger.warn("Cluster node did not answer - Node: {}, Path: {}, Error: {}", member, path, e.getMessage());
+            }
+        }
+        return bodies;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("self", selfUrl);
+        status.put("members", members != null ? members : List.of());
+        status.put("replicas", replicas.size());
+        return status;
+    }
+
+    // First node after this one on the conversation's preference list
+    private String backupFor(String conversationId) {
+        for (String member : ring.preferenceList(conversationId, members.size())) {
+            if (!member.equals(selfUrl)) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isConnectFailure(ResourceAccessException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof ConnectException || cause instanceof NoRouteToHostException
+            || cause instanceof UnknownHostException;
+    }
+
+    private HttpHeaders peerHeaders(String requestId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(CLUSTER_TOKEN_HEADER, secret == null || secret.isBlank() ? "-" : secret);
+        if (requestId != null) {
+            headers.set("X-Request-ID", requestId);
+        }
+        if (RequestDeadline.isSet()) {
+            headers.set(RequestDeadline.TIMEOUT_HEADER, String.valueOf(Math.max(0, RequestDeadline.remainingMillis())));
+        }
+        return headers;
+    }
+}
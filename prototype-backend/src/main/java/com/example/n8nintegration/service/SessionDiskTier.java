@@ -0,0 +1,316 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.SessionSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier for idle conversation sessions: deflate-compressed records appended to segment files
+ * in a local directory.
+ *
+ * A record is written once and read at most once; reading it back or expiring the session frees
+ * it. Segments are append-only and rolled over at a fixed size, and a segment is deleted as soon
+ * as all of its records are free. Live records of mostly free segments are moved forward, so disk
+ * use follows the number of cold sessions. The files are a spill area, not storage: they are wiped
+ * on startup and shutdown, and never synced.
+ */
+class SessionDiskTier {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionDiskTier.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String SEGMENT_PREFIX = "sessions-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    private Segment current;
+    private int nextSegmentId;
+
+    // Scratch buffers reused by the thread that encodes a record
+    private static final ThreadLocal<ByteArrayOutputStream> ENCODE_BUFFER =
+        ThreadLocal.withInitial(() -> new ByteArrayOutputStream(8192));
+    // A scratch buffer grown above this is dropped after use instead of being kept for the next record
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+
+    SessionDiskTier(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        deleteSegmentFiles();
+    }
+
+    /**
+     * Where a record lives; small enough to stay on the heap for every cold session
+     */
+    static final class Location {
+        final int segmentId;
+        final long offset;
+        final int length;
+
+        Location(int segmentId, long offset, int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    Location write(SessionSnapshot snapshot) throws IOException {
+        return append(encode(snapshot));
+    }
+
+    /**
+     * Copy a record to the current segment, so the segment it was in can be freed sooner
+     */
+    Location relocate(Location location) throws IOException {
+        return append(readRecord(location));
+    }
+
+    /**
+     * Full segments that are mostly free space
+     */
+    synchronized List<Integer> sparseSegments(double maxLiveRatio) {
+        List<Integer> sparse = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment != current && segment.liveBytes < segment.size * maxLiveRatio) {
+                sparse.add(segment.id);
+            }
+        }
+        return sparse;
+    }
+
+    private Location append(byte[] record) throws IOException {
+        synchronized (this) {
+            if (current == null || current.size + record.length > segmentBytes) {
+                rollSegment();
+            }
+            Segment segment = current;
+            long offset = segment.size;
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                segment.channel.write(buffer, offset + buffer.position());
+            }
+            segment.size += record.length;
+            segment.liveRecords++;
+            segment.liveBytes += record.length;
+            return new Location(segment.id, offset, record.length);
+        }
+    }
+
+    SessionSnapshot read(Location location) throws IOException {
+        return decode(readRecord(location));
+    }
+
+    private byte[] readRecord(Location location) throws IOException {
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(location.segmentId);
+        }
+        if (segment == null) {
+            throw new IOException("Spill segment " + location.segmentId + " no longer exists");
+        }
+        // Positional reads need no lock. If the record is moved and its segment deleted meanwhile,
+        // the read fails and the caller retries at the new location.
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        while (buffer.hasRemaining()) {
+            if (segment.channel.read(buffer, location.offset + buffer.position()) < 0) {
+                throw new IOException("Spill record truncated in segment " + location.segmentId);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Free a record; its segment is deleted once nothing in it is live any more
+     */
+    synchronized void release(Location location) {
+        Segment segment = segments.get(location.segmentId);
+        if (segment == null) {
+            return;
+        }
+        segment.liveRecords--;
+        segment.liveBytes -= location.length;
+        if (segment.liveRecords <= 0 && segment != current) {
+            segments.remove(segment.id);
+            segment.delete();
+        }
+    }
+
+    synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.delete();
+        }
+        segments.clear();
+        current = null;
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        long fileBytes = 0;
+        long liveBytes = 0;
+        for (Segment segment : segments.values()) {
+            fileBytes += segment.size;
+            liveBytes += segment.liveBytes;
+        }
+        Map<String, Object> disk = new LinkedHashMap<>();
+        disk.put("directory", directory.toString());
+        disk.put("segments", segments.size());
+        disk.put("fileBytes", fileBytes);
+        disk.put("liveBytes", liveBytes);
+        return disk;
+    }
+
+    // Caller holds the monitor
+    private void rollSegment() throws IOException {
+        Segment previous = current;
+        int id = nextSegmentId++;
+        Path file = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        current = new Segment(id, file, channel);
+        segments.put(id, current);
+        if (previous != null && previous.liveRecords <= 0) {
+            segments.remove(previous.id);
+            previous.delete();
+        }
+    }
+
+    private void deleteSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Compact binary form: fixed fields, then role, content, timestamp and sequence per message
+    static byte[] encode(SessionSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream buffer = ENCODE_BUFFER.get();
+        buffer.reset();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buffer, deflater, 8192))) {
+            out.writeByte(FORMAT_VERSION);
+            writeString(out, snapshot.getConversationId());
+            writeString(out, snapshot.getUserId());
+            out.writeLong(snapshot.getCreatedAt());
+            out.writeLong(snapshot.getLastActivity());
+            List<Map<String, Object>> messages = snapshot.getMessages();
+            out.writeInt(messages.size());
+            for (Map<String, Object> message : messages) {
+                writeString(out, stringValue(message.get("role")));
+                writeString(out, stringValue(message.get("content")));
+                writeString(out, stringValue(message.get("timestamp")));
+                Object seq = message.get("seq");
+                out.writeLong(seq instanceof Number number ? number.longValue() : -1L);
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] record = buffer.toByteArray();
+        // reset() keeps the grown array, so replace it after one huge session
+        if (record.length > MAX_RETAINED_BYTES) {
+            ENCODE_BUFFER.remove();
+        }
+        return record;
+    }
+
+    static SessionSnapshot decode(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(record)))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown spill record format " + version);
+            }
+            String conversationId = readString(in);
+            String userId = readString(in);
+            long createdAt = in.readLong();
+            long lastActivity = in.readLong();
+            int count = in.readInt();
+            List<Map<String, Object>> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Map<String, Object> message = new HashMap<>();
+                message.put("role", readString(in));
+                message.put("content", readString(in));
+                message.put("timestamp", readString(in));
+                long seq = in.readLong();
+                if (seq >= 0) {
+                    message.put("seq", seq);
+                }
+                messages.add(message);
+            }
+            return new SessionSnapshot(conversationId, userId, createdAt, lastActivity, messages);
+        }
+    }
+
+    private static String stringValue(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Guarded by the tier's monitor, except the channel, which supports concurrent positional reads
+    private static final class Segment {
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        long size;
+        long liveBytes;
+        int liveRecords;
+
+        Segment(int id, Path file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete spill segment {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
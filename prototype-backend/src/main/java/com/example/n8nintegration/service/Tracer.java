@@ -0,0 +1,362 @@
+package com.example.n8nintegration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal in-process tracer using W3C trace context.
+ *
+ * Spans nest per thread: a span started while another is open on the same thread becomes its
+ * child. Incoming traceparent headers continue the caller's trace, and outgoing calls carry a
+ * traceparent naming the client span. Finished spans are kept in a fixed-size ring for the
+ * admin endpoint and, when tracing.export.file is set, appended to that file as JSON lines by a
+ * background thread.
+ */
+@Service
+public class Tracer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+
+    public static final String TRACEPARENT_HEADER = "traceparent";
+    public static final String MDC_TRACE_ID = "traceId";
+
+    private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${tracing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracing.buffer-size:2048}")
+    private int bufferSize;
+
+    @Value("${tracing.export.file:}")
+    private String exportFile;
+
+    private final ThreadLocal<Deque<Span>> activeSpans = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private AtomicReferenceArray<SpanData> finished;
+    private final AtomicLong finishedCount = new AtomicLong();
+
+    private BlockingQueue<SpanData> exportQueue;
+    private Thread exportThread;
+
+    @PostConstruct
+    public void init() {
+        finished = new AtomicReferenceArray<>(Math.max(16, bufferSize));
+        if (enabled && exportFile != null && !exportFile.isBlank()) {
+            exportQueue = new ArrayBlockingQueue<>(8192);
+            exportThread = new Thread(this::exportLoop, "trace-export");
+            exportThread.setDaemon(true);
+            exportThread.start();
+            logger.info("Exporting traces to {}", exportFile);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (exportThread != null) {
+            exportThread.interrupt();
+        }
+    }
+
+    /**
+     * Start a span for an incoming request, continuing the caller's trace when a valid
+     * traceparent header is given
+     */
+    public Span startServerSpan(String name, String traceparent) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        String traceId = null;
+        String parentId = null;
+        if (traceparent != null) {
+            Matcher matcher = TRACEPARENT.matcher(traceparent.trim());
+            if (matcher.matches() && !INVALID_TRACE_ID.equals(matcher.group(1))) {
+                traceId = matcher.group(1);
+                parentId = matcher.group(2);
+            }
+        }
+        if (traceId == null) {
+            traceId = randomHex(2);
+        }
+        return open(name, traceId, parentId);
+    }
+
+    /**
+     * Start a span as a child of the span currently open on this thread, or a new trace
+     */
+    public Span startSpan(String name) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        Span parent = activeSpans.get().peek();
+        return parent != null ? open(name, parent.traceId, parent.spanId) : open(name, randomHex(2), null);
+    }
+
+    /**
+     * traceparent header value for the span currently open on this thread, or null
+     */
+    public String currentTraceparent() {
+        Span current = enabled ? activeSpans.get().peek() : null;
+        return current != null ? "00-" + current.traceId + "-" + current.spanId + "-01" : null;
+    }
+
+    /**
+     * Spans of one trace still held in memory, in start order
+     */
+    public List<SpanData> getTrace(String traceId) {
+        List<SpanData> spans = new ArrayList<>();
+        for (SpanData span : snapshot()) {
+            if (span.traceId.equals(traceId)) {
+                spans.add(span);
+            }
+        }
+        spans.sort((a, b) -> Long.compare(a.startEpochMicros, b.startEpochMicros));
+        return spans;
+    }
+
+    /**
+     * The most recent root spans, newest first, each with the number of spans in its trace
+     */
+    public List<Map<String, Object>> getRecentTraces(int limit) {
+        List<SpanData> spans = snapshot();
+        Map<String, Integer> spanCounts = new LinkedHashMap<>();
+        for (SpanData span : spans) {
+            spanCounts.merge(span.traceId, 1, Integer::sum);
+        }
+
+        List<Map<String, Object>> traces = new ArrayList<>();
+        for (int i = spans.size() - 1; i >= 0 && traces.size() < limit; i--) {
+            SpanData span = spans.get(i);
+            if (span.parentSpanId == null || span.remoteParent) {
+                Map<String, Object> trace = new LinkedHashMap<>();
+                trace.put("traceId", span.traceId);
+                trace.put("name", span.name);
+                trace.put("startEpochMicros", span.startEpochMicros);
+                trace.put("durationMicros", span.durationMicros);
+                trace.put("error", span.error);
+                trace.put("spans", spanCounts.get(span.traceId));
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    private Span open(String name, String traceId, String parentId) {
+        Deque<Span> stack = activeSpans.get();
+        boolean remoteParent = parentId != null && stack.isEmpty();
+        Span span = new Span(this, name, traceId, randomHex(1), parentId, remoteParent);
+        if (stack.isEmpty()) {
+            MDC.put(MDC_TRACE_ID, traceId);
+        }
+        stack.push(span);
+        return span;
+    }
+
+    private void finish(Span span) {
+        Deque<Span> stack = activeSpans.get();
+        stack.remove(span);
+        if (stack.isEmpty()) {
+            MDC.remove(MDC_TRACE_ID);
+            activeSpans.remove();
+        }
+
+        SpanData data = span.toData();
+        long slot = finishedCount.getAndIncrement();
+        finished.set((int) (slot % finished.length()), data);
+        if (exportQueue != null) {
+            exportQueue.offer(data);
+        }
+    }
+
+    private List<SpanData> snapshot() {
+        long count = finishedCount.get();
+        int length = finished.length();
+        List<SpanData> spans = new ArrayList<>();
+        for (long i = Math.max(0, count - length); i < count; i++) {
+            SpanData span = finished.get((int) (i % length));
+            if (span != null) {
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+
+    private void exportLoop() {
+        List<SpanData> batch = new ArrayList<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(exportFile), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                SpanData first = exportQueue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                exportQueue.drainTo(batch, 511);
+                for (SpanData span : batch) {
+                    writer.write(objectMapper.writeValueAsString(span));
+                    writer.newLine();
+                }
+                writer.flush();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Trace export stopped - File: {}, Error: {}", exportFile, e.getMessage());
+        }
+    }
+
+    private static String randomHex(int longs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder hex = new StringBuilder(longs * 16);
+        for (int i = 0; i < longs; i++) {
+            String part = Long.toHexString(random.nextLong());
+            for (int pad = part.length(); pad < 16; pad++) {
+                hex.append('0');
+            }
+            hex.append(part);
+        }
+        return hex.toString();
+    }
+
+    /**
+     * An open span; close it (try-with-resources) to record it
+     */
+    public static class Span implements AutoCloseable {
+
+        // Wall clock anchored once, advanced with nanoTime so spans within a millisecond still order correctly
+        private static final long CLOCK_BASE_NANOS = System.nanoTime();
+        private static final long CLOCK_BASE_EPOCH_MICROS = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+        static final Span NOOP = new Span(null, null, null, null, null, false);
+
+        private final Tracer tracer;
+        private final String name;
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private final boolean remoteParent;
+        private final long startEpochMicros;
+        private final long startNanos;
+        private Map<String, Object> attributes;
+        private String error;
+        private boolean closed;
+
+        private Span(Tracer tracer, String name, String traceId, String spanId, String parentSpanId,
+                     boolean remoteParent) {
+            this.tracer = tracer;
+            this.name = name;
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.remoteParent = remoteParent;
+            this.startNanos = System.nanoTime();
+            this.startEpochMicros = CLOCK_BASE_EPOCH_MICROS + (startNanos - CLOCK_BASE_NANOS) / 1000;
+        }
+
+        public Span tag(String key, Object value) {
+            if (tracer != null && value != null) {
+                if (attributes == null) {
+                    attributes = new LinkedHashMap<>();
+                }
+                attributes.put(key, value);
+            }
+            return this;
+        }
+
+        public Span error(Throwable throwable) {
+            if (tracer != null) {
+                error = throwable.getClass().getSimpleName() + ": " + throwable.getMessage();
+            }
+            return this;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        @Override
+        public void close() {
+            if (tracer != null && !closed) {
+                closed = true;
+                tracer.finish(this);
+            }
+        }
+
+        private SpanData toData() {
+            return new SpanData(traceId, spanId, parentSpanId, remoteParent, name, startEpochMicros,
+                (System.nanoTime() - startNanos) / 1000,
+                attributes != null ? Collections.unmodifiableMap(attributes) : Map.of(), error);
+        }
+    }
+
+    /**
+     * A finished span, as returned by the admin endpoint and written to the export file
+     */
+    public static class SpanData {
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private final boolean remoteParent;
+        private final String name;
+        private final long startEpochMicros;
+        private final long durationMicros;
+        private final Map<String, Object> attributes;
+        private final String error;
+
+        SpanData(String traceId, String spanId, String parentSpanId, boolean remoteParent, String name,
+                 long startEpochMicros, long durationMicros, Map<String, Object> attributes, String error) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.remoteParent = remoteParent;
+            this.name = name;
+            this.startEpochMicros = startEpochMicros;
+            this.durationMicros = durationMicros;
+            this.attributes = attributes;
+            this.error = error;
+        }
+
+        public String getTraceId() { return traceId; }
+        public String getSpanId() { return spanId; }
+        public String getParentSpanId() { return parentSpanId; }
+        public String getName() { return name; }
+        public long getStartEpochMicros() { return startEpochMicros; }
+        public long getDurationMicros() { return durationMicros; }
+        public Map<String, Object> getAttributes() { return attributes; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bulkheads for outbound n8n traffic.
+ *
+ * Interactive chat, bulk webhook triggers and health probes each get their own concurrency
+ * limit, wait queue and HTTP connection pool, so a burst in one lane cannot use up the
+ * connections or servlet threads of another. A call waits at most the lane's max-wait for a
+ * permit and is rejected once the queue is full. Bulk calls are also held back while chat calls
+ * are queued, so chat always gets capacity first.
+ *
+ * When the request has a deadline (RequestDeadline), a call waits for a permit only as long as the
+ * deadline allows, is not started once it has passed, and its response timeout is cut to the time
+ * that is left.
+ */
+@Service
+public class TrafficLanes {
+
+    public static final String CHAT = "chat";
+    public static final String BULK = "bulk";
+    public static final String PROBE = "probe";
+
+    @Value("${n8n.lanes.chat.concurrency:64}")
+    private int chatConcurrency;
+
+    @Value("${n8n.lanes.chat.max-queue:128}")
+    private int chatMaxQueue;
+
+    @Value("${n8n.lanes.chat.max-wait-ms:2000}")
+    private long chatMaxWaitMillis;
+
+    @Value("${n8n.lanes.chat.response-timeout-ms:120000}")
+    private long chatResponseTimeoutMillis;
+
+    @Value("${n8n.lanes.bulk.concurrency:8}")
+    private int bulkConcurrency;
+
+    @Value("${n8n.lanes.bulk.max-queue:16}")
+    private int bulkMaxQueue;
+
+    @Value("${n8n.lanes.bulk.max-wait-ms:500}")
+    private long bulkMaxWaitMillis;
+
+    @Value("${n8n.lanes.bulk.response-timeout-ms:60000}")
+    private long bulkResponseTimeoutMillis;
+
+    @Value("${n8n.lanes.probe.concurrency:4}")
+    private int probeConcurrency;
+
+    // Defaults to twice the concurrency
+    @Value("${n8n.lanes.probe.max-queue:0}")
+    private int probeMaxQueue;
+
+    @Value("${n8n.lanes.probe.max-wait-ms:5000}")
+    private long probeMaxWaitMillis;
+
+    @Value("${n8n.lanes.probe.response-timeout-ms:5000}")
+    private long probeResponseTimeoutMillis;
+
+    @Value("${n8n.lanes.connect-timeout-ms:5000}")
+    private long connectTimeoutMillis;
+
+    // One lock for all lanes, so a lane can see whether a higher priority lane is queueing
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // Chat and probes never wait for each other; bulk yields to both
+        lanes.put(CHAT, new Lane(CHAT, 2, chatConcurrency, chatMaxQueue, chatMaxWaitMillis, chatResponseTimeoutMillis));
+        lanes.put(PROBE, new Lane(PROBE, 2, probeConcurrency,
+            probeMaxQueue > 0 ? probeMaxQueue : probeConcurrency * 2, probeMaxWaitMillis, probeResponseTimeoutMillis));
+        lanes.put(BULK, new Lane(BULK, 1, bulkConcurrency, bulkMaxQueue, bulkMaxWaitMillis, bulkResponseTimeoutMillis));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes.values()) {
+            lane.connections.close();
+        }
+    }
+
+    /**
+     * Request factory backed by the lane's own connection pool
+     */
+    public ClientHttpRequestFactory requestFactory(String laneName) {
+        Lane lane = lane(laneName);
+        RequestConfig defaults = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofMilliseconds(lane.maxWaitMillis))
+            .setResponseTimeout(Timeout.ofMilliseconds(lane.responseTimeoutMillis))
+            .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(lane.connections)
+            .setDefaultRequestConfig(defaults)
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            // OutboundCompressionInterceptor handles gzip so its statistics stay accurate
+            .disableContentCompression()
+            .build();
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        // Created as the call is sent, so the time spent queueing for the lane is already taken off
+        factory.setHttpContextFactory((method, uri) -> {
+            long remaining = RequestDeadline.remainingMillis();
+            if (remaining >= lane.responseTimeoutMillis) {
+                return null;
+            }
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.copy(defaults)
+                .setResponseTimeout(Timeout.ofMilliseconds(Math.max(1, remaining)))
+                .build());
+            return context;
+        });
+        return factory;
+    }
+
+    /**
+     * Run an n8n call within the lane's capacity
+     *
+     * @throws LaneSaturatedException if no permit became free within the lane's max-wait
+     * @throws DeadlineExceededException if the request's deadline passed before or during the call
+     */
+    public <T> T run(String laneName, Supplier<T> call) {
+        Lane lane = lane(laneName);
+        RequestDeadline.check("waiting for the " + lane.name + " lane");
+        acquire(lane);
+        try {
+            // The caller may have given up while this call was queued
+            RequestDeadline.check("calling n8n");
+            return call.get();
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Most likely the response timeout that was cut to the deadline
+            if (RequestDeadline.isExpired()) {
+                throw RequestDeadline.expiredDuring("the n8n call", e);
+            }
+            throw e;
+        } finally {
+            release(lane);
+        }
+    }
+
+    private void acquire(Lane lane) {
+        long waitStarted = System.nanoTime();
+        lock.lock();
+        try {
+            if (lane.canEnter()) {
+                lane.enter(0);
+                return;
+            }
+            if (lane.queued >= lane.maxQueue) {
+                lane.rejected.increment();
+                throw lane.saturated();
+            }
+
+            lane.queued++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(
+                    Math.min(lane.maxWaitMillis, Math.max(0, RequestDeadline.remainingMillis())));
+                boolean yielded = false;
+                while (!lane.canEnter()) {
+                    if (lane.inFlight < lane.limit) {
+                        yielded = true;
+                    }
+                    if (remaining <= 0) {
+                        if (RequestDeadline.isExpired()) {
+                            throw RequestDeadline.expiredDuring("the wait for the " + lane.name + " lane", null);
+                        }
+                        lane.rejected.increment();
+                        throw lane.saturated();
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                if (yielded) {
+                    lane.yielded.increment();
+                }
+                lane.enter(System.nanoTime() - waitStarted);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.rejected.increment();
+                throw lane.saturated();
+            } finally {
+                // Lower priority lanes may have been held back only by this waiter
+                lane.queued--;
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Lane lane) {
+        lock.lock();
+        try {
+            lane.inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lane lane(String name) {
+        Lane lane = lanes.get(name);
+        if (lane == null) {
+            throw new IllegalArgumentException("Unknown traffic lane: " + name);
+        }
+        return lane;
+    }
+
+    /**
+     * Saturation figures per lane: permits in use, queued callers, rejections, waits and connections
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (Lane lane : lanes.values()) {
+                result.put(lane.name, lane.snapshot());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    // Lane state other than the counters is guarded by the shared lock
+    private final class Lane {
+        final String name;
+        final int priority;
+        final int limit;
+        final int maxQueue;
+        final long maxWaitMillis;
+        final long responseTimeoutMillis;
+        final PoolingHttpClientConnectionManager connections;
+        int inFlight;
+        int queued;
+        int peakInFlight;
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder yielded = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+
+        Lane(String name, int priority, int limit, int maxQueue, long maxWaitMillis, long responseTimeoutMillis) {
+            this.name = name;
+            this.priority = priority;
+            this.limit = Math.max(1, limit);
+            this.maxQueue = Math.max(0, maxQueue);
+            this.maxWaitMillis = Math.max(0, maxWaitMillis);
+            this.responseTimeoutMillis = responseTimeoutMillis;
+            // Every permit holds at most one connection, so the pool matches the lane limit
+            this.connections = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(this.limit)
+                .setMaxConnPerRoute(this.limit)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                    .build())
+                .build();
+        }
+
+        boolean canEnter() {
+            if (inFlight >= limit) {
+                return false;
+            }
+            for (Lane other : lanes.values()) {
+                if (other.priority > priority && other.queued > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void enter(long waitedNanos) {
+            inFlight++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+            admitted.increment();
+            waitNanos.add(waitedNanos);
+        }
+
+        LaneSaturatedException saturated() {
+            return new LaneSaturatedException(name, Math.max(1, (int) TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis)));
+        }
+
+        Map<String, Object> snapshot() {
+            long admittedCount = admitted.sum();
+            Map<String, Object> lane = new LinkedHashMap<>();
+            lane.put("limit", limit);
+            lane.put("inFlight", inFlight);
+            lane.put("saturation", Math.round(inFlight * 1000.0 / limit) / 1000.0);
+            lane.put("peakInFlight", peakInFlight);
+            lane.put("queued", queued);
+            lane.put("admitted", admittedCount);
+            lane.put("rejected", rejected.sum());
+            lane.put("yieldedToHigherPriority", yielded.sum());
+            lane.put("averageWaitMs", admittedCount == 0 ? 0.0
+                : Math.round(waitNanos.sum() / (double) admittedCount / 10_000.0) / 100.0);
+
+            PoolStats stats = connections.getTotalStats();
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("leased", stats.getLeased());
+            pool.put("available", stats.getAvailable());
+            pool.put("pending", stats.getPending());
+            pool.put("max", stats.getMax());
+            lane.put("connections", pool);
+            return lane;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.n8nintegration.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time-ordered 128-bit IDs in the ULID text format: 26 Crockford base32 characters that sort
+ * lexicographically by creation time (app.id.generator=ulid, the default).
+ *
+ * Layout: 48-bit millisecond timestamp, 16-bit thread slot, 64-bit sequence. Each thread owns a
+ * slot and keeps its own sequence, so generating an ID takes no locks and never touches
+ * SecureRandom. Within a millisecond a thread increments its sequence from a random start, which
+ * keeps its IDs strictly increasing; different threads differ in the slot bits. Slots are reused
+ * only after 65536 threads have been created, and even then the random sequence start makes a
+ * clash practically impossible.
+ */
+public class UlidIdGenerator implements IdGenerator {
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 26;
+
+    private static final AtomicInteger nextSlot = new AtomicInteger();
+
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public String nextId() {
+        State current = state.get();
+        current.advance(System.currentTimeMillis());
+        return encode((current.millis << 16) | current.slot, current.sequence);
+    }
+
+    /**
+     * Creation time in epoch milliseconds of an ID produced by this generator
+     */
+    public static long timestampOf(String id) {
+        String ulid = id.substring(id.length() - LENGTH);
+        long millis = 0;
+        for (int i = 0; i < 10; i++) {
+            millis = (millis << 5) | decode(ulid.charAt(i));
+        }
+        return millis;
+    }
+
+    // 130 bits of base32 for 128 bits of ID; the two spare leading bits are always zero
+    private static String encode(long high, long low) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ENCODING[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static int decode(char c) {
+        for (int i = 0; i < ENCODING.length; i++) {
+            if (ENCODING[i] == c) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not an ID character: " + c);
+    }
+
+    private static final class State {
+        private final long slot = nextSlot.getAndIncrement() & 0xFFFF;
+        private long millis;
+        private long sequence;
+
+        void advance(long now) {
+            if (now > millis) {
+                millis = now;
+                // Top bit clear leaves room for 2^63 increments before the sequence wraps
+                sequence = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+            } else if (++sequence < 0) {
+                // Sequence exhausted, or the clock went backwards: borrow the next millisecond
+                millis++;
+                sequence = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+            }
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.example.n8nintegration.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Usage analytics without per-event storage: distinct users, recurring prompts and volume per
+ * user and API key, in fixed memory.
+ *
+ * Controllers hand each chat message and webhook trigger to a bounded queue, and a single worker
+ * folds them into time buckets (a ring of bucket-minutes slots). Every bucket has message and
+ * trigger counters, a HyperLogLog of user IDs, and Count-Min sketches with heavy hitters for
+ * prompts, users and keys. A query merges the buckets in its window. Buckets are aligned to the
+ * epoch and the sketches merge losslessly, so the same query can also merge the buckets of every
+ * cluster member. Events arriving while the queue is full are dropped and counted, never waited for.
+ */
+@Service
+public class UsageAnalytics {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageAnalytics.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int HLL_PRECISION = 12;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+    private static final int MAX_ITEM_CHARS = 120;
+    private static final int BATCH_SIZE = 256;
+
+    private static final int EVENT_CHAT = 0;
+    private static final int EVENT_TRIGGER = 1;
+
+    public static final String UNAUTHENTICATED_KEY = "unauthenticated";
+    private static final String ANONYMOUS_USER = "anonymous";
+
+    @Autowired
+    private SessionClusterService sessionCluster;
+
+    @Value("${chat.analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.analytics.bucket-minutes:60}")
+    private int bucketMinutes;
+
+    @Value("${chat.analytics.buckets:24}")
+    private int bucketCount;
+
+    @Value("${chat.analytics.top-k:20}")
+    private int topK;
+
+    // Prompt text is kept only for the heaviest hitters, but deployments may not want it at all
+    @Value("${chat.analytics.track-prompts:true}")
+    private boolean trackPrompts;
+
+    @Value("${chat.analytics.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private long bucketMillis;
+    private Bucket[] buckets;
+    private BlockingQueue<Event> queue;
+    private Thread worker;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        bucketMillis = TimeUnit.MINUTES.toMillis(Math.max(1, bucketMinutes));
+        buckets = new Bucket[Math.max(1, bucketCount)];
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        worker = new Thread(this::drainEvents, "usage-analytics");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("Usage analytics enabled - Buckets: {} x {} min, Top: {}, Prompts tracked: {}",
+                   buckets.length, bucketMinutes, topK, trackPrompts);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Count a chat message received from a client (not one forwarded by a cluster peer)
+     */
+    public void recordChat(String keyId, String userId, String prompt) {
+        offer(new Event(EVENT_CHAT, keyId, userId, trackPrompts ? prompt : null, System.currentTimeMillis()));
+    }
+
+    /**
+     * Count a webhook trigger request
+     */
+    public void recordTrigger(String keyId) {
+        offer(new Event(EVENT_TRIGGER, keyId, null, null, System.currentTimeMillis()));
+    }
+
+    private void offer(Event event) {
+        if (!enabled) {
+            return;
+        }
+        if (queue.offer(event)) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private void drainEvents() {
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                synchronized (this) {
+                    for (Event event : batch) {
+                        apply(event);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to record usage events - Count: {}, Error: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Caller holds the monitor
+    private void apply(Event event) {
+        Bucket bucket = bucketFor(event.timestamp / bucketMillis);
+        if (bucket == null) {
+            return;
+        }
+        String key = item(event.keyId != null ? event.keyId : UNAUTHENTICATED_KEY);
+        bucket.keys.add(key, hash(key));
+        if (event.type == EVENT_TRIGGER) {
+            bucket.triggers++;
+            return;
+        }
+        bucket.messages++;
+        String user = item(event.userId != null && !event.userId.isBlank() ? event.userId : ANONYMOUS_USER);
+        long userHash = hash(user);
+        bucket.users.add(userHash);
+        bucket.userVolume.add(user, userHash);
+        if (event.prompt != null) {
+            String prompt = normalizePrompt(event.prompt);
+            if (!prompt.isEmpty()) {
+                bucket.prompts.add(prompt, hash(prompt));
+            }
+        }
+    }
+
+    // Caller holds the monitor. Null for an event older than the ring.
+    private Bucket bucketFor(long epoch) {
+        int index = (int) (epoch % buckets.length);
+        Bucket bucket = buckets[index];
+        if (bucket == null) {
+            bucket = newBucket(epoch);
+            buckets[index] = bucket;
+        } else if (bucket.epoch < epoch) {
+            // Reuse the slot's arrays, so memory stays fixed once the ring has wrapped
+            bucket.reset(epoch);
+        } else if (bucket.epoch > epoch) {
+            return null;
+        }
+        return bucket;
+    }
+
+    /**
+     * Totals, heavy hitters and a per-bucket series for the last windowMinutes, optionally merged
+     * with the same window from every other cluster member. userId and keyId, when given, add the
+     * estimated volume of that one user or key.
+     */
+    public Map<String, Object> summary(int windowMinutes, String userId, String keyId, boolean clusterWide) {
+        int minutes = Math.max(1, Math.min(windowMinutes, bucketCount * bucketMinutes));
+        long oldestEpoch = (System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes)) / bucketMillis;
+
+        TreeMap<Long, Bucket> window = new TreeMap<>();
+        synchronized (this) {
+            for (Bucket bucket : buckets) {
+                if (bucket != null && bucket.epoch >= oldestEpoch) {
+                    window.put(bucket.epoch, bucket.copy());
+                }
+            }
+        }
+
+        int nodes = 1;
+        int failedNodes = 0;
+        if (clusterWide && sessionCluster.isEnabled()) {
+            for (byte[] sketch : sessionCluster.fetchFromPeers("/api/n8n/cluster/analytics?minutes=" + minutes)) {
+                try {
+                    for (Bucket bucket : decode(sketch)) {
+                        if (bucket.epoch < oldestEpoch) {
+                            continue;
+                        }
+                        Bucket existing = window.get(bucket.epoch);
+                        if (existing == null) {
+                            window.put(bucket.epoch, bucket);
+                        } else {
+                            existing.merge(bucket);
+                        }
+                    }
+                    nodes++;
+                } catch (IOException | IllegalArgumentException e) {
+                    failedNodes++;
+                    logger.warn("Ignoring usage sketch from cluster peer - Error: {}", e.getMessage());
+                }
+            }
+        }
+
+        Bucket total = newBucket(oldestEpoch);
+        List<Map<String, Object>> series = new ArrayList<>();
+        for (Bucket bucket : window.values()) {
+            total.merge(bucket);
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("start", ConversationSession.fromEpochMillis(bucket.epoch * bucketMillis));
+            point.put("messages", bucket.messages);
+            point.put("triggers", bucket.triggers);
+            point.put("distinctUsers", bucket.users.estimate());
+            series.add(point);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("windowMinutes", minutes);
+        summary.put("bucketMinutes", bucketMinutes);
+        summary.put("nodes", nodes);
+        if (failedNodes > 0) {
+            summary.put("failedNodes", failedNodes);
+        }
+        summary.put("messages", total.messages);
+        summary.put("triggers", total.triggers);
+        summary.put("distinctUsers", total.users.estimate());
+        summary.put("topPrompts", ranked(total.prompts, "prompt", "count"));
+        summary.put("topUsers", ranked(total.userVolume, "userId", "messages"));
+        summary.put("topKeys", ranked(total.keys, "keyId", "requests"));
+        if (userId != null) {
+            String user = item(userId);
+            summary.put("user", Map.of("userId", user, "messages", total.userVolume.estimate(hash(user))));
+        }
+        if (keyId != null) {
+            String key = item(keyId);
+            summary.put("key", Map.of("keyId", key, "requests", total.keys.estimate(hash(key))));
+        }
+        summary.put("buckets", series);
+        return summary;
+    }
+
+    /**
+     * This node's buckets for the last windowMinutes in the binary form peers merge
+     */
+    public byte[] exportSketch(int windowMinutes) throws IOException {
+        int minutes = Math.max(1, Math.min(windowMinutes, bucketCount * bucketMinutes));
+        long oldestEpoch = (System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes)) / bucketMillis;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buffer, deflater, 8192))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(bucketMillis);
+            out.writeByte(HLL_PRECISION);
+            out.writeShort(SKETCH_DEPTH);
+            out.writeInt(SKETCH_WIDTH);
+            synchronized (this) {
+                List<Bucket> window = new ArrayList<>();
+                for (Bucket bucket : buckets) {
+                    if (bucket != null && bucket.epoch >= oldestEpoch) {
+                        window.add(bucket);
+                    }
+                }
+                out.writeInt(window.size());
+                for (Bucket bucket : window) {
+                    bucket.writeTo(out);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        return buffer.toByteArray();
+    }
+
+    private List<Bucket> decode(byte[] sketch) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(sketch)))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown usage sketch format " + version);
+            }
+            long peerBucketMillis = in.readLong();
+            int precision = in.readUnsignedByte();
+            int depth = in.readUnsignedShort();
+            int width = in.readInt();
+            if (peerBucketMillis != bucketMillis || precision != HLL_PRECISION
+                    || depth != SKETCH_DEPTH || width != SKETCH_WIDTH) {
+                throw new IOException("Usage sketch has different bucket or sketch dimensions");
+            }
+            int count = in.readInt();
+            List<Bucket> decoded = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Bucket bucket = newBucket(0);
+                bucket.readFrom(in);
+                decoded.add(bucket);
+            }
+            return decoded;
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        stats.put("recorded", recorded.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("queued", queue.size());
+        long bytes = 0;
+        synchronized (this) {
+            for (Bucket bucket : buckets) {
+                if (bucket != null) {
+                    bytes += bucket.sizeInBytes();
+                }
+            }
+        }
+        stats.put("sketchBytes", bytes);
+        return stats;
+    }
+
+    private Bucket newBucket(long epoch) {
+        return new Bucket(epoch, topK * 2);
+    }
+
+    private List<Map<String, Object>> ranked(CountMinSketch sketch, String itemField, String countField) {
+        List<Map<String, Object>> ranked = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : sketch.top(topK)) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(itemField, entry.getKey());
+            row.put(countField, entry.getValue());
+            ranked.add(row);
+        }
+        return ranked;
+    }
+
+    // Case and spacing differences should not split a recurring prompt
+    static String normalizePrompt(String prompt) {
+        String normalized = prompt.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+        int end = normalized.length();
+        while (end > 0 && ".?!".indexOf(normalized.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return item(normalized.substring(0, end));
+    }
+
+    private static String item(String value) {
+        return value.length() > MAX_ITEM_CHARS ? value.substring(0, MAX_ITEM_CHARS) : value;
+    }
+
+    // FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer so every bit is well mixed
+    static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Event {
+        final int type;
+        final String keyId;
+        final String userId;
+        final String prompt;
+        final long timestamp;
+
+        Event(int type, String keyId, String userId, String prompt, long timestamp) {
+            this.type = type;
+            this.keyId = keyId;
+            this.userId = userId;
+            this.prompt = prompt;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static final class Bucket {
+        long epoch;
+        long messages;
+        long triggers;
+        final int candidates;
+        final HyperLogLog users = new HyperLogLog(HLL_PRECISION);
+        final CountMinSketch prompts;
+        final CountMinSketch userVolume;
+        final CountMinSketch keys;
+
+        Bucket(long epoch, int candidates) {
+            this.epoch = epoch;
+            this.candidates = candidates;
+            this.prompts = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH, candidates);
+            this.userVolume = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH, candidates);
+            this.keys = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH, candidates);
+        }
+
+        void reset(long newEpoch) {
+            epoch = newEpoch;
+            messages = 0;
+            triggers = 0;
+            users.clear();
+            prompts.clear();
+            userVolume.clear();
+            keys.clear();
+        }
+
+        void merge(Bucket other) {
+            messages += other.messages;
+            triggers += other.triggers;
+            users.merge(other.users);
+            prompts.merge(other.prompts, UsageAnalytics::hash);
+            userVolume.merge(other.userVolume, UsageAnalytics::hash);
+            keys.merge(other.keys, UsageAnalytics::hash);
+        }
+
+        Bucket copy() {
+            Bucket copy = new Bucket(epoch, candidates);
+            copy.merge(this);
+            return copy;
+        }
+
+        int sizeInBytes() {
+            return users.sizeInBytes() + prompts.sizeInBytes() + userVolume.sizeInBytes() + keys.sizeInBytes();
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(epoch);
+            out.writeLong(messages);
+            out.writeLong(triggers);
+            users.writeTo(out);
+            prompts.writeTo(out);
+            userVolume.writeTo(out);
+            keys.writeTo(out);
+        }
+
+        void readFrom(DataInputStream in) throws IOException {
+            epoch = in.readLong();
+            messages = in.readLong();
+            triggers = in.readLong();
+            users.readFrom(in);
+            prompts.readFrom(in);
+            userVolume.readFrom(in);
+            keys.readFrom(in);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.n8nintegration.service;
+
+import java.util.UUID;
+
+/**
+ * Random version 4 UUIDs from SecureRandom (app.id.generator=uuid), the original behaviour
+ */
+public class UuidIdGenerator implements IdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.n8nintegration.benchmark;
+
+import com.example.n8nintegration.service.IdGenerator;
+import com.example.n8nintegration.service.UlidIdGenerator;
+import com.example.n8nintegration.service.UuidIdGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput of random UUIDs versus time-ordered IDs with several threads generating at once.
+ * Uniqueness and ordering are checked by UlidIdGeneratorTest. Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class IdGeneratorBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 200_000;
+
+    @Test
+    void compareUuidAndUlid() throws Exception {
+        IdGenerator uuid = new UuidIdGenerator();
+        IdGenerator ulid = new UlidIdGenerator();
+
+        // Warm up both before measuring
+        nanosPerId(uuid);
+        nanosPerId(ulid);
+
+        System.out.printf("%-6s %12s%n", "type", "ns/id");
+        System.out.printf("%-6s %12d%n", "uuid", nanosPerId(uuid));
+        System.out.printf("%-6s %12d%n", "ulid", nanosPerId(ulid));
+    }
+
+    private static long nanosPerId(IdGenerator generator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Callable<Integer> task = () -> {
+                int sink = 0;
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    sink += generator.nextId().length();
+                }
+                return sink;
+            };
+            long start = System.nanoTime();
+            long sink = 0;
+            for (Future<Integer> result : executor.invokeAll(Collections.nCopies(THREADS, task))) {
+                sink += result.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            assertTrue(sink > 0);
+            return elapsed / ((long) THREADS * IDS_PER_THREAD);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.n8nintegration.benchmark;
+
+import com.example.n8nintegration.dto.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bytes on the wire and serialization cost of JSON versus CBOR for a typical
+ * history response. Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class WireFormatBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+
+    @Test
+    void compareJsonAndCbor() throws Exception {
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+        ApiResponse response = sampleHistoryResponse(100);
+
+        byte[] jsonBytes = json.writeValueAsBytes(response);
+        byte[] cborBytes = cbor.writeValueAsBytes(response);
+        long jsonNanos = nanosPerWrite(json, response);
+        long cborNanos = nanosPerWrite(cbor, response);
+
+        System.out.printf("%-6s %10s %10s %12s%n", "format", "bytes", "gzipped", "ns/write");
+        System.out.printf("%-6s %10d %10d %12d%n", "json", jsonBytes.length, gzip(jsonBytes).length, jsonNanos);
+        System.out.printf("%-6s %10d %10d %12d%n", "cbor", cborBytes.length, gzip(cborBytes).length, cborNanos);
+
+        assertTrue(cborBytes.length < jsonBytes.length);
+    }
+
+    private static long nanosPerWrite(ObjectMapper mapper, Object value) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += mapper.writeValueAsBytes(value).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += mapper.writeValueAsBytes(value).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return elapsed / MEASURED_ITERATIONS;
+    }
+
+    private static byte[] gzip(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static ApiResponse sampleHistoryResponse(int messageCount) {
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (int i = 1; i <= messageCount; i++) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("role", i % 2 == 1 ? "user" : "assistant");
+            message.put("content", i % 2 == 1
+                ? "What are your opening hours on weekends, and do you take reservations?"
+                : "We are open from 9am to 6pm on Saturdays and 10am to 4pm on Sundays. Reservations can be made online.");
+            message.put("seq", (long) i);
+            message.put("timestamp", LocalDateTime.now().toString());
+            history.add(message);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("conversationId", "conv-3f1c9a52-8c1e-4d7b-9f0a-2b6d4e8c1a77");
+        data.put("messages", Map.of("history", history));
+        data.put("messageCount", messageCount);
+        data.put("createdAt", LocalDateTime.now());
+        data.put("lastActivity", LocalDateTime.now());
+        return new ApiResponse(true, "Conversation history retrieved", data, "6a0c85da-e192-42c3-8924-6193423be32f");
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.ApiKeyRegistry;
+import com.example.n8nintegration.service.SessionClusterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ApiKeyFilterTest {
+
+    private static final String ADMIN_KEY = "admin-key";
+    private static final String CHAT_KEY = "chat-key";
+
+    @TempDir
+    Path keysDirectory;
+
+    private ApiKeyFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path keysFile = keysDirectory.resolve("keys.json");
+        Files.writeString(keysFile, "[{\"id\":\"chat-only\",\"key\":\"" + CHAT_KEY + "\",\"scopes\":[\"chat\"]}]");
+
+        ApiKeyRegistry registry = new ApiKeyRegistry();
+        ReflectionTestUtils.setField(registry, "configuredApiKey", ADMIN_KEY);
+        ReflectionTestUtils.setField(registry, "keysFile", keysFile.toString());
+        registry.init();
+
+        filter = new ApiKeyFilter();
+        ReflectionTestUtils.setField(filter, "apiKeyRegistry", registry);
+        ReflectionTestUtils.setField(filter, "sessionCluster", new SessionClusterService());
+        ReflectionTestUtils.setField(filter, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    @Test
+    void healthAndConnectionTestsAreOpen() {
+        assertNull(scope("/api/n8n/health"));
+        assertNull(scope("/api/n8n/test"));
+        assertNull(scope("/api/n8n/chat/health"));
+        assertNull(scope("/api/n8n/chat/test"));
+        assertNull(scope("/actuator/health"));
+    }
+
+    @Test
+    void endpointsMapToTheirScope() {
+        assertEquals(ApiKeyRegistry.SCOPE_CHAT, scope("/api/n8n/chat"));
+        assertEquals(ApiKeyRegistry.SCOPE_CHAT, scope("/api/n8n/chat/new"));
+        assertEquals(ApiKeyRegistry.SCOPE_CHAT, scope("/api/n8n/chat/batch"));
+        assertEquals(ApiKeyRegistry.SCOPE_CHAT, scope("/ws/chat"));
+        assertEquals(ApiKeyRegistry.SCOPE_TRIGGER, scope("/api/n8n/trigger"));
+        assertEquals(ApiKeyRegistry.SCOPE_SEARCH, scope("/api/n8n/chat/search"));
+        assertEquals(ApiKeyRegistry.SCOPE_HISTORY, scope("/api/n8n/chat/history/conv-1"));
+        assertEquals("cluster", scope("/api/n8n/cluster/sessions"));
+    }
+
+    @Test
+    void statisticsAndUnknownApiPathsNeedAdmin() {
+        assertEquals(ApiKeyRegistry.SCOPE_ADMIN, scope("/api/n8n/stats"));
+        assertEquals(ApiKeyRegistry.SCOPE_ADMIN, scope("/api/n8n/admin/traces"));
+        assertEquals(ApiKeyRegistry.SCOPE_ADMIN, scope("/api/n8n/cluster/status"));
+        assertEquals(ApiKeyRegistry.SCOPE_ADMIN, scope("/api/n8n/something-new"));
+    }
+
+    @Test
+    void scopeIsDecidedOnTheNormalizedPath() {
+        assertEquals(ApiKeyRegistry.SCOPE_CHAT, scope("/api/n8n/chat;x=1"));
+        assertEquals(ApiKeyRegistry.SCOPE_CHAT, scope("/api/n8n/ch%61t"));
+        assertEquals(ApiKeyRegistry.SCOPE_SEARCH, scope("//api/n8n/chat/search"));
+        assertEquals(ApiKeyRegistry.SCOPE_ADMIN, scope("/api/n8n/admin;a=b/traces"));
+        assertEquals(ApiKeyRegistry.SCOPE_ADMIN, scope("/api/n8n/health/../stats"));
+    }
+
+    @Test
+    void keyWithTheScopeIsLetThrough() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/n8n/chat");
+        request.addHeader(ApiKeyFilter.API_KEY_HEADER, CHAT_KEY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertNotNull(request.getAttribute(ApiKeyFilter.API_KEY_ATTRIBUTE));
+    }
+
+    @Test
+    void keyWithoutTheScopeIsForbidden() throws Exception {
+        assertEquals(403, status("POST", "/api/n8n/trigger", CHAT_KEY));
+        assertEquals(403, status("GET", "/api/n8n/stats", CHAT_KEY));
+        assertEquals(200, status("GET", "/api/n8n/stats", ADMIN_KEY));
+    }
+
+    @Test
+    void missingOrUnknownKeyIsUnauthorized() throws Exception {
+        assertEquals(401, status("POST", "/api/n8n/chat", null));
+        assertEquals(401, status("POST", "/api/n8n/chat", "wrong"));
+        assertEquals(200, status("GET", "/api/n8n/health", null));
+    }
+
+    @Test
+    void webSocketHandshakeIgnoresKeyInQueryString() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/chat");
+        request.setParameter("apiKey", CHAT_KEY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(401, response.getStatus());
+        assertEquals(200, status("GET", "/ws/chat", CHAT_KEY));
+    }
+
+    @Test
+    void clusterEndpointsRejectApiKeys() throws Exception {
+        assertEquals(403, status("GET", "/api/n8n/cluster/sessions", ADMIN_KEY));
+    }
+
+    @Test
+    void operatorEndpointsAreClosedWithoutConfiguredKeys() throws Exception {
+        ApiKeyRegistry noKeys = new ApiKeyRegistry();
+        ReflectionTestUtils.setField(noKeys, "configuredApiKey", "");
+        ReflectionTestUtils.setField(noKeys, "keysFile", "");
+        noKeys.init();
+        ReflectionTestUtils.setField(filter, "apiKeyRegistry", noKeys);
+
+        assertEquals(403, status("GET", "/api/n8n/stats", null));
+        assertEquals(403, status("GET", "/api/n8n/admin/traces", null));
+        assertEquals(403, status("GET", "/api/n8n/chat/search", null));
+        assertEquals(200, status("POST", "/api/n8n/chat", null));
+
+        ReflectionTestUtils.setField(filter, "openOperatorEndpoints", true);
+        assertEquals(200, status("GET", "/api/n8n/stats", null));
+    }
+
+    private int status(String method, String uri, String key) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (key != null) {
+            request.addHeader(ApiKeyFilter.API_KEY_HEADER, key);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    private static String scope(String uri) {
+        return ApiKeyFilter.requiredScope(new MockHttpServletRequest("GET", uri));
+    }
+}
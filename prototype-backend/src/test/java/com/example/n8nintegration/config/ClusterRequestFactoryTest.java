@@ -0,0 +1,54 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.RequestDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterRequestFactoryTest {
+
+    private final ClusterRequestFactory factory = new ClusterRequestFactory(2000, 30000);
+
+    @AfterEach
+    void clearDeadline() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void callsWithoutDeadlineUseTheConfiguredTimeouts() throws Exception {
+        HttpURLConnection connection = prepare();
+
+        assertEquals(2000, connection.getConnectTimeout());
+        assertEquals(30000, connection.getReadTimeout());
+    }
+
+    @Test
+    void timeoutsAreCutToTheRemainingDeadline() throws Exception {
+        RequestDeadline.start(500);
+        HttpURLConnection connection = prepare();
+
+        assertTrue(connection.getReadTimeout() > 0 && connection.getReadTimeout() <= 500,
+            "read timeout " + connection.getReadTimeout());
+        assertTrue(connection.getConnectTimeout() <= 500, "connect timeout " + connection.getConnectTimeout());
+    }
+
+    @Test
+    void expiredDeadlineNeverMeansNoTimeout() throws Exception {
+        RequestDeadline.start(-10);
+        HttpURLConnection connection = prepare();
+
+        assertEquals(1, connection.getReadTimeout());
+        assertEquals(1, connection.getConnectTimeout());
+    }
+
+    private HttpURLConnection prepare() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:1/").toURL().openConnection();
+        factory.prepareConnection(connection, "GET");
+        return connection;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.RequestDeadline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineFilterTest {
+
+    private DeadlineFilter filter;
+
+    // Remaining milliseconds seen by the handler, or -1 when it ran without a deadline
+    private final AtomicLong seenRemaining = new AtomicLong(Long.MIN_VALUE);
+
+    @BeforeEach
+    void setUp() {
+        filter = new DeadlineFilter();
+        ReflectionTestUtils.setField(filter, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+    }
+
+    @Test
+    void requestWithoutHeadersHasNoDeadline() throws Exception {
+        MockHttpServletResponse response = run(request());
+
+        assertEquals(200, response.getStatus());
+        assertEquals(-1, seenRemaining.get());
+    }
+
+    @Test
+    void relativeTimeoutSetsTheDeadlineForTheRequestOnly() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(RequestDeadline.TIMEOUT_HEADER, "5000");
+
+        MockHttpServletResponse response = run(request);
+
+        assertEquals(200, response.getStatus());
+        assertTrue(seenRemaining.get() > 4_000 && seenRemaining.get() <= 5_000, "remaining " + seenRemaining.get());
+        assertFalse(RequestDeadline.isSet(), "the deadline must be cleared after the request");
+    }
+
+    @Test
+    void earlierOfBothHeadersApplies() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(RequestDeadline.TIMEOUT_HEADER, "60000");
+        request.addHeader(DeadlineFilter.DEADLINE_HEADER, String.valueOf(System.currentTimeMillis() + 3_000));
+
+        run(request);
+
+        assertTrue(seenRemaining.get() > 1_000 && seenRemaining.get() <= 3_000, "remaining " + seenRemaining.get());
+    }
+
+    @Test
+    void expiredDeadlineIsAnsweredWithoutRunningTheRequest() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(DeadlineFilter.DEADLINE_HEADER, String.valueOf(System.currentTimeMillis() - 1_000));
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(504, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void malformedHeaderIsABadRequest() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(RequestDeadline.TIMEOUT_HEADER, "soon");
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(400, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void pathsOutsideTheApiAndDisabledFilterIgnoreHeaders() throws Exception {
+        MockHttpServletRequest actuator = new MockHttpServletRequest("GET", "/actuator/health");
+        actuator.addHeader(RequestDeadline.TIMEOUT_HEADER, "0");
+        assertEquals(200, run(actuator).getStatus());
+        assertEquals(-1, seenRemaining.get());
+
+        ReflectionTestUtils.setField(filter, "enabled", false);
+        MockHttpServletRequest request = request();
+        request.addHeader(RequestDeadline.TIMEOUT_HEADER, "0");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("POST", "/api/n8n/chat");
+    }
+
+    private MockHttpServletResponse run(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) ->
+            seenRemaining.set(RequestDeadline.isSet() ? RequestDeadline.remainingMillis() : -1));
+        return response;
+    }
+}
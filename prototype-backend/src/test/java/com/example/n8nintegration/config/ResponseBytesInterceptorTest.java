@@ -0,0 +1,64 @@
+package com.example.n8nintegration.config;
+
+import com.example.n8nintegration.service.ResponseBytes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.InputStream;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResponseBytesInterceptorTest {
+
+    private final ResponseBytesInterceptor interceptor = new ResponseBytesInterceptor();
+
+    @AfterEach
+    void tearDown() {
+        ResponseBytes.finish();
+    }
+
+    @Test
+    void countsBodyBytesAsTheyAreRead() throws Exception {
+        // No Content-Length, as with chunked or decompressed responses
+        MockClientHttpResponse wire = new MockClientHttpResponse(new byte[1234], HttpStatus.OK);
+        ResponseBytes.track();
+
+        ClientHttpResponse response = interceptor.intercept(request(), new byte[0], (req, body) -> wire);
+        try (InputStream body = response.getBody()) {
+            body.read();
+            body.readAllBytes();
+        }
+
+        assertEquals(1234, ResponseBytes.finish());
+    }
+
+    @Test
+    void retriedCallReportsTheLastResponse() throws Exception {
+        ResponseBytes.track();
+        interceptor.intercept(request(), new byte[0], (req, body) -> new MockClientHttpResponse(new byte[500], HttpStatus.OK))
+            .getBody().readAllBytes();
+        interceptor.intercept(request(), new byte[0], (req, body) -> new MockClientHttpResponse(new byte[20], HttpStatus.OK))
+            .getBody().readAllBytes();
+
+        assertEquals(20, ResponseBytes.finish());
+    }
+
+    @Test
+    void untrackedCallsAreLeftAlone() throws Exception {
+        MockClientHttpResponse wire = new MockClientHttpResponse(new byte[10], HttpStatus.OK);
+
+        assertSame(wire, interceptor.intercept(request(), new byte[0], (req, body) -> wire));
+        assertEquals(-1, ResponseBytes.finish());
+    }
+
+    private static MockClientHttpRequest request() {
+        return new MockClientHttpRequest(HttpMethod.POST, URI.create("http://n8n/webhook/chat"));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.BatchChatItem;
+import com.example.n8nintegration.dto.ChatRequest;
+import com.example.n8nintegration.dto.ChatResponse;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchChatServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StubChatService chatService = new StubChatService();
+    private BatchChatService batchChat;
+
+    @BeforeEach
+    void setUp() {
+        batchChat = new BatchChatService();
+        ReflectionTestUtils.setField(batchChat, "chatService", chatService);
+        ReflectionTestUtils.setField(batchChat, "usageAnalytics", new UsageAnalytics());
+        ReflectionTestUtils.setField(batchChat, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(batchChat, "defaultParallelism", 4);
+        ReflectionTestUtils.setField(batchChat, "maxParallelism", 8);
+        ReflectionTestUtils.setField(batchChat, "maxConcurrentBatches", 2);
+        ReflectionTestUtils.setField(batchChat, "maxItems", 100);
+        ReflectionTestUtils.setField(batchChat, "laneRetryMillis", 60_000L);
+        batchChat.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchChat.shutdown();
+    }
+
+    @Test
+    void noMoreThanTheParallelismRunsAtOnce() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        chatService.answer = request -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(20);
+            inFlight.decrementAndGet();
+            return ChatResponse.success("ok", request.getConversationId());
+        };
+
+        List<Map<String, Object>> lines = run(items(20), 3);
+
+        assertTrue(peak.get() > 1 && peak.get() <= 3, "peak " + peak.get());
+        assertEquals(21, lines.size());
+    }
+
+    @Test
+    void resultsAreWrittenInCompletionOrder() throws Exception {
+        chatService.answer = request -> {
+            if (request.getMessage().equals("prompt 0")) {
+                sleep(300);
+            }
+            return ChatResponse.success("ok", request.getConversationId());
+        };
+
+        List<Map<String, Object>> lines = run(items(4), 4);
+
+        assertEquals(0, lines.get(3).get("index"), "the slow first item finishes last");
+        assertEquals("summary", lines.get(4).get("type"));
+    }
+
+    @Test
+    void saturatedLaneIsRetriedUntilTheRetryTimeRunsOut() throws Exception {
+        ReflectionTestUtils.setField(batchChat, "laneRetryMillis", 200L);
+        AtomicInteger calls = new AtomicInteger();
+        chatService.answer = request -> {
+            if (request.getMessage().equals("prompt 0") || calls.incrementAndGet() <= 2) {
+                throw new LaneSaturatedException("bulk", 1);
+            }
+            return ChatResponse.success("ok", request.getConversationId());
+        };
+
+        List<Map<String, Object>> lines = run(items(2), 1);
+
+        Map<String, Object> gaveUp = line(lines, 0);
+        assertFalse((Boolean) gaveUp.get("success"));
+        assertTrue(((String) gaveUp.get("error")).startsWith("n8n capacity unavailable"), gaveUp.toString());
+        assertTrue((Integer) gaveUp.get("attempts") > 1);
+
+        Map<String, Object> retried = line(lines, 1);
+        assertTrue((Boolean) retried.get("success"));
+        assertEquals(3, retried.get("attempts"));
+        assertTrue((Long) batchChat.getStatistics().get("laneRetries") >= 3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void summaryLineCountsEveryItem() throws Exception {
+        chatService.answer = request -> request.getMessage().equals("prompt 1")
+            ? ChatResponse.error("workflow failed")
+            : ChatResponse.success("ok", request.getConversationId());
+        String input = "{\"id\":\"a\",\"message\":\"prompt 0\"}\n{\"id\":\"b\",\"message\":\"prompt 1\"}\n"
+            + "{\"id\":\"c\",\"message\":\"  \"}\n{\"id\":\"d\",\"message\":\"prompt 3\"}\n";
+
+        List<Map<String, Object>> lines = run(input, 2);
+
+        assertEquals("Message cannot be blank", line(lines, 2).get("error"));
+        assertEquals("c", line(lines, 2).get("id"));
+        Map<String, Object> summary = lines.get(lines.size() - 1);
+        assertEquals("summary", summary.get("type"));
+        assertEquals(4, summary.get("items"));
+        assertEquals(2, summary.get("succeeded"));
+        assertEquals(2, summary.get("failed"));
+        assertEquals(2, summary.get("parallelism"));
+        assertEquals(List.of("p50", "p90", "p99", "max"),
+            new ArrayList<>(((Map<String, Object>) summary.get("latencyMs")).keySet()));
+        assertFalse(summary.containsKey("error"));
+    }
+
+    private List<Map<String, Object>> run(String input, int parallelism) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchChat.run(objectMapper.readerFor(BatchChatItem.class).readValues(input), parallelism, null, "req-1", out);
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readValue(line, Map.class));
+        }
+        return lines;
+    }
+
+    private static Map<String, Object> line(List<Map<String, Object>> lines, int index) {
+        return lines.stream().filter(line -> Integer.valueOf(index).equals(line.get("index"))).findFirst().orElseThrow();
+    }
+
+    private static String items(int count) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            input.append("{\"message\":\"prompt ").append(i).append("\"}\n");
+        }
+        return input.toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class StubChatService extends ChatService {
+        private final AtomicInteger conversations = new AtomicInteger();
+        volatile Function<ChatRequest, ChatResponse> answer;
+
+        @Override
+        public String startNewConversation(String userId) {
+            return "conv-" + conversations.incrementAndGet();
+        }
+
+        @Override
+        public ChatResponse sendBatchChatMessage(ChatRequest request, String requestId) {
+            return answer.apply(request);
+        }
+    }
+}
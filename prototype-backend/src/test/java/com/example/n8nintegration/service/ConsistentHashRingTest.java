@@ -0,0 +1,104 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+    private static final int VIRTUAL_NODES = 100;
+
+    @Test
+    void ownerIsStableAcrossRingsWithTheSameNodes() {
+        ConsistentHashRing<String> ring = ring(List.of("a", "b", "c"));
+        // Node order does not matter, only the node keys
+        ConsistentHashRing<String> rebuilt = ring(List.of("c", "a", "b"));
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "conv-" + i;
+            assertEquals(ring.owner(key), ring.owner(key));
+            assertEquals(ring.owner(key), rebuilt.owner(key));
+        }
+    }
+
+    @Test
+    void keysAreSpreadOverAllNodes() {
+        Map<String, Integer> counts = new HashMap<>();
+        ConsistentHashRing<String> ring = ring(List.of("a", "b", "c", "d"));
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("conv-" + i), 1, Integer::sum);
+        }
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3, "uneven spread " + counts);
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> before = ring(List.of("a", "b", "c"));
+        ConsistentHashRing<String> after = ring(List.of("a", "b", "c", "d"));
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "conv-" + i;
+            if (!before.owner(key).equals(after.owner(key))) {
+                assertEquals("d", after.owner(key), "a key may only move to the new node");
+                moved++;
+            }
+        }
+        // About a quarter of the keys should move; allow for hashing noise
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "moved " + moved);
+    }
+
+    @Test
+    void locateSkipsRejectedNodesInRingOrder() {
+        ConsistentHashRing<String> ring = ring(List.of("a", "b", "c"));
+        for (int i = 0; i < 100; i++) {
+            String key = "conv-" + i;
+            List<String> preference = ring.preferenceList(key, 3);
+            assertEquals(ring.owner(key), preference.get(0));
+
+            String owner = preference.get(0);
+            assertEquals(preference.get(1), ring.locate(key, node -> !node.equals(owner)));
+            assertEquals(preference.get(2), ring.locate(key, node -> node.equals(preference.get(2))));
+            assertNull(ring.locate(key, node -> false));
+        }
+    }
+
+    @Test
+    void boundedLoadSpillsToTheNextNodeWhenTheOwnerIsFull() {
+        List<String> nodes = List.of("a", "b", "c");
+        ConsistentHashRing<String> ring = ring(nodes);
+        Map<String, Integer> load = new HashMap<>();
+        int capacity = (int) Math.ceil(1.25 * 300 / nodes.size());
+
+        // Every key hashes to the same owner, so only the load bound spreads them
+        String key = "conv-hot";
+        List<String> placed = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String node = ring.locate(key, candidate -> load.getOrDefault(candidate, 0) + 1 <= capacity);
+            load.merge(node, 1, Integer::sum);
+            placed.add(node);
+        }
+
+        List<String> preference = ring.preferenceList(key, 3);
+        assertEquals(capacity, load.get(preference.get(0)));
+        assertEquals(capacity, load.get(preference.get(1)));
+        assertEquals(300 - 2 * capacity, load.get(preference.get(2)));
+        assertNotEquals(placed.get(0), placed.get(placed.size() - 1));
+    }
+
+    private static ConsistentHashRing<String> ring(List<String> nodes) {
+        return new ConsistentHashRing<>(nodes, Function.identity(), VIRTUAL_NODES);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.SessionSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversationSearchIndexTest {
+
+    private static final int CONVERSATIONS = 1000;
+
+    private ConversationSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ConversationSearchIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "maxTokensPerMessage", 2000);
+        ReflectionTestUtils.setField(index, "retentionMinutes", 60);
+    }
+
+    @Test
+    void intersectionSkipsThroughLongPostingLists() {
+        // alpha is in every opening message, beta in every 7th, gamma in every 11th and delta in every
+        // 300th, so the rare terms jump the long lists several skip intervals at a time
+        Set<String> expected = new TreeSet<>();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            StringBuilder message = new StringBuilder("alpha");
+            if (i % 7 == 0) {
+                message.append(" beta");
+            }
+            if (i % 11 == 0) {
+                message.append(" gamma");
+            }
+            if (i % 300 == 0) {
+                message.append(" delta");
+            }
+            index.indexTurn("conv-" + i, "user-1", 1, message.toString(), 2, "noted");
+            if (i % 77 == 0) {
+                expected.add("conv-" + i);
+            }
+        }
+
+        assertEquals(expected, conversationIds(index.search("gamma alpha beta", null, null, null, CONVERSATIONS)));
+        assertEquals(Set.of("conv-0", "conv-300", "conv-600", "conv-900"),
+            conversationIds(index.search("alpha delta", null, null, null, CONVERSATIONS)));
+        assertEquals(CONVERSATIONS / 7 + 1, index.search("alpha beta", null, null, null, 1).get("totalConversations"));
+        assertEquals(0, index.search("alpha missing", null, null, null, 10).get("totalConversations"));
+    }
+
+    @Test
+    void quotedPhraseMustAppearInOrder() {
+        index.indexTurn("conv-ordered", "user-1", 1, "Please reset my password today", 2, "Done");
+        index.indexTurn("conv-shuffled", "user-1", 1, "My password, reset it", 2, "Done");
+
+        assertEquals(Set.of("conv-ordered"), conversationIds(index.search("\"reset my password\"", null, null, null, 10)));
+        assertEquals(Set.of("conv-ordered", "conv-shuffled"),
+            conversationIds(index.search("reset my password", null, null, null, 10)));
+        assertThrows(IllegalArgumentException.class, () -> index.search("\"\" ...", null, null, null, 10));
+    }
+
+    @Test
+    void userAndTimeFiltersNarrowTheResults() {
+        long now = System.currentTimeMillis();
+        long earlier = now - TimeUnit.MINUTES.toMillis(20);
+        index.indexConversation(snapshot("conv-alice-earlier", "alice", earlier, "invoice question"));
+        index.indexTurn("conv-alice-now", "alice", 1, "invoice question", 2, "answer");
+        index.indexTurn("conv-bob-now", "bob", 1, "invoice question", 2, "answer");
+
+        assertEquals(Set.of("conv-alice-earlier", "conv-alice-now"),
+            conversationIds(index.search("invoice", "alice", null, null, 10)));
+        long tenMinutesAgo = now - TimeUnit.MINUTES.toMillis(10);
+        assertEquals(Set.of("conv-alice-now", "conv-bob-now"),
+            conversationIds(index.search("invoice", null, tenMinutesAgo, null, 10)));
+        assertEquals(Set.of("conv-alice-earlier"),
+            conversationIds(index.search("invoice", null, null, tenMinutesAgo, 10)));
+    }
+
+    @Test
+    void searchIsUnchangedAfterCompaction() {
+        long expired = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(120);
+        Set<String> expected = new TreeSet<>();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            String message = i % 5 == 0 ? "alpha beta" : "alpha";
+            if (i % 2 == 0) {
+                index.indexConversation(snapshot("conv-" + i, "user-1", expired, message));
+            } else {
+                index.indexTurn("conv-" + i, "user-1", 1, message, 2, "noted");
+                if (i % 5 == 0) {
+                    expected.add("conv-" + i);
+                }
+            }
+        }
+
+        index.purgeExpired();
+
+        Map<String, Object> statistics = index.getStatistics();
+        assertEquals(1L, statistics.get("compactions"));
+        assertEquals(CONVERSATIONS / 2, statistics.get("conversations"));
+        assertEquals(CONVERSATIONS, statistics.get("messages"));
+        assertEquals(expected, conversationIds(index.search("beta alpha", null, null, null, CONVERSATIONS)));
+
+        // New messages continue on the compacted numbering
+        index.indexTurn("conv-new", "user-1", 1, "alpha beta", 2, "noted");
+        expected.add("conv-new");
+        assertEquals(expected, conversationIds(index.search("alpha beta", null, null, null, CONVERSATIONS)));
+    }
+
+    private static SessionSnapshot snapshot(String conversationId, String userId, long lastActivity, String message) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "user", "content", message, "seq", 1L));
+        messages.add(Map.of("role", "assistant", "content", "noted", "seq", 2L));
+        return new SessionSnapshot(conversationId, userId, lastActivity, lastActivity, messages);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> conversationIds(Map<String, Object> result) {
+        Set<String> ids = new TreeSet<>();
+        for (Map<String, Object> match : (List<Map<String, Object>>) result.get("results")) {
+            ids.add((String) match.get("conversationId"));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConversationSessionStoreTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private ConversationSessionStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ConversationSessionStore();
+        ReflectionTestUtils.setField(store, "budgetMegabytes", 64L);
+        ReflectionTestUtils.setField(store, "maxSessionKilobytes", 512L);
+        ReflectionTestUtils.setField(store, "heapPressureThreshold", 0.85);
+        ReflectionTestUtils.setField(store, "heapPressureShedFraction", 0.25);
+        ReflectionTestUtils.setField(store, "spillEnabled", true);
+        ReflectionTestUtils.setField(store, "spillDirectory", spillDirectory.toString());
+        // Every session counts as idle, so each spill pass takes all unpinned ones
+        ReflectionTestUtils.setField(store, "spillIdleSeconds", 0L);
+        ReflectionTestUtils.setField(store, "spillSegmentMegabytes", 1L);
+        store.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void pinnedSessionsAreNotSpilled() {
+        ConversationSession session = new ConversationSession("conv-1", "alice");
+        store.putIfAbsent(session);
+        store.pin("conv-1");
+
+        store.spillIdleSessions();
+        assertEquals(0, store.getStatistics().get("onDisk"));
+        assertSame(session, store.get("conv-1"));
+
+        store.unpin("conv-1");
+        store.spillIdleSessions();
+        assertEquals(1, store.getStatistics().get("onDisk"));
+    }
+
+    @Test
+    void turnOnASpilledSessionIsMergedIntoTheCopyOnDisk() {
+        ConversationSession inFlight = new ConversationSession("conv-1", "alice");
+        store.putIfAbsent(inFlight);
+        store.spillIdleSessions();
+
+        inFlight.addMessage("user", "question");
+        inFlight.addMessage("assistant", "answer");
+        store.touch(inFlight);
+
+        assertEquals(List.of("question", "answer"), contents(store.get("conv-1")));
+    }
+
+    @Test
+    void turnsOnTwoCopiesAreBothKept() {
+        ConversationSession first = new ConversationSession("conv-1", "alice");
+        first.addMessage("user", "hello");
+        store.putIfAbsent(first);
+        store.spillIdleSessions();
+
+        // A second request loads the spilled session and finishes its turn first
+        ConversationSession second = store.get("conv-1");
+        assertNotSame(first, second);
+        second.addMessage("user", "from the second request");
+        store.touch(second);
+
+        first.addMessage("user", "from the first request");
+        store.touch(first);
+
+        ConversationSession held = store.get("conv-1");
+        assertSame(second, held);
+        assertEquals(List.of("hello", "from the second request", "from the first request"), contents(held));
+        assertEquals(List.of(1L, 2L, 3L), held.copyRange(0, 10).stream().map(message -> message.get("seq")).toList());
+        assertEquals(1L, store.getStatistics().get("reconciledSessions"));
+    }
+
+    private static List<Object> contents(ConversationSession session) {
+        return session.copyRange(0, Integer.MAX_VALUE).stream().map(message -> message.get("content")).toList();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void neverUndercountsAndFindsHeavyHitters() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024, 8);
+        addSkewed(sketch);
+
+        for (int item = 0; item < 500; item++) {
+            assertTrue(sketch.estimate(UsageAnalytics.hash("item-" + item)) >= count(item));
+        }
+        // Overcounting stays within a small share of the total
+        long total = sketch.total();
+        assertTrue(sketch.estimate(UsageAnalytics.hash("item-499")) <= count(499) + total / 100);
+
+        List<Map.Entry<String, Long>> top = sketch.top(3);
+        assertEquals("item-0", top.get(0).getKey());
+        assertEquals("item-1", top.get(1).getKey());
+        assertEquals("item-2", top.get(2).getKey());
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        CountMinSketch first = new CountMinSketch(4, 1024, 8);
+        CountMinSketch second = new CountMinSketch(4, 1024, 8);
+        addSkewed(first);
+        addSkewed(second);
+
+        first.merge(second, UsageAnalytics::hash);
+
+        assertEquals(2 * second.total(), first.total());
+        assertTrue(first.estimate(UsageAnalytics.hash("item-0")) >= 2L * count(0));
+        assertEquals("item-0", first.top(1).get(0).getKey());
+        assertThrows(IllegalArgumentException.class,
+            () -> first.merge(new CountMinSketch(4, 512, 8), UsageAnalytics::hash));
+    }
+
+    @Test
+    void survivesSerialization() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(4, 1024, 8);
+        addSkewed(sketch);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+
+        CountMinSketch restored = new CountMinSketch(4, 1024, 8);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.total(), restored.total());
+        assertEquals(sketch.estimate(UsageAnalytics.hash("item-3")), restored.estimate(UsageAnalytics.hash("item-3")));
+        assertEquals(sketch.top(8), restored.top(8));
+    }
+
+    @Test
+    void widthMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(4, 1000, 8));
+    }
+
+    // Item n occurs 500 / (n + 1) times, so the first few dominate
+    private static void addSkewed(CountMinSketch sketch) {
+        for (int item = 0; item < 500; item++) {
+            for (int i = 0; i < count(item); i++) {
+                sketch.add("item-" + item, UsageAnalytics.hash("item-" + item));
+            }
+        }
+    }
+
+    private static int count(int item) {
+        return 500 / (item + 1);
+    }
+}
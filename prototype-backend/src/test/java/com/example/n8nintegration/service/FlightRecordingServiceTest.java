@@ -0,0 +1,57 @@
+package com.example.n8nintegration.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FlightRecordingServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private FlightRecordingService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new FlightRecordingService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        ReflectionTestUtils.setField(service, "maxDurationSeconds", 60L);
+        ReflectionTestUtils.setField(service, "maxSizeMegabytes", 16L);
+        ReflectionTestUtils.setField(service, "maxFiles", 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void recordingLeavesOutEnvironmentPropertiesAndJvmArguments() throws Exception {
+        service.start("default", 60);
+        Map<String, Object> file = service.stop();
+        assertNotNull(file);
+
+        Path recorded = service.resolveFile((String) file.get("name"));
+        for (RecordedEvent event : RecordingFile.readAllEvents(recorded)) {
+            String name = event.getEventType().getName();
+            assertFalse(FlightRecordingService.SENSITIVE_EVENTS.contains(name), name + " must not be recorded");
+        }
+    }
+
+    @Test
+    void unknownSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.start("everything", 10));
+    }
+}
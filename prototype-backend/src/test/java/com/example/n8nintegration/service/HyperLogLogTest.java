@@ -0,0 +1,68 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+    // About 1.6% standard error at precision 12; allow four of them
+    private static final double TOLERANCE = 4 * 1.04 / Math.sqrt(1 << PRECISION);
+
+    @Test
+    void estimatesDistinctCounts() {
+        for (int distinct : new int[] {10, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(UsageAnalytics.hash("user-" + i));
+                // Repeats must not count again
+                sketch.add(UsageAnalytics.hash("user-" + i));
+            }
+            assertWithinTolerance(distinct, sketch.estimate());
+        }
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog first = new HyperLogLog(PRECISION);
+        HyperLogLog second = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 30_000; i++) {
+            first.add(UsageAnalytics.hash("user-" + i));
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            second.add(UsageAnalytics.hash("user-" + i));
+        }
+        first.merge(second);
+        assertWithinTolerance(50_000, first.estimate());
+
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(PRECISION + 1)));
+    }
+
+    @Test
+    void survivesSerialization() throws Exception {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add(UsageAnalytics.hash("user-" + i));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        assertEquals(sketch.sizeInBytes(), bytes.size());
+
+        HyperLogLog restored = new HyperLogLog(PRECISION);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    private static void assertWithinTolerance(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= TOLERANCE, "estimate " + estimate + " for " + expected + " distinct items");
+    }
+}
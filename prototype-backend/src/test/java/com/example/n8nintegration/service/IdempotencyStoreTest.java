@@ -0,0 +1,209 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyStoreTest {
+
+    private static final Function<String, String> ERROR_BODY = message -> "error: " + message;
+
+    private IdempotencyStore store;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(store, "maxEntries", 100);
+        ReflectionTestUtils.setField(store, "waitTimeoutMs", 5_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void repeatIsReplayedWithoutRunningAgain() {
+        ResponseEntity<String> first = store.execute("chat:k", "key-1", Map.of("message", "hi"), counting("answer"), ERROR_BODY);
+        ResponseEntity<String> repeat = store.execute("chat:k", "key-1", Map.of("message", "hi"), counting("other"), ERROR_BODY);
+
+        assertEquals(1, calls.get());
+        assertEquals("answer", first.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals("answer", repeat.getBody());
+        assertEquals("true", repeat.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void requestsWithoutKeyOrInOtherScopesRunEachTime() {
+        store.execute("chat:k", null, "body", counting("a"), ERROR_BODY);
+        store.execute("chat:k", null, "body", counting("a"), ERROR_BODY);
+        store.execute("chat:k", "key-1", "body", counting("a"), ERROR_BODY);
+        store.execute("trigger:k", "key-1", "body", counting("a"), ERROR_BODY);
+
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void keyReusedWithDifferentBodyIsRejected() {
+        store.execute("chat:k", "key-1", Map.of("message", "hi"), counting("answer"), ERROR_BODY);
+        ResponseEntity<String> mismatch = store.execute("chat:k", "key-1", Map.of("message", "bye"), counting("x"), ERROR_BODY);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, mismatch.getStatusCode());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void invalidKeyIsRejected() {
+        assertEquals(HttpStatus.BAD_REQUEST, store.execute("chat:k", " ", "body", counting("a"), ERROR_BODY).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+            store.execute("chat:k", "k".repeat(256), "body", counting("a"), ERROR_BODY).getStatusCode());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void serverErrorsAreNotKept() {
+        store.execute("chat:k", "key-1", "body", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body("failed");
+        }, ERROR_BODY);
+        ResponseEntity<String> retry = store.execute("chat:k", "key-1", "body", counting("answer"), ERROR_BODY);
+
+        assertEquals(2, calls.get());
+        assertEquals("answer", retry.getBody());
+    }
+
+    @Test
+    void repeatWaitsForTheRequestInFlight() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+            store.execute("chat:k", "key-1", "body", blocking(running, finish, "answer"), ERROR_BODY));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ResponseEntity<String>> repeat = CompletableFuture.supplyAsync(() ->
+            store.execute("chat:k", "key-1", "body", counting("other"), ERROR_BODY));
+        finish.countDown();
+
+        assertEquals("answer", first.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals("answer", repeat.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(0, calls.get(), "the repeat must not run its own call");
+    }
+
+    @Test
+    void repeatGivesUpAfterTheWaitTimeout() throws Exception {
+        ReflectionTestUtils.setField(store, "waitTimeoutMs", 50L);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture.runAsync(() ->
+            store.execute("chat:k", "key-1", "body", blocking(running, finish, "answer"), ERROR_BODY));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        try {
+            ResponseEntity<String> repeat = store.execute("chat:k", "key-1", "body", counting("other"), ERROR_BODY);
+            assertEquals(HttpStatus.CONFLICT, repeat.getStatusCode());
+        } finally {
+            finish.countDown();
+        }
+    }
+
+    @Test
+    void repeatWaitsNoLongerThanItsDeadline() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture.runAsync(() ->
+            store.execute("chat:k", "key-1", "body", blocking(running, finish, "answer"), ERROR_BODY));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        try {
+            RequestDeadline.start(50);
+            long started = System.nanoTime();
+            assertThrows(DeadlineExceededException.class,
+                () -> store.execute("chat:k", "key-1", "body", counting("other"), ERROR_BODY));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 2_000);
+        } finally {
+            finish.countDown();
+        }
+    }
+
+    @Test
+    void completedEntriesAreEvictedButRunningOnesAreKept() throws Exception {
+        ReflectionTestUtils.setField(store, "maxEntries", 2);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> inFlight = CompletableFuture.supplyAsync(() ->
+            store.execute("chat:k", "running", "body", blocking(running, finish, "answer"), ERROR_BODY));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        try {
+            store.execute("chat:k", "done", "body", counting("a"), ERROR_BODY);
+            // Full: the completed entry makes room, the running one stays
+            store.execute("chat:k", "next", "body", counting("b"), ERROR_BODY);
+            assertEquals(1L, store.getStatistics().get("evictions"));
+
+            CompletableFuture<ResponseEntity<String>> repeat = CompletableFuture.supplyAsync(() ->
+                store.execute("chat:k", "running", "body", counting("other"), ERROR_BODY));
+            finish.countDown();
+            assertEquals("answer", repeat.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals("answer", inFlight.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals(2, calls.get());
+        } finally {
+            finish.countDown();
+        }
+    }
+
+    @Test
+    void newKeysAreRefusedWhileFullOfRunningRequests() throws Exception {
+        ReflectionTestUtils.setField(store, "maxEntries", 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture.runAsync(() ->
+            store.execute("chat:k", "running", "body", blocking(running, finish, "answer"), ERROR_BODY));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        try {
+            ResponseEntity<String> refused = store.execute("chat:k", "new", "body", counting("a"), ERROR_BODY);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, refused.getStatusCode());
+            assertEquals(0, calls.get());
+        } finally {
+            finish.countDown();
+        }
+    }
+
+    private Supplier<ResponseEntity<String>> counting(String body) {
+        return () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(body);
+        };
+    }
+
+    private Supplier<ResponseEntity<String>> blocking(CountDownLatch running, CountDownLatch finish, String body) {
+        return () -> {
+            running.countDown();
+            try {
+                finish.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ResponseEntity.ok(body);
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class N8nEndpointPoolTest {
+
+    private static final String FIRST = "http://n8n-1/webhook/chat";
+    private static final String SECOND = "http://n8n-2/webhook/chat";
+
+    @AfterEach
+    void clearDeadline() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void endpointIsEjectedAfterConsecutiveFailures() {
+        N8nEndpointPool pool = new N8nEndpointPool("chat", List.of(FIRST), 3, 1_000);
+
+        fail(pool);
+        fail(pool);
+        pool.execute(url -> "ok");
+        fail(pool);
+        fail(pool);
+        assertFalse(pool.isEjected(0), "a success resets the count");
+
+        fail(pool);
+        assertTrue(pool.isEjected(0));
+    }
+
+    @Test
+    void ejectedEndpointGetsNoTrafficWhileAnotherIsAdmitted() {
+        N8nEndpointPool pool = new N8nEndpointPool("chat", List.of(FIRST, SECOND), 1, 1_000);
+        assertThrows(ResourceAccessException.class, () -> pool.execute(url -> {
+            throw new ResourceAccessException(url + " refused the connection");
+        }));
+        int ejected = pool.isEjected(0) ? 0 : 1;
+        assertTrue(pool.isEjected(ejected));
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(pool.getUrl(1 - ejected), pool.execute(url -> url));
+        }
+    }
+
+    @Test
+    void clientErrorsCountAsSuccess() {
+        N8nEndpointPool pool = new N8nEndpointPool("chat", List.of(FIRST), 1, 1_000);
+
+        assertThrows(HttpClientErrorException.class, () -> pool.execute(url -> {
+            throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null);
+        }));
+        assertFalse(pool.isEjected(0), "a 4xx is about the request");
+
+        assertThrows(HttpServerErrorException.class, () -> pool.execute(url -> {
+            throw HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", null, null, null);
+        }));
+        assertTrue(pool.isEjected(0));
+    }
+
+    @Test
+    void failuresAfterTheDeadlineAreNotBlamedOnTheEndpoint() {
+        N8nEndpointPool pool = new N8nEndpointPool("chat", List.of(FIRST), 1, 1_000);
+        RequestDeadline.start(0);
+
+        fail(pool);
+
+        assertFalse(pool.isEjected(0));
+    }
+
+    @Test
+    void ejectedEndpointIsReadmittedOnceADueProbeSucceeds() {
+        N8nEndpointPool pool = new N8nEndpointPool("chat", List.of(FIRST), 1, 1_000);
+        fail(pool);
+        assertTrue(pool.isEjected(0));
+
+        // Not due for a probe yet
+        pool.probe(url -> true, false);
+        assertTrue(pool.isEjected(0));
+
+        N8nEndpointPool.Endpoint endpoint = endpoint(pool);
+        endpoint.ejectedAt = 0;
+        pool.probe(url -> false, false);
+        assertTrue(pool.isEjected(0));
+        assertEquals(2_000, endpoint.currentEjectionMillis, "a failed probe doubles the ejection");
+
+        endpoint.ejectedAt = 0;
+        assertTrue(pool.probe(url -> true, false));
+        assertFalse(pool.isEjected(0));
+        assertTrue(pool.getLastProbe(0).isHealthy());
+    }
+
+    private static void fail(N8nEndpointPool pool) {
+        assertThrows(ResourceAccessException.class, () -> pool.execute(url -> {
+            throw new ResourceAccessException("Read timed out");
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static N8nEndpointPool.Endpoint endpoint(N8nEndpointPool pool) {
+        return ((List<N8nEndpointPool.Endpoint>) ReflectionTestUtils.getField(pool, "endpoints")).get(0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuotaWindowTest {
+
+    @Test
+    void allowsTheLimitPerMinuteThenResets() {
+        ApiKeyRegistry.QuotaWindow window = new ApiKeyRegistry.QuotaWindow();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(window.tryAcquire(3, 100));
+        }
+        assertFalse(window.tryAcquire(3, 100));
+        assertFalse(window.tryAcquire(3, 100));
+
+        assertTrue(window.tryAcquire(3, 101), "a new minute starts a new count");
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheLimit() throws Exception {
+        ApiKeyRegistry.QuotaWindow window = new ApiKeyRegistry.QuotaWindow();
+        int threads = 8;
+        int limit = 1_000;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < limit; i++) {
+                        if (window.tryAcquire(limit, 7)) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(limit, granted.get());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDeadlineTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void threadWithoutDeadlineIsNeverExpired() {
+        assertFalse(RequestDeadline.isSet());
+        assertEquals(Long.MAX_VALUE, RequestDeadline.remainingMillis());
+        assertDoesNotThrow(() -> RequestDeadline.check("anything"));
+    }
+
+    @Test
+    void checkFailsOnceTheDeadlinePasses() {
+        RequestDeadline.start(10_000);
+        assertDoesNotThrow(() -> RequestDeadline.check("step"));
+
+        RequestDeadline.start(0);
+        assertTrue(RequestDeadline.isExpired());
+        assertThrows(DeadlineExceededException.class, () -> RequestDeadline.check("step"));
+    }
+
+    @Test
+    void wrappedTaskRunsUnderTheCallersDeadline() throws Exception {
+        AtomicLong seen = new AtomicLong();
+        AtomicLong afterwards = new AtomicLong();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RequestDeadline.start(5_000);
+            executor.execute(RequestDeadline.wrap(() -> seen.set(RequestDeadline.remainingMillis())));
+            executor.execute(() -> afterwards.set(RequestDeadline.remainingMillis()));
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(seen.get() > 0 && seen.get() <= 5_000, "remaining " + seen.get());
+        assertEquals(Long.MAX_VALUE, afterwards.get(), "the worker must not keep the deadline");
+    }
+
+    @Test
+    void wrapWithoutDeadlineLeavesTheTaskAlone() {
+        Runnable task = () -> {};
+        assertSame(task, RequestDeadline.wrap(task));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SemanticResponseCacheTest {
+
+    private static final String PROMPT = "How can I reset my account password";
+    private static final String USER = "alice";
+
+    private SemanticResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SemanticResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "threshold", 0.6);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "verifySampleRate", 0.0);
+        ReflectionTestUtils.setField(cache, "scope", "user");
+    }
+
+    @Test
+    void samePromptAfterNormalizationIsAnExactHit() {
+        cache.put(USER, PROMPT, "Use the reset link on the login page.");
+
+        SemanticResponseCache.Hit hit = cache.lookup(USER, "how can i RESET my account password???");
+
+        assertNotNull(hit);
+        assertEquals(1.0, hit.getSimilarity());
+        assertEquals("Use the reset link on the login page.", hit.getResponse());
+    }
+
+    @Test
+    void similarPromptIsFoundThroughTheBandIndex() {
+        cache.put(USER, PROMPT, "Use the reset link on the login page.");
+
+        SemanticResponseCache.Hit hit = cache.lookup(USER, "How can I reset my account password quickly");
+
+        assertNotNull(hit);
+        assertTrue(hit.getSimilarity() >= 0.6 && hit.getSimilarity() < 1.0, "similarity " + hit.getSimilarity());
+    }
+
+    @Test
+    void unrelatedOrTooShortPromptsMiss() {
+        cache.put(USER, PROMPT, "Use the reset link on the login page.");
+
+        assertNull(cache.lookup(USER, "Weather forecast for Berlin tomorrow"));
+        assertNull(cache.lookup(USER, "hi"));
+    }
+
+    @Test
+    void minHashSimilarityTracksOverlap() {
+        int[] signature = new int[128];
+        int[] half = new int[128];
+        for (int i = 0; i < 128; i++) {
+            signature[i] = i;
+            half[i] = i < 64 ? i : -i;
+        }
+        assertEquals(1.0, SemanticResponseCache.similarity(signature, signature.clone()));
+        assertEquals(0.5, SemanticResponseCache.similarity(signature, half));
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.put(USER, "first question about invoices", "a");
+        cache.put(USER, "second question about shipping", "b");
+        // Touch the first so the second becomes the eldest
+        assertNotNull(cache.lookup(USER, "first question about invoices"));
+        cache.put(USER, "third question about refunds", "c");
+
+        assertNotNull(cache.lookup(USER, "first question about invoices"));
+        assertNull(cache.lookup(USER, "second question about shipping"));
+        assertEquals(1L, cache.getStatistics().get("evictions"));
+    }
+
+    @Test
+    void answersAreNotSharedBetweenUsers() {
+        cache.put(USER, PROMPT, "Alice, use the reset link we emailed you.");
+
+        assertNull(cache.lookup("bob", PROMPT));
+        assertNull(cache.lookup("bob", "How can I reset my account password quickly"));
+        assertNotNull(cache.lookup(USER, PROMPT));
+    }
+
+    @Test
+    void globalScopeSharesAnswersBetweenUsers() {
+        ReflectionTestUtils.setField(cache, "scope", "global");
+        cache.put(USER, PROMPT, "Use the reset link on the login page.");
+
+        assertNotNull(cache.lookup("bob", PROMPT));
+        assertNotNull(cache.lookup("bob", "How can I reset my account password quickly"));
+    }
+}
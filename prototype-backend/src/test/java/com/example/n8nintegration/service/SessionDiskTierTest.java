@@ -0,0 +1,147 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.dto.SessionSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionDiskTierTest {
+
+    @TempDir
+    Path directory;
+
+    private SessionDiskTier tier;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tier = new SessionDiskTier(directory, 4096);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tier.close();
+    }
+
+    @Test
+    void snapshotRoundTrips() throws IOException {
+        SessionSnapshot original = snapshot("conv-1", 3);
+
+        SessionSnapshot restored = tier.read(tier.write(original));
+
+        assertEquals(original.getConversationId(), restored.getConversationId());
+        assertEquals(original.getUserId(), restored.getUserId());
+        assertEquals(original.getCreatedAt(), restored.getCreatedAt());
+        assertEquals(original.getLastActivity(), restored.getLastActivity());
+        assertEquals(original.getMessages(), restored.getMessages());
+    }
+
+    @Test
+    void missingFieldsRoundTrip() throws IOException {
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", "no timestamp or seq");
+        SessionSnapshot original = new SessionSnapshot("conv-2", null, 1L, 2L, List.of(message));
+
+        SessionSnapshot restored = SessionDiskTier.decode(SessionDiskTier.encode(original));
+
+        assertNull(restored.getUserId());
+        assertEquals("no timestamp or seq", restored.getMessages().get(0).get("content"));
+        assertFalse(restored.getMessages().get(0).containsKey("seq"));
+    }
+
+    @Test
+    void recordsSurviveSegmentRollAndRelocation() throws IOException {
+        List<SessionDiskTier.Location> locations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            locations.add(tier.write(snapshot("conv-" + i, 10)));
+        }
+        assertTrue(segmentFiles() > 1, "records larger than one segment should roll over");
+
+        SessionDiskTier.Location moved = tier.relocate(locations.get(0));
+        tier.release(locations.get(0));
+        assertEquals("conv-0", tier.read(moved).getConversationId());
+        assertEquals("conv-19", tier.read(locations.get(19)).getConversationId());
+    }
+
+    @Test
+    void releasedSegmentsAreDeleted() throws IOException {
+        List<SessionDiskTier.Location> locations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            locations.add(tier.write(snapshot("conv-" + i, 10)));
+        }
+        SessionDiskTier.Location first = locations.get(0);
+        for (SessionDiskTier.Location location : locations) {
+            tier.release(location);
+        }
+
+        // Only the segment still being written to remains
+        assertEquals(1, segmentFiles());
+        assertThrows(IOException.class, () -> tier.read(first));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void oversizedEncodeBufferIsNotKept() throws IOException {
+        ThreadLocal<ByteArrayOutputStream> buffers =
+            (ThreadLocal<ByteArrayOutputStream>) ReflectionTestUtils.getField(SessionDiskTier.class, "ENCODE_BUFFER");
+        SessionDiskTier.encode(snapshot("conv-small", 3));
+        ByteArrayOutputStream small = buffers.get();
+        SessionDiskTier.encode(snapshot("conv-small", 3));
+        assertSame(small, buffers.get(), "a small buffer is reused");
+
+        // Random text barely compresses, so the record ends up above the 1 MiB retention cap
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(42);
+        while (content.length() < 2 << 20) {
+            content.append(Long.toString(random.nextLong(), 36));
+        }
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", content.toString());
+        byte[] record = SessionDiskTier.encode(new SessionSnapshot("conv-large", "user-1", 1L, 2L, List.of(message)));
+
+        assertTrue(record.length > 1 << 20, "record " + record.length);
+        assertNotSame(small, buffers.get());
+        assertEquals(content.toString(), SessionDiskTier.decode(record).getMessages().get(0).get("content"));
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static SessionSnapshot snapshot(String conversationId, int messages) {
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("role", i % 2 == 0 ? "user" : "assistant");
+            message.put("content", "Message " + i + " of " + conversationId + " with some text to store " + i * 31);
+            message.put("timestamp", "2026-01-01T00:00:" + String.format("%02d", i % 60));
+            message.put("seq", (long) i);
+            history.add(message);
+        }
+        return new SessionSnapshot(conversationId, "user-1", 1_000L, 2_000L, history);
+    }
+}
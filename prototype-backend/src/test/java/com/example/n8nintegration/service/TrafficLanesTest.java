@@ -0,0 +1,183 @@
+package com.example.n8nintegration.service;
+
+import com.example.n8nintegration.exception.DeadlineExceededException;
+import com.example.n8nintegration.exception.LaneSaturatedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrafficLanesTest {
+
+    private TrafficLanes lanes;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        lanes = new TrafficLanes();
+        ReflectionTestUtils.setField(lanes, "chatConcurrency", 1);
+        ReflectionTestUtils.setField(lanes, "chatMaxQueue", 4);
+        ReflectionTestUtils.setField(lanes, "chatMaxWaitMillis", 2_000L);
+        ReflectionTestUtils.setField(lanes, "bulkConcurrency", 1);
+        ReflectionTestUtils.setField(lanes, "bulkMaxQueue", 4);
+        ReflectionTestUtils.setField(lanes, "bulkMaxWaitMillis", 200L);
+        ReflectionTestUtils.setField(lanes, "probeConcurrency", 1);
+        ReflectionTestUtils.setField(lanes, "probeMaxWaitMillis", 200L);
+        ReflectionTestUtils.setField(lanes, "connectTimeoutMillis", 1_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        RequestDeadline.clear();
+        lanes.shutdown();
+    }
+
+    @Test
+    void callerWaitsForAPermitThenRuns() throws Exception {
+        lanes.init();
+        CompletableFuture<String> holder = hold(TrafficLanes.CHAT);
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> lanes.run(TrafficLanes.CHAT, () -> "second"));
+        awaitQueued(TrafficLanes.CHAT, 1);
+
+        release.countDown();
+
+        assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("second", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(0, lane(TrafficLanes.CHAT).get("inFlight"));
+    }
+
+    @Test
+    void waitRunsOutWithSaturation() throws Exception {
+        ReflectionTestUtils.setField(lanes, "chatMaxWaitMillis", 50L);
+        lanes.init();
+        hold(TrafficLanes.CHAT);
+
+        LaneSaturatedException e = assertThrows(LaneSaturatedException.class,
+            () -> lanes.run(TrafficLanes.CHAT, () -> "never"));
+
+        assertEquals(TrafficLanes.CHAT, e.getLane());
+        assertEquals(1L, lane(TrafficLanes.CHAT).get("rejected"));
+    }
+
+    @Test
+    void fullQueueIsRejectedWithoutWaiting() throws Exception {
+        ReflectionTestUtils.setField(lanes, "chatMaxQueue", 0);
+        lanes.init();
+        hold(TrafficLanes.CHAT);
+
+        long started = System.nanoTime();
+        assertThrows(LaneSaturatedException.class, () -> lanes.run(TrafficLanes.CHAT, () -> "never"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1_000);
+    }
+
+    @Test
+    void bulkYieldsToQueuedChat() throws Exception {
+        lanes.init();
+        hold(TrafficLanes.CHAT);
+        CompletableFuture.runAsync(() -> lanes.run(TrafficLanes.CHAT, () -> "queued"));
+        awaitQueued(TrafficLanes.CHAT, 1);
+
+        // The bulk lane is idle, but a chat caller is waiting
+        assertThrows(LaneSaturatedException.class, () -> lanes.run(TrafficLanes.BULK, () -> "never"));
+        assertEquals(1L, lane(TrafficLanes.BULK).get("rejected"));
+    }
+
+    @Test
+    void chatWaiterThatGivesUpWakesBulk() throws Exception {
+        ReflectionTestUtils.setField(lanes, "chatMaxWaitMillis", 100L);
+        ReflectionTestUtils.setField(lanes, "bulkMaxWaitMillis", 10_000L);
+        lanes.init();
+        hold(TrafficLanes.CHAT);
+        CompletableFuture<String> chatWaiter = CompletableFuture.supplyAsync(() -> lanes.run(TrafficLanes.CHAT, () -> "queued"));
+        awaitQueued(TrafficLanes.CHAT, 1);
+
+        long started = System.nanoTime();
+        CompletableFuture<String> bulk = CompletableFuture.supplyAsync(() -> lanes.run(TrafficLanes.BULK, () -> "bulk"));
+
+        assertEquals("bulk", bulk.get(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 2_000);
+        assertTrue(chatWaiter.handle((result, error) -> error).get(5, TimeUnit.SECONDS).getCause()
+            instanceof LaneSaturatedException);
+    }
+
+    @Test
+    void chatDoesNotWaitForBulk() throws Exception {
+        lanes.init();
+        hold(TrafficLanes.BULK);
+
+        assertEquals("chat", lanes.run(TrafficLanes.CHAT, () -> "chat"));
+    }
+
+    @Test
+    void waitIsCutShortByTheDeadline() throws Exception {
+        lanes.init();
+        hold(TrafficLanes.CHAT);
+
+        RequestDeadline.start(50);
+        long started = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> lanes.run(TrafficLanes.CHAT, () -> "never"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1_500);
+    }
+
+    @Test
+    void expiredDeadlineSkipsTheCall() {
+        lanes.init();
+        RequestDeadline.start(0);
+
+        assertThrows(DeadlineExceededException.class, () -> lanes.run(TrafficLanes.CHAT, () -> "never"));
+        assertEquals(0L, lane(TrafficLanes.CHAT).get("admitted"));
+    }
+
+    @Test
+    void probeLaneLimitsComeFromProperties() {
+        ReflectionTestUtils.setField(lanes, "probeMaxQueue", 0);
+        lanes.init();
+        hold(TrafficLanes.PROBE);
+
+        // max-queue 0 falls back to twice the concurrency, so the caller queues and then times out
+        assertThrows(LaneSaturatedException.class, () -> lanes.run(TrafficLanes.PROBE, () -> "never"));
+        assertEquals(1L, lane(TrafficLanes.PROBE).get("rejected"));
+    }
+
+    private CompletableFuture<String> hold(String laneName) {
+        CountDownLatch entered = new CountDownLatch(1);
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> lanes.run(laneName, () -> {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "held";
+        }));
+        try {
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return holder;
+    }
+
+    private void awaitQueued(String laneName, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(queued).equals(lane(laneName).get("queued"))) {
+            assertTrue(System.nanoTime() < deadline, "caller never queued");
+            Thread.sleep(5);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lane(String laneName) {
+        return (Map<String, Object>) lanes.snapshot().get(laneName);
+    }
+}
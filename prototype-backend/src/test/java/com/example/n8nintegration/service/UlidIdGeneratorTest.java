@@ -0,0 +1,59 @@
+package com.example.n8nintegration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UlidIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void idsAreUniqueAndIncreasePerThread() throws Exception {
+        IdGenerator ulid = new UlidIdGenerator();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String[]>> results = executor.invokeAll(Collections.nCopies(THREADS,
+                (Callable<String[]>) () -> {
+                    String[] ids = new String[IDS_PER_THREAD];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = ulid.nextId();
+                    }
+                    return ids;
+                }));
+
+            Set<String> all = new HashSet<>();
+            for (Future<String[]> result : results) {
+                String[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) {
+                        assertTrue(ids[i - 1].compareTo(ids[i]) < 0, "IDs must increase within a thread");
+                    }
+                    all.add(ids[i]);
+                }
+            }
+            assertEquals(THREADS * IDS_PER_THREAD, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void idsAreCrockfordBase32OfFixedLength() {
+        IdGenerator ulid = new UlidIdGenerator();
+        String id = ulid.nextId();
+        assertEquals(26, id.length());
+        assertTrue(id.matches("[0-9A-HJKMNP-TV-Z]{26}"), id);
+    }
+}
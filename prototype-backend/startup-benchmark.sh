@@ -0,0 +1,95 @@
+#!/usr/bin/env bash
+# Startup benchmark: fat jar vs fast-start artifact (AOT + CDS + lazy initialization).
+#
+# Measures time from process launch to the first successful POST /api/n8n/chat, and the
+# resident set size right after that chat. Build both artifacts first:
+#
+#   mvn -Pfast-start package -DskipTests
+#   ./startup-benchmark.sh [runs]
+#
+# Uses a local stub n8n (python3) unless N8N_CHAT_URL points at a real chat webhook.
+
+set -euo pipefail
+cd "$(dirname "$0")"
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+STUB_PORT=${STUB_PORT:-15678}
+JAVA=${JAVA:-java}
+
+FAT_JAR=$(ls target/n8n-integration-prototype-*.jar 2>/dev/null | grep -v fast-start | head -1 || true)
+FAST_JAR=$(ls target/fast-start/n8n-integration-prototype-*-fast-start.jar 2>/dev/null | head -1 || true)
+if [ -z "$FAT_JAR" ] || [ -z "$FAST_JAR" ] || [ ! -f target/fast-start/application.jsa ]; then
+    echo "Build first: mvn -Pfast-start package -DskipTests" >&2
+    exit 1
+fi
+
+STUB_PID=
+if [ -z "${N8N_CHAT_URL:-}" ]; then
+    python3 - "$STUB_PORT" <<'PY' &
+import json, sys
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+class Stub(BaseHTTPRequestHandler):
+    def do_POST(self):
+        self.rfile.read(int(self.headers.get('Content-Length', 0)))
+        body = json.dumps({"response": "pong"}).encode()
+        self.send_response(200)
+        self.send_header('Content-Type', 'application/json')
+        self.send_header('Content-Length', str(len(body)))
+        self.end_headers()
+        self.wfile.write(body)
+    def log_message(self, *args):
+        pass
+ThreadingHTTPServer(('127.0.0.1', int(sys.argv[1])), Stub).serve_forever()
+PY
+    STUB_PID=$!
+    N8N_CHAT_URL="http://127.0.0.1:$STUB_PORT/webhook/chat-ai"
+fi
+
+APP_PID=
+cleanup() {
+    [ -n "$APP_PID" ] && kill "$APP_PID" 2>/dev/null || true
+    [ -n "$STUB_PID" ] && kill "$STUB_PID" 2>/dev/null || true
+}
+trap cleanup EXIT
+
+now_ms() { date +%s%3N; }
+
+# One run: prints "<ms to first chat> <RSS in MB>"
+measure() {
+    local start=$(now_ms)
+    "$@" --server.port="$PORT" --n8n.chat.webhook.url="$N8N_CHAT_URL" \
+        --n8n.chat.webhook.urls="$N8N_CHAT_URL" --logging.level.root=WARN > /dev/null 2>&1 &
+    APP_PID=$!
+    until curl -sf -o /dev/null -X POST "http://127.0.0.1:$PORT/api/n8n/chat" \
+            -H 'Content-Type: application/json' -d '{"message":"ping"}'; do
+        if ! kill -0 "$APP_PID" 2>/dev/null; then
+            echo "application exited before answering" >&2
+            exit 1
+        fi
+        sleep 0.1
+    done
+    local elapsed=$(( $(now_ms) - start ))
+    local rss_kb=$(awk '/VmRSS/ {print $2}' "/proc/$APP_PID/status")
+    kill "$APP_PID"
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=
+    echo "$elapsed $(( rss_kb / 1024 ))"
+}
+
+median() { sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'; }
+
+report() {
+    local name=$1; shift
+    local results=()
+    for _ in $(seq "$RUNS"); do
+        results+=("$(measure "$@")")
+    done
+    local ms=$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)
+    local rss=$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)
+    printf '%-12s first chat %6s ms   RSS %5s MB   (median of %s runs)\n' "$name" "$ms" "$rss" "$RUNS"
+}
+
+report "fat jar" "$JAVA" -jar "$FAT_JAR"
+report "fast-start" "$JAVA" -XX:SharedArchiveFile=target/fast-start/application.jsa \
+    -Dspring.aot.enabled=true -jar "$FAST_JAR" --spring.profiles.active=fast-start